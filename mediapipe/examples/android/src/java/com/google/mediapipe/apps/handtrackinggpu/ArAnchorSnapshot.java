@@ -0,0 +1,65 @@
+package com.google.mediapipe.apps.handtrackinggpu;
+
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandPoseEnum;
+
+/**
+ * Position, size, shape and pose of the AR overlay, shared between the landmark callback thread
+ * that publishes it and the GL threads that render it.
+ *
+ * <p>This is a sequence lock: the single writer makes the sequence odd, updates the fields and
+ * makes it even again, and a reader retries until it saw the same even sequence before and after
+ * copying the fields. All accesses are volatile, so a reader always gets a consistent tuple without
+ * taking a lock, and neither side allocates. {@link #publish} must only be called from one thread.
+ */
+public final class ArAnchorSnapshot {
+
+    /** Reader-owned copy of the snapshot, filled in by {@link #read}. */
+    public static final class Values {
+        public float xLoc;
+        public float yLoc;
+        public float zLoc;
+        public float scale;
+        public arShape shape = arShape.CUBE;
+        public HandPoseEnum pose = HandPoseEnum.UNKNOWN;
+    }
+
+    // Odd while the writer is updating the fields below.
+    private volatile int sequence = 0;
+    private volatile float xLoc;
+    private volatile float yLoc;
+    private volatile float zLoc;
+    private volatile float scale;
+    private volatile arShape shape = arShape.CUBE;
+    private volatile HandPoseEnum pose = HandPoseEnum.UNKNOWN;
+
+    public void publish(float xLoc, float yLoc, float zLoc, float scale, arShape shape, HandPoseEnum pose) {
+        int current = sequence;
+        sequence = current + 1;
+        this.xLoc = xLoc;
+        this.yLoc = yLoc;
+        this.zLoc = zLoc;
+        this.scale = scale;
+        this.shape = shape;
+        this.pose = pose;
+        sequence = current + 2;
+    }
+
+    public void read(Values out) {
+        while (true) {
+            int before = sequence;
+            if ((before & 1) != 0) {
+                // The writer only stores six fields, so it is done almost immediately.
+                continue;
+            }
+            out.xLoc = xLoc;
+            out.yLoc = yLoc;
+            out.zLoc = zLoc;
+            out.scale = scale;
+            out.shape = shape;
+            out.pose = pose;
+            if (sequence == before) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.google.mediapipe.apps.handtrackinggpu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandPoseEnum;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ArAnchorSnapshot}. */
+@RunWith(JUnit4.class)
+public final class ArAnchorSnapshotTest {
+    private static final int NUM_READERS = 4;
+    private static final int NUM_PUBLISHES = 2_000_000;
+
+    private static final arShape[] SHAPES = arShape.values();
+    private static final HandPoseEnum[] POSES = HandPoseEnum.values();
+
+    @Test
+    public void read_returnsLastPublished() {
+        ArAnchorSnapshot snapshot = new ArAnchorSnapshot();
+        snapshot.publish(1f, 2f, 3f, 4f, arShape.TRIANGLE, HandPoseEnum.FIST);
+        ArAnchorSnapshot.Values values = new ArAnchorSnapshot.Values();
+        snapshot.read(values);
+        assertEquals(1f, values.xLoc, 0f);
+        assertEquals(2f, values.yLoc, 0f);
+        assertEquals(3f, values.zLoc, 0f);
+        assertEquals(4f, values.scale, 0f);
+        assertEquals(arShape.TRIANGLE, values.shape);
+        assertEquals(HandPoseEnum.FIST, values.pose);
+    }
+
+    @Test
+    public void read_neverReturnsTornTuple() throws Exception {
+        ArAnchorSnapshot snapshot = new ArAnchorSnapshot();
+        publish(snapshot, 0);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(NUM_READERS);
+        long[] reads = new long[NUM_READERS];
+
+        Thread[] readers = new Thread[NUM_READERS];
+        for (int r = 0; r < NUM_READERS; ++r) {
+            int reader = r;
+            readers[r] = new Thread(() -> {
+                ArAnchorSnapshot.Values values = new ArAnchorSnapshot.Values();
+                float last = 0;
+                started.countDown();
+                while (!done.get() && failure.get() == null) {
+                    snapshot.read(values);
+                    ++reads[reader];
+                    int i = (int) values.xLoc;
+                    if (values.yLoc != values.xLoc
+                            || values.zLoc != values.xLoc
+                            || values.scale != values.xLoc
+                            || values.shape != SHAPES[i % SHAPES.length]
+                            || values.pose != POSES[i % POSES.length]) {
+                        failure.compareAndSet(null, "Torn tuple: " + values.xLoc + ", "
+                                + values.yLoc + ", " + values.zLoc + ", " + values.scale + ", "
+                                + values.shape + ", " + values.pose);
+                    } else if (values.xLoc < last) {
+                        failure.compareAndSet(null, "Went back from " + last + " to " + i);
+                    }
+                    last = values.xLoc;
+                }
+            });
+            readers[r].start();
+        }
+
+        started.await();
+        // Floats hold every integer up to 2^24 exactly, so i can be recovered from any field.
+        for (int i = 1; i <= NUM_PUBLISHES && failure.get() == null; ++i) {
+            publish(snapshot, i);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+        for (long count : reads) {
+            assertTrue(count > 0);
+        }
+    }
+
+    private static void publish(ArAnchorSnapshot snapshot, int i) {
+        snapshot.publish(i, i, i, i, SHAPES[i % SHAPES.length], POSES[i % POSES.length]);
+    }
+}
@@ -0,0 +1,81 @@
+package com.google.mediapipe.apps.handtrackinggpu;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Delivers state changes from a background thread to the UI thread, at most once per vsync.
+ *
+ * <p>Only the latest submitted state is kept: a state that is replaced before the next frame is
+ * never delivered, and submitting the same state as last time does not schedule anything. A single
+ * frame callback is in flight at any time, so a burst of changes costs one main thread task.
+ *
+ * <p>The dispatcher must be created on the UI thread. {@link #submit} must always be called from
+ * the same thread; the counters may be read from any thread.
+ */
+public final class CoalescingUiDispatcher<T> implements Choreographer.FrameCallback {
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Consumer<T> consumer;
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    // Only accessed on the submitting thread.
+    private T lastSubmitted;
+
+    // Only written on the submitting thread.
+    private volatile long postedCount = 0;
+    private volatile long coalescedCount = 0;
+    private volatile long unchangedCount = 0;
+
+    /** @param consumer applies a state; invoked on the UI thread. */
+    public CoalescingUiDispatcher(Consumer<T> consumer) {
+        this.consumer = consumer;
+    }
+
+    /** Schedules {@code state} to be applied on the next frame, unless it did not change. */
+    public void submit(T state) {
+        if (state == null) {
+            throw new NullPointerException("state");
+        }
+        if (state.equals(lastSubmitted)) {
+            ++unchangedCount;
+            return;
+        }
+        lastSubmitted = state;
+        if (pending.getAndSet(state) != null) {
+            ++coalescedCount;
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+            ++postedCount;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // Clear the flag first, so a state submitted while it is applied schedules a new frame.
+        scheduled.set(false);
+        T state = pending.getAndSet(null);
+        if (state != null) {
+            consumer.accept(state);
+        }
+    }
+
+    /** Returns the number of frame callbacks posted to the UI thread. */
+    public long getPostedCount() {
+        return postedCount;
+    }
+
+    /** Returns the number of states replaced by a newer one before they were applied. */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /** Returns the number of submitted states skipped because they equal the previous one. */
+    public long getUnchangedCount() {
+        return unchangedCount;
+    }
+}
@@ -24,18 +24,48 @@ import android.view.TextureView;
 import android.view.View;
 
 //import com.google.mediapipe.components.GlSurfaceViewRenderer;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmarkList;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.GestureLatencyTracer;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.GestureRuleSet;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.GestureSequenceDetector;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.GestureTemplateStore;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandClassifier;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandOpennessController;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandPoseClassifier;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandPoseEnum;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandPoseModel;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandPoseTable;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.HandednessEnum;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.LandmarkChangeGate;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.LatencyHistogram;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.LandmarkRecorder;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.LearnedHandPoseClassifier;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.MotionGestureEnum;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.MotionGestureRecognizer;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.MultiHandClassifier;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.MultiHandFrame;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.MultiHandLandmarkFilter;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.OneEuroLandmarkFilter;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.PoseStabilizer;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.RuleHandPoseClassifier;
+import com.google.mediapipe.apps.handtrackinggpu.gesture.TemplateHandPoseClassifier;
+import com.google.mediapipe.formats.proto.ClassificationProto.Classification;
+import com.google.mediapipe.formats.proto.ClassificationProto.ClassificationList;
 import com.google.mediapipe.framework.AndroidPacketCreator;
 import com.google.mediapipe.framework.Packet;
 import com.google.mediapipe.framework.PacketGetter;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.function.Supplier;
 
 /** Main activity of MediaPipe hand tracking app. */
 public class MainActivity extends com.google.mediapipe.apps.basic.MainActivity implements Observer, TextureView.SurfaceTextureListener {
@@ -45,8 +75,25 @@ public class MainActivity extends com.google.mediapipe.apps.basic.MainActivity i
 
   private static final String INPUT_NUM_HANDS_SIDE_PACKET_NAME = "num_hands";
   private static final String OUTPUT_LANDMARKS_STREAM_NAME = "hand_landmarks";
+  private static final String OUTPUT_HANDEDNESS_STREAM_NAME = "handedness";
+  // Asset mapping finger states to hand poses.
+  private static final String HAND_POSE_TABLE_ASSET = "hand_poses.txt";
+  // Asset with declarative pose rules. Replaces the pose table when it loads.
+  private static final String HAND_POSE_RULES_ASSET = "hand_pose_rules.txt";
+  // Optional asset holding a model trained by HandPoseModelTrainer. When it is packaged, it
+  // replaces the rule-based classifiers.
+  private static final String HAND_POSE_MODEL_ASSET = "hand_pose_model.bin";
+  // Optional asset holding user-recorded templates built by GestureTemplateBuilder from landmark
+  // logs. When it is packaged, it replaces all other classifiers.
+  private static final String HAND_POSE_TEMPLATES_ASSET = "hand_pose_templates.bin";
+  // Landmark log in the app's external files directory, appended to while recording is enabled.
+  private static final String LANDMARK_LOG_FILE = "hand_landmarks.hlr";
+  private static final String LANDMARK_RECORDER_TAG = "LandmarkRecorder";
+  // Latency report in the app's external files directory, written on pause while enabled.
+  private static final String LATENCY_REPORT_FILE = "gesture_latency.txt";
+  private static final String LATENCY_TAG = "GestureLatency";
   // Max number of hands to detect/process.
-  private static final int NUM_HANDS = 1;
+  private static final int NUM_HANDS = 2;
 
   private MyGlSurfaceView glView;
   private TextureView surfaceView;
@@ -75,124 +122,299 @@ public class MainActivity extends com.google.mediapipe.apps.basic.MainActivity i
     Map<String, Packet> inputSidePackets = new HashMap<>();
     inputSidePackets.put(INPUT_NUM_HANDS_SIDE_PACKET_NAME, packetCreator.createInt32(NUM_HANDS));
     processor.setInputSidePackets(inputSidePackets);
+    processor.setOnWillAddFrameListener(
+        timestamp -> latencyTracer.mark(GestureLatencyTracer.Stage.CONVERTER_OUTPUT, timestamp));
+    processor.setOnDidAddFrameListener(
+        timestamp -> latencyTracer.mark(GestureLatencyTracer.Stage.GRAPH_INPUT, timestamp));
+
+    // The classifiers are too cheap to benefit from a worker thread. Hands that barely moved since
+    // their last classification keep their pose.
+    multiHandClassifier =
+        new MultiHandClassifier(
+            createHandClassifierFactory(), NUM_HANDS, /*executor=*/ null, LandmarkChangeGate::new);
+    arViewDispatcher =
+        new CoalescingUiDispatcher<>(
+            state -> {
+              applyPose(state.pose, state.shape);
+              latencyTracer.mark(GestureLatencyTracer.Stage.UI_APPLIED, state.frameTimestamp);
+            });
+    poseStabilizer.setOnPoseChangedListener(
+        (previous, pose, timestampMs) -> {
+          arViewDispatcher.submit(
+              new ArViewState(pose, updateArShape(pose), handFrameTimestamp));
+          sequenceDetector.onPose(pose, timestampMs);
+        });
+    sequenceDetector.setOnSequenceDetectedListener(
+        (name, timestampMs) -> Log.i(TAG, "gesture sequence : " + name));
 
     // To show verbose logging, run:
     // adb shell setprop log.tag.MainActivity VERBOSE
     if (Log.isLoggable(TAG, Log.VERBOSE)) {
-      processor.addPacketCallback(
-          OUTPUT_LANDMARKS_STREAM_NAME,
-          (packet) -> {
-            //Log.v(TAG, "Received multi-hand landmarks packet.");
-            List<NormalizedLandmarkList> multiHandLandmarks =
-                PacketGetter.getProtoVector(packet, NormalizedLandmarkList.parser());
-            Log.v(
-                "", getMultiHandLandmarksDebugString(multiHandLandmarks));
-            //getMultiHandLandmarksDebugString(multiHandLandmarks);
-          });
+      processor
+          .getGraph()
+          .addMultiStreamCallback(
+              Arrays.asList(OUTPUT_LANDMARKS_STREAM_NAME, OUTPUT_HANDEDNESS_STREAM_NAME),
+              (packets) -> {
+                //Log.v(TAG, "Received multi-hand landmarks packet.");
+                Packet landmarksPacket = packets.get(0);
+                Packet handednessPacket = packets.get(1);
+                if (landmarksPacket.isEmpty()) {
+                  return;
+                }
+                handFrameTimestamp = landmarksPacket.getTimestamp();
+                latencyTracer.mark(GestureLatencyTracer.Stage.LANDMARKS, handFrameTimestamp);
+                // Copies the landmarks straight into landmarkData, without protos.
+                int handCount =
+                    PacketGetter.getNormalizedLandmarks(
+                        landmarksPacket, landmarkData, landmarkCounts);
+                List<ClassificationList> multiHandedness =
+                    handednessPacket.isEmpty()
+                        ? Collections.emptyList()
+                        : PacketGetter.getProtoVector(
+                            handednessPacket, ClassificationList.parser());
+                Log.v(
+                    TAG,
+                    getMultiHandLandmarksDebugString(
+                        handCount, multiHandedness, handFrameTimestamp / 1000));
+                //getMultiHandLandmarksDebugString(multiHandLandmarks);
+              });
     }
   }
 
-  private float minDist = 10;
-  private float maxDist = 0;
-  private HandPoseEnum currentPose = HandPoseEnum.FIST;
+  // Stabilized pose and overlay shape, as applied to the views on the UI thread.
+  private static final class ArViewState {
+    final HandPoseEnum pose;
+    final arShape shape;
+    // Timestamp of the frame that caused the state, for latency tracing. Not part of the state.
+    final long frameTimestamp;
+
+    ArViewState(HandPoseEnum pose, arShape shape, long frameTimestamp) {
+      this.pose = pose;
+      this.shape = shape;
+      this.frameTimestamp = frameTimestamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ArViewState)) {
+        return false;
+      }
+      ArViewState other = (ArViewState) o;
+      return pose == other.pose && shape == other.shape;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * pose.hashCode() + shape.hashCode();
+    }
+  }
 
-  private String getMultiHandLandmarksDebugString(List<NormalizedLandmarkList> multiHandLandmarks) {
-    if (multiHandLandmarks.isEmpty()) {
+  // Debounces the detected poses. Only used on the landmark callback thread.
+  private final PoseStabilizer poseStabilizer = new PoseStabilizer(HandPoseEnum.FIST);
+  // Recognizes swipes, circles and push/pull. Only used on the landmark callback thread.
+  private final MotionGestureRecognizer motionGestureRecognizer = new MotionGestureRecognizer();
+  // Handedness of the first hand, whose motion the recognizer follows, or null without hands.
+  // Only used on the landmark callback thread.
+  private HandednessEnum motionHandedness = null;
+  // Detects combos of stabilized poses and motion gestures. Only used on the landmark callback
+  // thread.
+  private final GestureSequenceDetector sequenceDetector = GestureSequenceDetector.createDefault();
+
+  private MultiHandClassifier multiHandClassifier;
+  // Applies pose changes to the views, at most once per frame.
+  private CoalescingUiDispatcher<ArViewState> arViewDispatcher;
+  // Hands of the latest landmark packet, reused across packets to avoid per-frame allocations.
+  private final MultiHandFrame handFrame = new MultiHandFrame(NUM_HANDS);
+  // Landmarks of the latest landmark packet, as copied by PacketGetter, and the landmark count of
+  // each hand.
+  private final float[] landmarkData =
+      new float[NUM_HANDS * HandLandmarks.NUM_LANDMARKS * PacketGetter.LANDMARK_FIELDS];
+  private final int[] landmarkCounts = new int[NUM_HANDS];
+  // Packet timestamp of handFrame. Only used on the landmark callback thread.
+  private long handFrameTimestamp;
+  // Traces the frames from the converter to the views.
+  private final GestureLatencyTracer latencyTracer = new GestureLatencyTracer();
+  // Maps how far the hand is opened to a 0-1 value, e.g. for a progress bar. Only used on the
+  // landmark callback thread.
+  private final HandOpennessController opennessController = new HandOpennessController();
+  // Smooths the landmarks of the hand driving the AR overlay, so the overlay does not jitter.
+  private final MultiHandLandmarkFilter landmarkFilter =
+      new MultiHandLandmarkFilter(OneEuroLandmarkFilter::new, NUM_HANDS);
+  // Filtered landmarks of every hand, hand i at i * HandLandmarks.SIZE.
+  private final float[] filteredLandmarks = new float[NUM_HANDS * HandLandmarks.SIZE];
+  // Stable pose last published to the AR overlay. Only used on the landmark callback thread.
+  private HandPoseEnum arPose = null;
+  // Shape of the AR overlay. Only used on the landmark callback thread, which publishes it to the
+  // renderers through arCoordinates.anchor.
+  private arShape arShapeState = arShape.CUBE;
+  // Records the hand frames to LANDMARK_LOG_FILE while the activity is resumed, if enabled.
+  private volatile LandmarkRecorder landmarkRecorder;
+
+  private String getMultiHandLandmarksDebugString(
+      int handCount, List<ClassificationList> multiHandedness, long timestampMs) {
+    fillHandFrame(handCount, multiHandedness, timestampMs);
+    LandmarkRecorder recorder = landmarkRecorder;
+    if (recorder != null) {
+      recorder.record(handFrame);
+    }
+    if (handFrame.getHandCount() == 0) {
+      landmarkFilter.reset();
+      opennessController.reset();
+      motionGestureRecognizer.reset();
+      motionHandedness = null;
       return "No hand landmarks";
     }
     String multiHandLandmarksStr = "";
     multiHandLandmarksStr += "\n";
 
-    NormalizedLandmarkList landmarks = multiHandLandmarks.get(0);
-    NormalizedLandmark wrist = landmarks.getLandmark(0);
-    NormalizedLandmark middle_tip = landmarks.getLandmark(12);
-    /*NormalizedLandmark thumb_tip = landmarks.getLandmark(4);
-    NormalizedLandmark index_tip = landmarks.getLandmark(8);
-    NormalizedLandmark ring_tip = landmarks.getLandmark(16);
-    NormalizedLandmark pinky_tip = landmarks.getLandmark(20);
-    NormalizedLandmark pinky_mcp = landmarks.getLandmark(17);*/
-
-    setArCoordinates(wrist, middle_tip);
-
-    /*float wrist_index = (float) Math.sqrt(Math.pow(wrist.getX() - index_tip.getX(),2) + Math.pow(wrist.getY() - index_tip.getY(),2));
-    float wrist_middle = (float) Math.sqrt(Math.pow(wrist.getX() - middle_tip.getX(),2) + Math.pow(wrist.getY() - middle_tip.getY(),2));
-    float wrist_ring = (float) Math.sqrt(Math.pow(wrist.getX() - ring_tip.getX(),2) + Math.pow(wrist.getY() - ring_tip.getY(),2));
-    float wrist_pinky = (float) Math.sqrt(Math.pow(wrist.getX() - pinky_tip.getX(),2) + Math.pow(wrist.getY() - pinky_tip.getY(),2));
-    float pinky_mcp_thumb_tip = (float) Math.sqrt(Math.pow(thumb_tip.getX() - pinky_mcp.getX(),2) + Math.pow(thumb_tip.getY() - pinky_mcp.getY(),2));*/
-
-    float wrist_middle = (float) Math.sqrt(Math.pow(wrist.getX() - middle_tip.getX(),2) + Math.pow(wrist.getY() - middle_tip.getY(),2));
-
-    float progress = 0;
-    HandPoseEnum pose = getHandPose(multiHandLandmarks, currentPose);
-    Log.i("","pose : " + pose.toString());
-
-    runOnUiThread(new Runnable() {
-      @Override
-      public void run() {
-        if (pose != currentPose) {
-          switch (pose) {
-            case FIST:
-              arCoordinates.scale = 0.0f;
-              glView.setVisibility(View.INVISIBLE);
-              surfaceView.setVisibility(View.INVISIBLE);
-              break;
-            case ONE:
-              arCoordinates.shape = arShape.CUBE;
-              break;
-            case THUMB:
-              arCoordinates.shape = arShape.VIDEO_SCREEN;
-              break;
-            case TWO:
-            case THREE:
-            case FOUR:
-              arCoordinates.scale = 0.0f;
-              //arCoordinates.shape = arShape.NO_SHAPE;
-              break;
-            default:
-              if (arCoordinates.shape == arShape.CUBE) {
-                glView.setVisibility(View.VISIBLE);
-                surfaceView.setVisibility(View.INVISIBLE);
-              } else if (arCoordinates.shape == arShape.VIDEO_SCREEN) {
-                Log.i("","here");
-                surfaceView.setVisibility(View.VISIBLE);
-                glView.setVisibility(View.INVISIBLE);
-              } else if (arCoordinates.shape == arShape.NO_SHAPE) {
-                //surfaceView.setVisibility(View.INVISIBLE);
-                //glView.setVisibility(View.INVISIBLE);
-              }
-          }
-        }
-        currentPose = pose;
-      }
-    });
+    int classifiedHands = multiHandClassifier.classify(handFrame);
+    latencyTracer.mark(GestureLatencyTracer.Stage.CLASSIFIED, handFrameTimestamp);
+    // Every hand slot keeps its own filter state, so the filters run on every frame.
+    landmarkFilter.filter(handFrame, filteredLandmarks);
+    // The landmark callback is only registered with verbose logging, so these messages are only
+    // built then.
+    for (int i = 0; i < handFrame.getHandCount(); ++i) {
+      MultiHandFrame.Hand hand = handFrame.getHand(i);
+      Log.v(
+          TAG,
+          "hand " + i + " (" + hand.getHandedness() + ") pose : " + hand.getPose()
+              + " (" + hand.getPoseConfidence() + ")");
+    }
 
-    /*Progress Bar Logic
-    if (pose == HandPoseEnum.PAPER && maxDist == 0) {
-      maxDist = wrist_middle;
+    // The first hand drives the AR overlay.
+    float[] handLandmarks = handFrame.getHand(0).getLandmarks();
+    HandPoseEnum pose = handFrame.getHand(0).getPose();
+
+    // Frames without a confident pose do not vote, so they cannot change the overlay.
+    HandPoseEnum stablePose =
+        pose != HandPoseEnum.UNKNOWN
+            ? poseStabilizer.update(pose, timestampMs)
+            : poseStabilizer.getStablePose();
+    // Hands that barely moved keep their pose, so the overlay only needs an update if the stable
+    // pose changed.
+    if (classifiedHands > 0 || stablePose != arPose) {
+      setArCoordinates(filteredLandmarks, stablePose);
+      arPose = stablePose;
     }
-    if (pose == HandPoseEnum.FIST){
-      if (minDist > 9){
-        minDist = wrist_middle;
-        maxDist = maxDist - minDist;
-      }
+
+    // The first slot now holds another hand, whose track must not be joined to the previous one's.
+    HandednessEnum handedness = handFrame.getHand(0).getHandedness();
+    if (handedness != motionHandedness) {
+      motionGestureRecognizer.reset();
+      motionHandedness = handedness;
     }
-    if ( maxDist > 0 && minDist < 9) {
-      progress = ((wrist_middle - minDist)/maxDist) * 100;
-      Log.v("", "" + progress);
-    }*/
+    MotionGestureEnum motionGesture =
+        motionGestureRecognizer.update(handLandmarks, 0, timestampMs);
+    if (motionGesture != MotionGestureEnum.NONE) {
+      Log.i(TAG, "motion gesture : " + motionGesture);
+      sequenceDetector.onMotion(motionGesture, timestampMs);
+    }
+
+    float progress = opennessController.update(handLandmarks, 0, timestampMs) * 100;
+    Log.v(TAG, "progress : " + progress);
 
     return multiHandLandmarksStr;
   }
 
+  @Override
+  protected void onPause() {
+    super.onPause();
+    stopRecordingLandmarks();
+    Log.d(
+        TAG,
+        "AR view updates posted: "
+            + arViewDispatcher.getPostedCount()
+            + ", coalesced: "
+            + arViewDispatcher.getCoalescedCount()
+            + ", unchanged: "
+            + arViewDispatcher.getUnchangedCount());
+    Log.d(
+        TAG,
+        "Hands classified: "
+            + multiHandClassifier.getEvaluatedCount()
+            + ", skipped while stationary: "
+            + multiHandClassifier.getSkippedCount());
+    reportLatency();
+  }
+
   @Override
   protected void onResume() {
     super.onResume();
     Log.i(TAG, "on resume 2");
+    startRecordingLandmarks();
     if (surfaceView.isAvailable()) {
       startPlaying(surfaceView.getSurfaceTexture());
     }
   }
 
+  // To record the hand landmarks for offline debugging, run:
+  // adb shell setprop log.tag.LandmarkRecorder DEBUG
+  // adb shell setprop log.tag.MainActivity VERBOSE
+  // The hand frames only reach the recorder through the landmark callback, which is only
+  // registered with verbose logging.
+  private void startRecordingLandmarks() {
+    if (!Log.isLoggable(LANDMARK_RECORDER_TAG, Log.DEBUG)) {
+      return;
+    }
+    File file = new File(getExternalFilesDir(null), LANDMARK_LOG_FILE);
+    try {
+      landmarkRecorder = new LandmarkRecorder(file, NUM_HANDS);
+      Log.d(LANDMARK_RECORDER_TAG, "Recording hand landmarks to " + file);
+    } catch (IOException e) {
+      Log.e(LANDMARK_RECORDER_TAG, "Failed to open " + file + ": " + e);
+    }
+  }
+
+  private void stopRecordingLandmarks() {
+    LandmarkRecorder recorder = landmarkRecorder;
+    if (recorder == null) {
+      return;
+    }
+    landmarkRecorder = null;
+    try {
+      recorder.close();
+    } catch (IOException e) {
+      Log.e(LANDMARK_RECORDER_TAG, "Failed to write hand landmarks: " + e);
+    }
+    Log.d(
+        LANDMARK_RECORDER_TAG,
+        "Recorded "
+            + recorder.getWrittenCount()
+            + " frames, dropped "
+            + recorder.getDroppedCount());
+  }
+
+  // To also write the latency report to a file, run:
+  // adb shell setprop log.tag.GestureLatency DEBUG
+  private void reportLatency() {
+    for (GestureLatencyTracer.Stage stage : GestureLatencyTracer.Stage.values()) {
+      LatencyHistogram histogram = latencyTracer.getHistogram(stage);
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      Log.i(
+          LATENCY_TAG,
+          stage
+              + " latency us: p50 "
+              + histogram.getPercentileMicros(0.50)
+              + ", p95 "
+              + histogram.getPercentileMicros(0.95)
+              + ", p99 "
+              + histogram.getPercentileMicros(0.99)
+              + " (" + histogram.getCount() + " frames)");
+    }
+    if (!Log.isLoggable(LATENCY_TAG, Log.DEBUG)) {
+      return;
+    }
+    File file = new File(getExternalFilesDir(null), LATENCY_REPORT_FILE);
+    try {
+      latencyTracer.dump(file);
+      Log.d(LATENCY_TAG, "Wrote latency report to " + file);
+    } catch (IOException e) {
+      Log.e(LATENCY_TAG, "Failed to write " + file + ": " + e);
+    }
+  }
+
   private void startPlaying(SurfaceTexture surfaceTexture)
   {
     Log.i(TAG, "start playing");
@@ -218,131 +440,194 @@ public class MainActivity extends com.google.mediapipe.apps.basic.MainActivity i
     });
   }
 
-  private void setArCoordinates(NormalizedLandmark wrist, NormalizedLandmark middle_tip) {
+  private void setArCoordinates(float[] landmarks, HandPoseEnum pose) {
 
-    float wristX = wrist.getX();
-    float wristY = wrist.getY();
-    float wristZ = wrist.getZ();
-    float middleX = middle_tip.getX();
-    float middleY = middle_tip.getY();
-    float middleZ = middle_tip.getZ();
+    float wristX = HandLandmarks.x(landmarks, 0, HandLandmarks.WRIST);
+    float wristY = HandLandmarks.y(landmarks, 0, HandLandmarks.WRIST);
+    float wristZ = HandLandmarks.z(landmarks, 0, HandLandmarks.WRIST);
+    float middleX = HandLandmarks.x(landmarks, 0, HandLandmarks.MIDDLE_TIP);
+    float middleY = HandLandmarks.y(landmarks, 0, HandLandmarks.MIDDLE_TIP);
+    float middleZ = HandLandmarks.z(landmarks, 0, HandLandmarks.MIDDLE_TIP);
 
+    float xLoc;
     if (wristX > middleX) {
-      arCoordinates.xLoc = wristX - (wristX - middleX)/3;
+      xLoc = wristX - (wristX - middleX)/3;
     } else {
-      arCoordinates.xLoc = wristX + (middleX - wristX)/3;
+      xLoc = wristX + (middleX - wristX)/3;
     }
 
+    float yLoc;
     if (wristY > middleY) {
-      //arCoordinates.yLoc = middleY + (wristY - middleY)/2;
-      arCoordinates.yLoc = middleY;// - (wristY - middleY)/2;
+      //yLoc = middleY + (wristY - middleY)/2;
+      yLoc = middleY;// - (wristY - middleY)/2;
     } else {
-      //arCoordinates.yLoc = wristY + (middleY - wristY)/2;
-      arCoordinates.yLoc = wristY;// - (middleY - wristY)/2;
+      //yLoc = wristY + (middleY - wristY)/2;
+      yLoc = wristY;// - (middleY - wristY)/2;
     }
 
-    arCoordinates.zLoc = wristZ;
+    float zLoc = wristZ;
+
+    float scale = (float) Math.sqrt(Math.pow(wristX - middleX,2) + Math.pow(wristY - middleY,2)) * 1.5f;
+    switch (pose) {
+      case FIST:
+      case TWO:
+      case PEACE:
+      case THREE:
+      case FOUR:
+        scale = 0.0f;
+        break;
+      default:
+        break;
+    }
 
-    arCoordinates.scale = (float) Math.sqrt(Math.pow(wristX - middleX,2) + Math.pow(wristY - middleY,2)) * 1.5f;
+    arCoordinates.anchor.publish(xLoc, yLoc, zLoc, scale, arShapeState, pose);
+  }
 
+  // Selects the AR overlay shape for a new stabilized pose. Runs on the landmark callback thread.
+  private arShape updateArShape(HandPoseEnum pose) {
+    switch (pose) {
+      case ONE:
+        arShapeState = arShape.CUBE;
+        break;
+      case THUMB:
+        arShapeState = arShape.VIDEO_SCREEN;
+        break;
+      case TWO:
+      case THREE:
+      case FOUR:
+        //arShapeState = arShape.NO_SHAPE;
+        break;
+      default:
+        break;
+    }
+    return arShapeState;
   }
 
-  HandPoseEnum getHandPose(List<NormalizedLandmarkList> multiHandLandmarks, HandPoseEnum currentPose){
-    NormalizedLandmarkList landmarks = multiHandLandmarks.get(0);
-    NormalizedLandmark wrist = landmarks.getLandmark(0);
-    NormalizedLandmark thumb_tip = landmarks.getLandmark(4);
-    NormalizedLandmark index_mcp = landmarks.getLandmark(5);
-    NormalizedLandmark index_tip = landmarks.getLandmark(8);
-    NormalizedLandmark middle_mcp = landmarks.getLandmark(9);
-    NormalizedLandmark middle_pip = landmarks.getLandmark(10);
-    NormalizedLandmark middle_tip = landmarks.getLandmark(12);
-    NormalizedLandmark ring_mcp = landmarks.getLandmark(13);
-    NormalizedLandmark ring_tip = landmarks.getLandmark(16);
-    NormalizedLandmark pinky_mcp = landmarks.getLandmark(17);
-    NormalizedLandmark pinky_tip = landmarks.getLandmark(20);
-
-    float thumb_tip_middle_pip = (float) Math.sqrt(Math.pow(thumb_tip.getX() - middle_pip.getX(),2) + Math.pow(thumb_tip.getY() - middle_pip.getY(),2));
-    float thumb_tip_middle_mcp = (float) Math.sqrt(Math.pow(thumb_tip.getX() - middle_mcp.getX(),2) + Math.pow(thumb_tip.getY() - middle_mcp.getY(),2));
-    float thumb_tip_index_mcp = (float) Math.sqrt(Math.pow(thumb_tip.getX() - index_mcp.getX(),2) + Math.pow(thumb_tip.getY() - index_mcp.getY(),2));
-
-    float wrist_index_mcp = (float) Math.sqrt(Math.pow(index_mcp.getX() - wrist.getX(),2) + Math.pow(index_mcp.getY() - wrist.getY(),2));
-    float wrist_middle_mcp = (float) Math.sqrt(Math.pow(middle_mcp.getX() - wrist.getX(),2) + Math.pow(middle_mcp.getY() - wrist.getY(),2));
-    float wrist_ring_mcp = (float) Math.sqrt(Math.pow(ring_mcp.getX() - wrist.getX(),2) + Math.pow(ring_mcp.getY() - wrist.getY(),2));
-    float wrist_pinky_mcp = (float) Math.sqrt(Math.pow(pinky_mcp.getX() - wrist.getX(),2) + Math.pow(pinky_mcp.getY() - wrist.getY(),2));
-
-    float wrist_index_tip = (float) Math.sqrt(Math.pow(index_tip.getX() - wrist.getX(),2) + Math.pow(index_tip.getY() - wrist.getY(),2));
-    float wrist_middle_tip = (float) Math.sqrt(Math.pow(middle_tip.getX() - wrist.getX(),2) + Math.pow(middle_tip.getY() - wrist.getY(),2));
-    float wrist_ring_tip = (float) Math.sqrt(Math.pow(ring_tip.getX() - wrist.getX(),2) + Math.pow(ring_tip.getY() - wrist.getY(),2));
-    float wrist_pinky_tip = (float) Math.sqrt(Math.pow(pinky_tip.getX() - wrist.getX(),2) + Math.pow(pinky_tip.getY() - wrist.getY(),2));
-
-    boolean isThumbOpen = isThumbOpen(wrist_middle_mcp, wrist_middle_tip, thumb_tip_middle_pip,
-            thumb_tip_middle_mcp, thumb_tip_index_mcp);
-    boolean isIndexOpen = isIndexOpen(wrist_index_mcp, wrist_index_tip);
-    boolean isMiddleOpen = isMiddleOpen(wrist_middle_mcp, wrist_middle_tip);
-    boolean isRingOpen = isRingOpen(wrist_ring_mcp, wrist_ring_tip);
-    boolean isPinkyOpen = isPinkyOpen(wrist_pinky_mcp, wrist_pinky_tip);
-
-    HandPoseEnum handPose;
-    if (!isThumbOpen && !isIndexOpen && !isMiddleOpen && !isRingOpen && !isPinkyOpen){
-      handPose = HandPoseEnum.FIST;
-    } else if (isThumbOpen && isIndexOpen && isMiddleOpen && isRingOpen && isPinkyOpen) {
-      handPose = HandPoseEnum.PAPER;
-    } else if (!isThumbOpen && isIndexOpen && !isMiddleOpen && !isRingOpen && !isPinkyOpen) {
-      handPose = HandPoseEnum.ONE;
-    } else if (!isThumbOpen && isIndexOpen && isMiddleOpen && !isRingOpen && !isPinkyOpen) {
-      handPose = HandPoseEnum.TWO;
-    } else if (!isThumbOpen && isIndexOpen && isMiddleOpen && isRingOpen && !isPinkyOpen) {
-      handPose = HandPoseEnum.THREE;
-    } else if (!isThumbOpen && isIndexOpen && isMiddleOpen && isRingOpen && isPinkyOpen) {
-      handPose = HandPoseEnum.FOUR;
-    } else if (isThumbOpen && !isIndexOpen && !isMiddleOpen && !isRingOpen && !isPinkyOpen) {
-      handPose = HandPoseEnum.THUMB;
-    } else if (isThumbOpen && isIndexOpen && !isMiddleOpen && !isRingOpen && !isPinkyOpen) {
-      handPose = HandPoseEnum.RIGHT;
-    } else if (!isThumbOpen && isIndexOpen && isMiddleOpen && !isRingOpen && !isPinkyOpen) {
-      handPose = HandPoseEnum.PEACE;
-    } else if (!isThumbOpen && isIndexOpen && !isMiddleOpen && !isRingOpen && isPinkyOpen) {
-      handPose = HandPoseEnum.SPIDERMAN;
-    } else {
-      //handPose = HandPoseEnum.UNKNOWN;
-      handPose = currentPose;
+  // Updates the AR views for a new stabilized pose. Must run on the UI thread.
+  private void applyPose(HandPoseEnum pose, arShape shape) {
+    switch (pose) {
+      case FIST:
+        glView.setVisibility(View.INVISIBLE);
+        surfaceView.setVisibility(View.INVISIBLE);
+        break;
+      case ONE:
+      case THUMB:
+      case TWO:
+      case PEACE:
+      case THREE:
+      case FOUR:
+        break;
+      default:
+        if (shape == arShape.CUBE) {
+          glView.setVisibility(View.VISIBLE);
+          surfaceView.setVisibility(View.INVISIBLE);
+        } else if (shape == arShape.VIDEO_SCREEN) {
+          Log.i(TAG, "here");
+          surfaceView.setVisibility(View.VISIBLE);
+          glView.setVisibility(View.INVISIBLE);
+        } else if (shape == arShape.NO_SHAPE) {
+          //surfaceView.setVisibility(View.INVISIBLE);
+          //glView.setVisibility(View.INVISIBLE);
+        }
     }
+  }
 
-    return handPose;
+  private HandPoseTable loadHandPoseTable() {
+    try (InputStream config = getAssets().open(HAND_POSE_TABLE_ASSET)) {
+      return HandPoseTable.parse(config);
+    } catch (IOException | IllegalArgumentException e) {
+      Log.e(TAG, "Failed to load " + HAND_POSE_TABLE_ASSET + ", using default poses: " + e);
+      return HandPoseTable.createDefault();
+    }
   }
 
-  private boolean isIndexOpen(float wrist_index_mcp, float wrist_index_tip){
-    return wrist_index_mcp > wrist_index_tip ? false : true;
+  // Prefers recorded templates, then a trained model, then the pose rules, then the pose table.
+  private Supplier<HandClassifier> createHandClassifierFactory() {
+    GestureTemplateStore handPoseTemplates = loadHandPoseTemplates();
+    if (handPoseTemplates != null) {
+      // Template classifiers keep their match result, so each hand slot gets its own instance.
+      return () -> new TemplateHandPoseClassifier(handPoseTemplates);
+    }
+    HandPoseModel handPoseModel = loadHandPoseModel();
+    if (handPoseModel != null) {
+      // The learned classifier keeps its activations, so each hand slot gets its own instance.
+      return () -> new LearnedHandPoseClassifier(handPoseModel);
+    }
+    GestureRuleSet handPoseRules = loadHandPoseRules();
+    if (handPoseRules != null) {
+      // Rule classifiers keep their feature values, so each hand slot gets its own instance.
+      return () -> new RuleHandPoseClassifier(handPoseRules);
+    }
+    HandPoseClassifier handPoseClassifier = new HandPoseClassifier(loadHandPoseTable());
+    return () -> handPoseClassifier;
   }
 
-  private boolean isMiddleOpen(float wrist_middle_mcp, float wrist_middle_tip){
-    return wrist_middle_mcp > wrist_middle_tip ? false : true;
+  private GestureRuleSet loadHandPoseRules() {
+    try (InputStream config = getAssets().open(HAND_POSE_RULES_ASSET)) {
+      return GestureRuleSet.parse(config);
+    } catch (IOException | IllegalArgumentException e) {
+      Log.e(TAG, "Failed to load " + HAND_POSE_RULES_ASSET + ", using the pose table: " + e);
+      return null;
+    }
   }
 
-  private boolean isRingOpen(float wrist_ring_mcp, float wrist_ring_tip){
-    return wrist_ring_mcp > wrist_ring_tip ? false : true;
+  private GestureTemplateStore loadHandPoseTemplates() {
+    try (InputStream templates = getAssets().open(HAND_POSE_TEMPLATES_ASSET)) {
+      GestureTemplateStore store = new GestureTemplateStore();
+      store.readFrom(templates);
+      // Fails on templates not labelled with a pose rather than on the first classified frame.
+      new TemplateHandPoseClassifier(store);
+      return store;
+    } catch (IOException | IllegalArgumentException e) {
+      Log.i(TAG, "No usable " + HAND_POSE_TEMPLATES_ASSET + ", using built-in poses: " + e);
+      return null;
+    }
   }
 
-  private boolean isPinkyOpen(float wrist_pinky_mcp, float wrist_pinky_tip){
-    return wrist_pinky_mcp > wrist_pinky_tip ? false : true;
+  private HandPoseModel loadHandPoseModel() {
+    try (InputStream model = getAssets().open(HAND_POSE_MODEL_ASSET)) {
+      return HandPoseModel.readFrom(model);
+    } catch (IOException e) {
+      Log.i(TAG, "No usable " + HAND_POSE_MODEL_ASSET + ", using rule-based poses: " + e);
+      return null;
+    }
   }
 
-  private boolean isThumbOpen(float wrist_middle_mcp, float wrist_middle_tip,
-                              float thumb_tip_middle_pip, float thumb_tip_middle_mcp,
-                              float thumb_tip_index_mcp){
-    boolean isThumbOpen = false;
-    if (wrist_middle_mcp > wrist_middle_tip) {
-      if (thumb_tip_middle_pip < 0.08) {
-      } else {
-        isThumbOpen = true;
+  private void fillHandFrame(
+      int handCount, List<ClassificationList> multiHandedness, long timestampMs) {
+    handFrame.begin(timestampMs);
+    int offset = 0;
+    for (int i = 0; i < handCount; ++i) {
+      int landmarkCount = landmarkCounts[i];
+      if (landmarkCount != HandLandmarks.NUM_LANDMARKS) {
+        offset += landmarkCount * PacketGetter.LANDMARK_FIELDS;
+        continue;
       }
-    } else {
-      if (thumb_tip_middle_mcp < 0.08 || thumb_tip_index_mcp < 0.08) {
-      } else {
-        isThumbOpen = true;
+      MultiHandFrame.Hand hand = handFrame.addHand();
+      if (hand == null) {
+        break;
+      }
+      copyLandmarks(landmarkData, offset, hand.getLandmarks());
+      offset += landmarkCount * PacketGetter.LANDMARK_FIELDS;
+      if (i < multiHandedness.size() && multiHandedness.get(i).getClassificationCount() > 0) {
+        Classification handedness = multiHandedness.get(i).getClassification(0);
+        hand.setHandedness(
+            "Left".equals(handedness.getLabel()) ? HandednessEnum.LEFT : HandednessEnum.RIGHT,
+            handedness.getScore());
       }
     }
-    return isThumbOpen;
+  }
+
+  // Keeps the (x, y, z) triples of the landmarks copied by PacketGetter, dropping the visibility
+  // and presence the classifiers do not use.
+  private static void copyLandmarks(float[] landmarks, int offset, float[] out) {
+    for (int i = 0; i < HandLandmarks.NUM_LANDMARKS; ++i) {
+      int in = offset + i * PacketGetter.LANDMARK_FIELDS;
+      int base = i * HandLandmarks.STRIDE;
+      out[base] = landmarks[in];
+      out[base + 1] = landmarks[in + 1];
+      out[base + 2] = landmarks[in + 2];
+    }
   }
 
   @Override
@@ -19,6 +19,7 @@ public class MyGlCubeRenderer implements GLSurfaceView.Renderer {
     private float[] viewMatrix = new float[16];
     private float[] projectionMatrix = new float[16];
     private float[] MVPMatrix = new float[16];
+    private final ArAnchorSnapshot.Values anchor = new ArAnchorSnapshot.Values();
 
     private final FloatBuffer cubePositions;
     private final FloatBuffer cubeColors;
@@ -286,15 +287,16 @@ public class MyGlCubeRenderer implements GLSurfaceView.Renderer {
         float angleInDegrees = (360.0f / 10000.0f) * ((int) time);
         float sizeInDegrees = (1.0f / 10000.0f) * ((int) time);
 
-        //Log.i("Renderer","coords vals - " + arCoordinates.xLoc + ", " + arCoordinates.yLoc + ", " + arCoordinates.zLoc);
+        arCoordinates.anchor.read(anchor);
+        //Log.i("Renderer","coords vals - " + anchor.xLoc + ", " + anchor.yLoc + ", " + anchor.zLoc);
 
         Matrix.setIdentityM(modelMatrix, 0);
-        Matrix.translateM(modelMatrix, 0, (arCoordinates.xLoc - 0.5f) * 7,-(arCoordinates.yLoc - 0.5f) * 15,-5.0f);
+        Matrix.translateM(modelMatrix, 0, (anchor.xLoc - 0.5f) * 7,-(anchor.yLoc - 0.5f) * 15,-5.0f);
         /*if (sizeInDegrees < 1) {
             Matrix.scaleM(modelMatrix, 0, sizeInDegrees, sizeInDegrees, sizeInDegrees);
         }*/
         Matrix.rotateM(modelMatrix, 0, angleInDegrees, 0.0f, 1.0f, 0.0f);
-        Matrix.scaleM(modelMatrix, 0, arCoordinates.scale, arCoordinates.scale, arCoordinates.scale);
+        Matrix.scaleM(modelMatrix, 0, anchor.scale, anchor.scale, anchor.scale);
         Matrix.rotateM(modelMatrix, 0, 45, 0.0f, 0.0f, 1.0f);
         Matrix.rotateM(modelMatrix, 0, 45, 1.0f, 0.0f, 0.0f);
 
@@ -19,6 +19,7 @@ public class VideoTextureRenderer extends TextureSurfaceRenderer implements Surf
     private float[] viewMatrix = new float[16];
     private float[] projectionMatri = new float[16];
     private float[] MVPMatrix = new float[16];
+    private final ArAnchorSnapshot.Values anchor = new ArAnchorSnapshot.Values();
 
     private static final String VERTEX_SHADER_CODE =
             "uniform mat4 u_MVPMatrix;" +
@@ -211,9 +212,10 @@ public class VideoTextureRenderer extends TextureSurfaceRenderer implements Surf
         GLES20.glEnableVertexAttribArray(textureCoordinateHandle);
         GLES20.glVertexAttribPointer(textureCoordinateHandle, 4, GLES20.GL_FLOAT, false, 0, textureBuffer);
 
-        float scale = arCoordinates.scale * 3;
+        arCoordinates.anchor.read(anchor);
+        float scale = anchor.scale * 3;
         Matrix.setIdentityM(modelMatrix, 0);
-        Matrix.translateM(modelMatrix, 0, (arCoordinates.xLoc-0.38f)*5, -(arCoordinates.yLoc - 0.38f - (float) (Math.pow(2, scale/4))/5)*8, -4.0f);
+        Matrix.translateM(modelMatrix, 0, (anchor.xLoc-0.38f)*5, -(anchor.yLoc - 0.38f - (float) (Math.pow(2, scale/4))/5)*8, -4.0f);
         Matrix.scaleM(modelMatrix, 0, (scale * 1.77f), scale * 1.0f, 1.0f);
 
         Matrix.multiplyMM(MVPMatrix, 0, viewMatrix, 0, modelMatrix, 0);
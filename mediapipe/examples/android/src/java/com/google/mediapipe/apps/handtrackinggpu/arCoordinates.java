@@ -4,10 +4,8 @@ import java.util.Observable;
 
 public class arCoordinates extends Observable {
 
-    public static float xLoc = 0.0f, yLoc = 0.0f, zLoc = 0.0f;
-    public static float scale = 0.0f;
-
-    public static arShape shape = arShape.CUBE;
+    // Written by the landmark callback thread, read by the renderers.
+    public static final ArAnchorSnapshot anchor = new ArAnchorSnapshot();
 
     public static boolean turnCubeOn = false;
     public static boolean turnVideoOn = false;
@@ -0,0 +1,64 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Exponential moving average over the landmarks of one hand.
+ *
+ * <p>The smoothing factor is derived from the time elapsed since the previous frame, so the amount
+ * of smoothing does not depend on the frame rate. This class is not thread-safe.
+ */
+public final class EmaLandmarkFilter implements LandmarkFilter {
+  private final float timeConstantMs;
+  private final float[] state = new float[HandLandmarks.SIZE];
+  private long lastTimestampMs;
+  private boolean initialized = false;
+
+  /**
+   * @param timeConstantMs time after which a step in the input is followed to about 63%; larger
+   *     values smooth more and lag more.
+   */
+  public EmaLandmarkFilter(float timeConstantMs) {
+    if (!(timeConstantMs > 0)) {
+      throw new IllegalArgumentException("timeConstantMs must be positive.");
+    }
+    this.timeConstantMs = timeConstantMs;
+  }
+
+  @Override
+  public void filter(float[] src, int srcOffset, float[] dst, int dstOffset, long timestampMs) {
+    if (src.length < srcOffset + HandLandmarks.SIZE
+        || dst.length < dstOffset + HandLandmarks.SIZE) {
+      throw new IllegalArgumentException("Arrays must hold " + HandLandmarks.SIZE + " floats.");
+    }
+    if (!initialized) {
+      System.arraycopy(src, srcOffset, state, 0, HandLandmarks.SIZE);
+      initialized = true;
+      lastTimestampMs = timestampMs;
+    } else if (timestampMs > lastTimestampMs) {
+      float alpha = (float) -Math.expm1(-(timestampMs - lastTimestampMs) / timeConstantMs);
+      for (int i = 0; i < HandLandmarks.SIZE; ++i) {
+        state[i] += alpha * (src[srcOffset + i] - state[i]);
+      }
+      lastTimestampMs = timestampMs;
+    }
+    System.arraycopy(state, 0, dst, dstOffset, HandLandmarks.SIZE);
+  }
+
+  @Override
+  public void reset() {
+    initialized = false;
+  }
+}
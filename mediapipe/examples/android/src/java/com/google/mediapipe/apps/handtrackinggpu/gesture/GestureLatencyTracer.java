@@ -0,0 +1,175 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how long camera frames take to go through the gesture pipeline, from the moment a frame
+ * leaves the texture converter to the moment the pose change it caused is applied to the views.
+ *
+ * <p>Each stage is marked with the timestamp of the frame it processes, the same timestamp the
+ * graph gives to the packets derived from it, so the stages can run on different threads. The
+ * latency of a stage is the time since the frame was marked at {@link Stage#CONVERTER_OUTPUT}, and
+ * is added to the {@link LatencyHistogram} of the stage.
+ *
+ * <p>Frames in flight are kept in a fixed table indexed by timestamp, so marking a stage is
+ * allocation-free and takes constant time. A frame whose entry was reused by a later frame before
+ * it reached a stage, e.g. because only pose changes reach {@link Stage#UI_APPLIED} and they may
+ * come seconds after the frame, is counted as missed instead. All methods are thread-safe.
+ */
+public final class GestureLatencyTracer {
+  /** Points of the pipeline where frames are traced, in the order frames reach them. */
+  public enum Stage {
+    /** The converted camera frame is handed to the frame processor. Starts the trace. */
+    CONVERTER_OUTPUT,
+    /** The frame was added to the graph input stream. */
+    GRAPH_INPUT,
+    /** The landmarks of the frame were delivered to the app. */
+    LANDMARKS,
+    /** The hands of the frame were classified. */
+    CLASSIFIED,
+    /** The pose change caused by the frame was applied to the views. */
+    UI_APPLIED
+  }
+
+  /** Default number of frames that can be traced at the same time. */
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private static final Stage[] STAGES = Stage.values();
+  private static final long NO_FRAME = Long.MIN_VALUE;
+
+  private final int mask;
+  // Timestamp of the frame traced in each entry, or NO_FRAME while the entry is being written.
+  private final AtomicLongArray timestamps;
+  private final AtomicLongArray startNanos;
+  private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+  private final AtomicLong missedCount = new AtomicLong();
+
+  public GestureLatencyTracer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** @param capacity number of frames that can be traced at the same time, a power of two. */
+  public GestureLatencyTracer(int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    mask = capacity - 1;
+    timestamps = new AtomicLongArray(capacity);
+    startNanos = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; ++i) {
+      timestamps.set(i, NO_FRAME);
+    }
+    for (int i = 0; i < histograms.length; ++i) {
+      histograms[i] = new LatencyHistogram();
+    }
+  }
+
+  /** Marks the frame with {@code timestamp} as having reached {@code stage} now. */
+  public void mark(Stage stage, long timestamp) {
+    long now = System.nanoTime();
+    int entry = entryOf(timestamp);
+    if (stage == Stage.CONVERTER_OUTPUT) {
+      // Invalidate the entry while it is being written, so it is never read half-written.
+      timestamps.set(entry, NO_FRAME);
+      startNanos.set(entry, now);
+      timestamps.set(entry, timestamp);
+      return;
+    }
+    if (timestamps.get(entry) != timestamp) {
+      missedCount.incrementAndGet();
+      return;
+    }
+    long start = startNanos.get(entry);
+    if (timestamps.get(entry) != timestamp) {
+      missedCount.incrementAndGet();
+      return;
+    }
+    histograms[stage.ordinal()].record(now - start);
+  }
+
+  /** Returns the latencies of {@code stage}, measured from {@link Stage#CONVERTER_OUTPUT}. */
+  public LatencyHistogram getHistogram(Stage stage) {
+    return histograms[stage.ordinal()];
+  }
+
+  /** Returns the number of marks for frames that were no longer, or never, traced. */
+  public long getMissedCount() {
+    return missedCount.get();
+  }
+
+  /** Clears the histograms and the missed count. Frames in flight are still traced. */
+  public void reset() {
+    for (LatencyHistogram histogram : histograms) {
+      histogram.reset();
+    }
+    missedCount.set(0);
+  }
+
+  /**
+   * Writes a table with the sample count and the p50, p95, p99 and maximum latencies, in
+   * milliseconds, of every stage after {@link Stage#CONVERTER_OUTPUT}.
+   */
+  public void writeTo(Writer writer) throws IOException {
+    writer.write(
+        String.format(
+            Locale.US,
+            "%-12s %8s %8s %8s %8s %8s%n",
+            "stage",
+            "count",
+            "p50_ms",
+            "p95_ms",
+            "p99_ms",
+            "max_ms"));
+    for (int i = 1; i < STAGES.length; ++i) {
+      LatencyHistogram histogram = histograms[i];
+      writer.write(
+          String.format(
+              Locale.US,
+              "%-12s %8d %8.2f %8.2f %8.2f %8.2f%n",
+              STAGES[i],
+              histogram.getCount(),
+              histogram.getPercentileMicros(0.50) / 1000.0,
+              histogram.getPercentileMicros(0.95) / 1000.0,
+              histogram.getPercentileMicros(0.99) / 1000.0,
+              histogram.getMaxMicros() / 1000.0));
+    }
+    writer.write(String.format(Locale.US, "missed %d%n", getMissedCount()));
+  }
+
+  /** Writes the table of {@link #writeTo} to {@code file}, replacing its content. */
+  public void dump(File file) throws IOException {
+    try (Writer writer =
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      writeTo(writer);
+    }
+  }
+
+  // Package-private for tests.
+  int entryOf(long timestamp) {
+    // Frame timestamps are evenly spaced, so mix the bits to spread them over the table.
+    long hash = timestamp * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 32) & mask;
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.mediapipe.apps.handtrackinggpu.gesture.GestureLatencyTracer.Stage;
+import java.io.StringWriter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link GestureLatencyTracer}. */
+@RunWith(JUnit4.class)
+public final class GestureLatencyTracerTest {
+  private static final int CAPACITY = 4;
+
+  @Test
+  public void mark_recordsLatencySinceConverterOutput() {
+    GestureLatencyTracer tracer = new GestureLatencyTracer(CAPACITY);
+    tracer.mark(Stage.CONVERTER_OUTPUT, 1000);
+    tracer.mark(Stage.GRAPH_INPUT, 1000);
+    tracer.mark(Stage.LANDMARKS, 1000);
+    tracer.mark(Stage.LANDMARKS, 1000);
+    assertEquals(1, tracer.getHistogram(Stage.GRAPH_INPUT).getCount());
+    assertEquals(2, tracer.getHistogram(Stage.LANDMARKS).getCount());
+    assertEquals(0, tracer.getHistogram(Stage.CLASSIFIED).getCount());
+    assertEquals(0, tracer.getMissedCount());
+  }
+
+  @Test
+  public void mark_frameNeverTracedIsMissed() {
+    GestureLatencyTracer tracer = new GestureLatencyTracer(CAPACITY);
+    tracer.mark(Stage.LANDMARKS, 1000);
+    assertEquals(1, tracer.getMissedCount());
+    assertEquals(0, tracer.getHistogram(Stage.LANDMARKS).getCount());
+  }
+
+  @Test
+  public void mark_afterEntryReuseIsMissed() {
+    GestureLatencyTracer tracer = new GestureLatencyTracer(CAPACITY);
+    long evicted = 33333;
+    long later = evicted + 33333;
+    while (tracer.entryOf(later) != tracer.entryOf(evicted)) {
+      later += 33333;
+    }
+    tracer.mark(Stage.CONVERTER_OUTPUT, evicted);
+    tracer.mark(Stage.CONVERTER_OUTPUT, later);
+
+    tracer.mark(Stage.UI_APPLIED, evicted);
+    assertEquals(1, tracer.getMissedCount());
+    assertEquals(0, tracer.getHistogram(Stage.UI_APPLIED).getCount());
+
+    tracer.mark(Stage.UI_APPLIED, later);
+    assertEquals(1, tracer.getMissedCount());
+    assertEquals(1, tracer.getHistogram(Stage.UI_APPLIED).getCount());
+  }
+
+  @Test
+  public void mark_framesInOtherEntriesAreKept() {
+    GestureLatencyTracer tracer = new GestureLatencyTracer(CAPACITY);
+    long first = 33333;
+    long second = first + 33333;
+    while (tracer.entryOf(second) == tracer.entryOf(first)) {
+      second += 33333;
+    }
+    tracer.mark(Stage.CONVERTER_OUTPUT, first);
+    tracer.mark(Stage.CONVERTER_OUTPUT, second);
+    tracer.mark(Stage.CLASSIFIED, first);
+    tracer.mark(Stage.CLASSIFIED, second);
+    assertEquals(0, tracer.getMissedCount());
+    assertEquals(2, tracer.getHistogram(Stage.CLASSIFIED).getCount());
+  }
+
+  @Test
+  public void reset_keepsFramesInFlight() {
+    GestureLatencyTracer tracer = new GestureLatencyTracer(CAPACITY);
+    tracer.mark(Stage.CONVERTER_OUTPUT, 1000);
+    tracer.mark(Stage.GRAPH_INPUT, 1000);
+    tracer.mark(Stage.GRAPH_INPUT, 2000);
+    tracer.reset();
+    assertEquals(0, tracer.getMissedCount());
+    assertEquals(0, tracer.getHistogram(Stage.GRAPH_INPUT).getCount());
+    tracer.mark(Stage.LANDMARKS, 1000);
+    assertEquals(1, tracer.getHistogram(Stage.LANDMARKS).getCount());
+  }
+
+  @Test
+  public void writeTo_listsStagesAfterConverterOutput() throws Exception {
+    GestureLatencyTracer tracer = new GestureLatencyTracer(CAPACITY);
+    tracer.mark(Stage.CONVERTER_OUTPUT, 1000);
+    tracer.mark(Stage.UI_APPLIED, 1000);
+    StringWriter writer = new StringWriter();
+    tracer.writeTo(writer);
+    String report = writer.toString();
+    assertTrue(report, report.contains("UI_APPLIED"));
+    assertTrue(report, !report.contains("CONVERTER_OUTPUT"));
+    assertTrue(report, report.contains("missed 0"));
+  }
+
+  @Test
+  public void constructor_rejectsCapacityNotPowerOfTwo() {
+    try {
+      new GestureLatencyTracer(3);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
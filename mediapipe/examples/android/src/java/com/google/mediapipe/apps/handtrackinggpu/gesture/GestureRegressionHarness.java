@@ -0,0 +1,252 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Replays directories of landmark logs through the gesture stack on a plain JVM and reports how
+ * the poses were classified, for regression testing of classifier and stabilizer changes.
+ *
+ * <p>Logs are the {@code .hlr} files written by {@link LandmarkRecorder}, labelled as described in
+ * {@link LandmarkLogFormat#labelOf}; unlabelled logs are replayed for throughput and sequence
+ * counts only. The logs are memory-mapped and replayed in parallel, one task per log.
+ *
+ * <pre>
+ * bazel run :regression -- [--model=FILE | --rules=FILE | --poses=FILE | --templates=FILE]
+ *     [--no-gate] [--threads=N] [--min-accuracy=X] [--verbose] LOG_OR_DIRECTORY...
+ * </pre>
+ *
+ * <p>Like the app, hands that barely moved keep their pose instead of being classified again;
+ * {@code --no-gate} classifies every hand on every frame instead.
+ *
+ * <p>The per-frame classification accuracy over all labelled logs is compared with {@code
+ * --min-accuracy}, and the process exits with status 1 if it is lower, so the harness can gate CI.
+ */
+public final class GestureRegressionHarness {
+  private static final int MAX_HANDS = 2;
+
+  private GestureRegressionHarness() {}
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    String modelPath = null;
+    String rulesPath = null;
+    String posesPath = null;
+    String templatesPath = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+    float minAccuracy = 0;
+    boolean verbose = false;
+    boolean gate = true;
+    List<File> logs = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--model=")) {
+        modelPath = arg.substring("--model=".length());
+      } else if (arg.startsWith("--rules=")) {
+        rulesPath = arg.substring("--rules=".length());
+      } else if (arg.startsWith("--poses=")) {
+        posesPath = arg.substring("--poses=".length());
+      } else if (arg.startsWith("--templates=")) {
+        templatesPath = arg.substring("--templates=".length());
+      } else if (arg.startsWith("--threads=")) {
+        threads = Integer.parseInt(arg.substring("--threads=".length()));
+      } else if (arg.startsWith("--min-accuracy=")) {
+        minAccuracy = Float.parseFloat(arg.substring("--min-accuracy=".length()));
+      } else if (arg.equals("--verbose")) {
+        verbose = true;
+      } else if (arg.equals("--no-gate")) {
+        gate = false;
+      } else if (arg.startsWith("--")) {
+        usage();
+      } else {
+        collectLogs(new File(arg), logs);
+      }
+    }
+    int classifiers =
+        (modelPath != null ? 1 : 0)
+            + (rulesPath != null ? 1 : 0)
+            + (posesPath != null ? 1 : 0)
+            + (templatesPath != null ? 1 : 0);
+    if (logs.isEmpty() || threads <= 0 || classifiers > 1) {
+      usage();
+    }
+    Collections.sort(logs);
+
+    Supplier<HandClassifier> classifierFactory =
+        createClassifierFactory(modelPath, rulesPath, posesPath, templatesPath);
+    // One replayer per worker thread, so the classifiers and frames are reused across logs.
+    Supplier<LandmarkChangeGate> gateFactory = gate ? LandmarkChangeGate::new : null;
+    ThreadLocal<GestureReplayer> replayers =
+        ThreadLocal.withInitial(
+            () -> new GestureReplayer(classifierFactory, MAX_HANDS, gateFactory));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    List<Future<GestureReplayer.Result>> futures = new ArrayList<>(logs.size());
+    for (File log : logs) {
+      HandPoseEnum expectedPose = LandmarkLogFormat.labelOf(log);
+      futures.add(
+          executor.submit(() -> replayers.get().replay(new LandmarkLogReader(log), expectedPose)));
+    }
+
+    GestureReplayer.Result total = new GestureReplayer.Result();
+    int failedLogs = 0;
+    for (int i = 0; i < logs.size(); ++i) {
+      GestureReplayer.Result result;
+      try {
+        result = futures.get(i).get();
+      } catch (ExecutionException e) {
+        System.err.println(logs.get(i) + ": " + e.getCause());
+        ++failedLogs;
+        continue;
+      }
+      total.add(result);
+      if (verbose) {
+        System.out.println(
+            String.format(
+                Locale.US,
+                "%s: %d frames, classified %.3f, stabilized %.3f",
+                logs.get(i),
+                result.getFrameCount(),
+                result.classified.getAccuracy(),
+                result.stabilized.getAccuracy()));
+      }
+    }
+    long wallNanos = System.nanoTime() - start;
+    executor.shutdown();
+
+    printReport(total, logs.size() - failedLogs, threads, wallNanos);
+    if (failedLogs > 0) {
+      System.err.println(failedLogs + " logs could not be replayed.");
+      System.exit(1);
+    }
+    if (total.classified.getTotal() > 0 && total.classified.getAccuracy() < minAccuracy) {
+      System.err.println(
+          "Classification accuracy " + total.classified.getAccuracy() + " < " + minAccuracy);
+      System.exit(1);
+    }
+  }
+
+  private static void printReport(
+      GestureReplayer.Result total, int logCount, int threads, long wallNanos) {
+    double wallSeconds = wallNanos / 1e9;
+    double replaySeconds = total.getElapsedNanos() / 1e9;
+    System.out.println(
+        String.format(
+            Locale.US,
+            "Replayed %d logs, %d frames (%d with hands) in %.2f s on %d threads: %.0f fps, "
+                + "%.0f fps per thread",
+            logCount,
+            total.getFrameCount(),
+            total.getFramesWithHandsCount(),
+            wallSeconds,
+            threads,
+            total.getFrameCount() / Math.max(wallSeconds, 1e-9),
+            total.getFrameCount() / Math.max(replaySeconds, 1e-9)));
+    System.out.println(
+        "Hands classified: "
+            + total.getEvaluatedCount()
+            + ", skipped while stationary: "
+            + total.getSkippedCount());
+    if (total.classified.getTotal() > 0) {
+      System.out.println(
+          String.format(
+              Locale.US, "%nClassified poses, accuracy %.3f:", total.classified.getAccuracy()));
+      System.out.print(total.classified);
+      System.out.println(
+          String.format(
+              Locale.US, "%nStabilized poses, accuracy %.3f:", total.stabilized.getAccuracy()));
+      System.out.print(total.stabilized);
+    }
+    System.out.println(
+        String.format(Locale.US, "%nStabilized pose changes: %d", total.getPoseChangeCount()));
+    for (MotionGestureEnum gesture : MotionGestureEnum.values()) {
+      if (total.getMotionCount(gesture) > 0) {
+        System.out.println("Motion gesture " + gesture + ": " + total.getMotionCount(gesture));
+      }
+    }
+    for (Map.Entry<String, Long> sequence : total.sequences.entrySet()) {
+      System.out.println("Sequence " + sequence.getKey() + ": " + sequence.getValue());
+    }
+  }
+
+  private static Supplier<HandClassifier> createClassifierFactory(
+      String modelPath, String rulesPath, String posesPath, String templatesPath)
+      throws IOException {
+    if (modelPath != null) {
+      HandPoseModel model;
+      try (InputStream input = new FileInputStream(modelPath)) {
+        model = HandPoseModel.readFrom(input);
+      }
+      return () -> new LearnedHandPoseClassifier(model);
+    }
+    if (rulesPath != null) {
+      GestureRuleSet rules;
+      try (InputStream input = new FileInputStream(rulesPath)) {
+        rules = GestureRuleSet.parse(input);
+      }
+      return () -> new RuleHandPoseClassifier(rules);
+    }
+    if (templatesPath != null) {
+      GestureTemplateStore store = new GestureTemplateStore();
+      try (InputStream input = new FileInputStream(templatesPath)) {
+        store.readFrom(input);
+      }
+      return () -> new TemplateHandPoseClassifier(store);
+    }
+    HandPoseTable table;
+    if (posesPath != null) {
+      try (InputStream input = new FileInputStream(posesPath)) {
+        table = HandPoseTable.parse(input);
+      }
+    } else {
+      table = HandPoseTable.createDefault();
+    }
+    HandPoseClassifier classifier = new HandPoseClassifier(table);
+    return () -> classifier;
+  }
+
+  private static void collectLogs(File file, List<File> logs) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          collectLogs(child, logs);
+        }
+      }
+    } else if (file.getName().endsWith(LandmarkLogFormat.FILE_SUFFIX)) {
+      logs.add(file);
+    }
+  }
+
+  private static void usage() {
+    System.err.println(
+        "Usage: GestureRegressionHarness [--model=FILE | --rules=FILE | --poses=FILE"
+            + " | --templates=FILE] [--no-gate] [--threads=N] [--min-accuracy=X] [--verbose]"
+            + " LOG_OR_DIRECTORY...");
+    System.exit(1);
+  }
+}
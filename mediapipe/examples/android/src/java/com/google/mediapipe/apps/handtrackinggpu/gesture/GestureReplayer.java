@@ -0,0 +1,186 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Replays recorded landmark logs through the gesture stack, the same way the hand tracking app
+ * processes live frames: every hand that moved since it was last classified is normalized and
+ * classified again, the pose of the first hand is stabilized, and the stabilized pose changes and
+ * motion gestures feed the default {@link GestureSequenceDetector}.
+ *
+ * <p>A replayer reuses its classifiers and frame across logs. The change gates are reset, and the
+ * stabilizer, motion recognizer and sequence detector are recreated, for every log so that logs do
+ * not influence each other. It is not thread-safe; use one replayer per thread.
+ */
+public final class GestureReplayer {
+  private static final MotionGestureEnum[] MOTIONS = MotionGestureEnum.values();
+
+  /** Counts collected while replaying one or more logs. */
+  public static final class Result {
+    /** Poses returned by the classifier for the first hand, against the expected pose. */
+    public final PoseConfusionMatrix classified = new PoseConfusionMatrix();
+    /** Stabilized poses after each frame with a hand, against the expected pose. */
+    public final PoseConfusionMatrix stabilized = new PoseConfusionMatrix();
+    /** Number of detections of each gesture sequence, by name. */
+    public final Map<String, Long> sequences = new TreeMap<>();
+
+    private final long[] motions = new long[MOTIONS.length];
+    private long frames = 0;
+    private long framesWithHands = 0;
+    private long poseChanges = 0;
+    private long evaluatedHands = 0;
+    private long skippedHands = 0;
+    private long elapsedNanos = 0;
+
+    public long getFrameCount() {
+      return frames;
+    }
+
+    public long getFramesWithHandsCount() {
+      return framesWithHands;
+    }
+
+    public long getPoseChangeCount() {
+      return poseChanges;
+    }
+
+    /** Returns the number of hands classified, as for {@link MultiHandClassifier}. */
+    public long getEvaluatedCount() {
+      return evaluatedHands;
+    }
+
+    /** Returns the number of hands that kept their pose because they barely moved. */
+    public long getSkippedCount() {
+      return skippedHands;
+    }
+
+    public long getMotionCount(MotionGestureEnum gesture) {
+      return motions[gesture.ordinal()];
+    }
+
+    /** Returns the time spent replaying, excluding opening the logs. */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    /** Adds all counts of {@code other} to this result. */
+    public void add(Result other) {
+      classified.add(other.classified);
+      stabilized.add(other.stabilized);
+      for (Map.Entry<String, Long> sequence : other.sequences.entrySet()) {
+        sequences.merge(sequence.getKey(), sequence.getValue(), Long::sum);
+      }
+      for (int i = 0; i < motions.length; ++i) {
+        motions[i] += other.motions[i];
+      }
+      frames += other.frames;
+      framesWithHands += other.framesWithHands;
+      poseChanges += other.poseChanges;
+      evaluatedHands += other.evaluatedHands;
+      skippedHands += other.skippedHands;
+      elapsedNanos += other.elapsedNanos;
+    }
+  }
+
+  private final MultiHandClassifier classifier;
+  private final MultiHandFrame frame;
+
+  /**
+   * Creates a replayer that gates classification with {@link LandmarkChangeGate}, like the app.
+   *
+   * @param classifierFactory creates the classifier of each hand slot, as for {@link
+   *     MultiHandClassifier}.
+   * @param maxHands maximum number of hands replayed per frame; further hands are skipped.
+   */
+  public GestureReplayer(Supplier<? extends HandClassifier> classifierFactory, int maxHands) {
+    this(classifierFactory, maxHands, LandmarkChangeGate::new);
+  }
+
+  /**
+   * @param classifierFactory creates the classifier of each hand slot, as for {@link
+   *     MultiHandClassifier}.
+   * @param maxHands maximum number of hands replayed per frame; further hands are skipped.
+   * @param gateFactory creates the change gate of each hand slot, or {@code null} to classify every
+   *     hand on every frame.
+   */
+  public GestureReplayer(
+      Supplier<? extends HandClassifier> classifierFactory,
+      int maxHands,
+      Supplier<LandmarkChangeGate> gateFactory) {
+    classifier =
+        new MultiHandClassifier(classifierFactory, maxHands, /*executor=*/ null, gateFactory);
+    frame = new MultiHandFrame(maxHands);
+  }
+
+  /**
+   * Replays all frames of {@code log}.
+   *
+   * @param expectedPose pose the first hand is expected to show in every frame, or {@code null} if
+   *     the log is not labelled, in which case the confusion matrices are left empty.
+   */
+  public Result replay(LandmarkLogReader log, HandPoseEnum expectedPose) {
+    Result result = new Result();
+    PoseStabilizer poseStabilizer = new PoseStabilizer(HandPoseEnum.FIST);
+    MotionGestureRecognizer motionGestureRecognizer = new MotionGestureRecognizer();
+    GestureSequenceDetector sequenceDetector = GestureSequenceDetector.createDefault();
+    poseStabilizer.setOnPoseChangedListener(
+        (previous, pose, timestampMs) -> {
+          ++result.poseChanges;
+          sequenceDetector.onPose(pose, timestampMs);
+        });
+    sequenceDetector.setOnSequenceDetectedListener(
+        (name, timestampMs) -> result.sequences.merge(name, 1L, Long::sum));
+
+    classifier.reset();
+    long start = System.nanoTime();
+    int frameCount = log.getFrameCount();
+    for (int f = 0; f < frameCount; ++f) {
+      log.readFrame(f, frame);
+      if (frame.getHandCount() == 0) {
+        continue;
+      }
+      ++result.framesWithHands;
+      long timestampMs = frame.getTimestampMs();
+      int evaluated = classifier.classify(frame);
+      result.evaluatedHands += evaluated;
+      result.skippedHands += frame.getHandCount() - evaluated;
+      MultiHandFrame.Hand hand = frame.getHand(0);
+      HandPoseEnum pose = hand.getPose();
+      // As in the app, frames without a confident pose do not vote.
+      HandPoseEnum stablePose =
+          pose != HandPoseEnum.UNKNOWN
+              ? poseStabilizer.update(pose, timestampMs)
+              : poseStabilizer.getStablePose();
+      if (expectedPose != null) {
+        result.classified.add(expectedPose, pose);
+        result.stabilized.add(expectedPose, stablePose);
+      }
+
+      MotionGestureEnum motionGesture =
+          motionGestureRecognizer.update(hand.getLandmarks(), 0, timestampMs);
+      if (motionGesture != MotionGestureEnum.NONE) {
+        ++result.motions[motionGesture.ordinal()];
+        sequenceDetector.onMotion(motionGesture, timestampMs);
+      }
+    }
+    result.frames = frameCount;
+    result.elapsedNanos = System.nanoTime() - start;
+    return result;
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link GestureReplayer}. */
+@RunWith(JUnit4.class)
+public final class GestureReplayerTest {
+  private static final int MAX_HANDS = 2;
+  private static final int NUM_FRAMES = 60;
+  private static final long FRAME_MS = 33;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Supplier<HandClassifier> classifierFactory =
+      () -> new HandPoseClassifier(HandPoseTable.createDefault());
+  private LandmarkLogReader stillHandLog;
+
+  @Before
+  public void recordStillHand() throws Exception {
+    File file = temporaryFolder.newFile("still" + LandmarkLogFormat.FILE_SUFFIX);
+    float[] landmarks = new float[HandLandmarks.SIZE];
+    Random random = new Random(42);
+    for (int i = 0; i < landmarks.length; ++i) {
+      landmarks[i] = random.nextFloat();
+    }
+    MultiHandFrame frame = new MultiHandFrame(MAX_HANDS);
+    try (LandmarkRecorder recorder = new LandmarkRecorder(file, MAX_HANDS, NUM_FRAMES)) {
+      for (int f = 0; f < NUM_FRAMES; ++f) {
+        frame.begin(f * FRAME_MS);
+        System.arraycopy(landmarks, 0, frame.addHand().getLandmarks(), 0, landmarks.length);
+        assertTrue(recorder.record(frame));
+      }
+    }
+    stillHandLog = new LandmarkLogReader(file);
+  }
+
+  @Test
+  public void replay_skipsStillHandLikeTheApp() {
+    GestureReplayer.Result result =
+        new GestureReplayer(classifierFactory, MAX_HANDS).replay(stillHandLog, null);
+    assertEquals(NUM_FRAMES, result.getFramesWithHandsCount());
+    assertEquals(NUM_FRAMES, result.getEvaluatedCount() + result.getSkippedCount());
+    // Only the first frame and the periodic refreshes are classified.
+    long refreshes = (NUM_FRAMES - 1) * FRAME_MS / LandmarkChangeGate.DEFAULT_REFRESH_MS;
+    assertTrue(result.getEvaluatedCount() <= 1 + refreshes);
+    assertTrue(result.getSkippedCount() > 0);
+  }
+
+  @Test
+  public void replay_withoutGateClassifiesEveryHand() {
+    GestureReplayer.Result result =
+        new GestureReplayer(classifierFactory, MAX_HANDS, /*gateFactory=*/ null)
+            .replay(stillHandLog, null);
+    assertEquals(NUM_FRAMES, result.getEvaluatedCount());
+    assertEquals(0, result.getSkippedCount());
+  }
+
+  @Test
+  public void replay_resetsGatesBetweenLogs() {
+    GestureReplayer replayer = new GestureReplayer(classifierFactory, MAX_HANDS);
+    GestureReplayer.Result first = replayer.replay(stillHandLog, null);
+    GestureReplayer.Result second = replayer.replay(stillHandLog, null);
+    assertEquals(first.getEvaluatedCount(), second.getEvaluatedCount());
+
+    GestureReplayer.Result total = new GestureReplayer.Result();
+    total.add(first);
+    total.add(second);
+    assertEquals(2 * first.getEvaluatedCount(), total.getEvaluatedCount());
+    assertEquals(2 * first.getSkippedCount(), total.getSkippedCount());
+  }
+}
@@ -0,0 +1,590 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.STRIDE;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.WRIST;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.squaredDistance2d;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand pose rules written as boolean expressions over hand features, compiled into a flat program.
+ *
+ * <p>Rules are loaded from a plain text config with one rule per line, {@code <pose>: <expr>}:
+ *
+ * <pre>
+ * PEACE: index.open &amp;&amp; middle.open &amp;&amp; angle(index, middle) &gt; 20deg
+ * TWO:   index.open &amp;&amp; middle.open
+ * </pre>
+ *
+ * <p>The rules are tried in order and the first one that holds gives the pose. Blank lines and
+ * text after {@code #} are ignored. Expressions combine {@code &&}, {@code ||}, {@code !} and
+ * parentheses over:
+ *
+ * <ul>
+ *   <li>{@code <finger>.open}, the finger state computed by {@link HandPoseClassifier};
+ *   <li>comparisons ({@code < <= > >= == !=}) between numbers and features:
+ *       <ul>
+ *         <li>{@code <finger>.extension}, how much further from the wrist the tip is than the MCP
+ *             joint, in palm sizes; negative when the finger is folded;
+ *         <li>{@code angle(<finger>, <finger>)}, the angle in degrees between the two fingers,
+ *             each taken from its MCP joint to its tip;
+ *         <li>{@code distance(<point>, <point>)}, in palm sizes, where a point is {@code wrist} or
+ *             a finger joint such as {@code thumb.tip} or {@code index.pip}.
+ *       </ul>
+ *   <li>{@code true} and {@code false}.
+ * </ul>
+ *
+ * <p>Fingers are {@code thumb}, {@code index}, {@code middle}, {@code ring} and {@code pinky}.
+ * Numbers may be followed by a degree sign or {@code deg}, which are ignored. All features are
+ * measured in the image plane on landmarks normalized by {@link HandLandmarkNormalizer}.
+ *
+ * <p>Parsing interns every distinct feature, so a feature used by many rules is computed once per
+ * hand. A finger extension is the difference of two interned wrist distances, which it shares with
+ * any {@code distance} to the same joints. Each rule is compiled to postfix code over a small
+ * boolean stack, and all rules share a single code array. Evaluation does not allocate; the
+ * per-hand scratch space is owned by the caller, see {@link RuleHandPoseClassifier}. Rule sets are
+ * immutable and may be shared between threads.
+ */
+public final class GestureRuleSet {
+  // Opcodes. OP_OPEN is followed by a finger state bit, comparisons by their two value slots.
+  private static final int OP_OPEN = 0;
+  private static final int OP_TRUE = 1;
+  private static final int OP_FALSE = 2;
+  private static final int OP_NOT = 3;
+  private static final int OP_AND = 4;
+  private static final int OP_OR = 5;
+  private static final int OP_LT = 6;
+  private static final int OP_LE = 7;
+  private static final int OP_GT = 8;
+  private static final int OP_GE = 9;
+  private static final int OP_EQ = 10;
+  private static final int OP_NE = 11;
+
+  // Feature kinds.
+  private static final int FEATURE_EXTENSION = 0;
+  private static final int FEATURE_ANGLE = 1;
+  private static final int FEATURE_DISTANCE = 2;
+
+  private static final String[] FINGERS = {"thumb", "index", "middle", "ring", "pinky"};
+  private static final int[] FINGER_BITS = {
+    HandPoseClassifier.THUMB,
+    HandPoseClassifier.INDEX,
+    HandPoseClassifier.MIDDLE,
+    HandPoseClassifier.RING,
+    HandPoseClassifier.PINKY
+  };
+  // Landmark of the joints of every finger, from the base to the tip; see HandLandmarks.
+  private static final String[][] JOINTS = {
+    {"cmc", "mcp", "ip", "tip"},
+    {"mcp", "pip", "dip", "tip"},
+    {"mcp", "pip", "dip", "tip"},
+    {"mcp", "pip", "dip", "tip"},
+    {"mcp", "pip", "dip", "tip"}
+  };
+  // Landmarks a finger direction starts from, i.e. its MCP joint.
+  private static final int[] FINGER_BASES = {
+    HandLandmarks.THUMB_MCP,
+    HandLandmarks.INDEX_MCP,
+    HandLandmarks.MIDDLE_MCP,
+    HandLandmarks.RING_MCP,
+    HandLandmarks.PINKY_MCP
+  };
+  private static final int[] FINGER_TIPS = {
+    HandLandmarks.THUMB_TIP,
+    HandLandmarks.INDEX_TIP,
+    HandLandmarks.MIDDLE_TIP,
+    HandLandmarks.RING_TIP,
+    HandLandmarks.PINKY_TIP
+  };
+
+  private final HandPoseEnum[] poses;
+  // Code of rule r spans code[ruleStarts[r]] to code[ruleStarts[r + 1]].
+  private final int[] ruleStarts;
+  private final int[] code;
+  private final int maxStackDepth;
+  // Per feature: its kind and the two fingers or landmarks it is computed from. An extension is
+  // computed from the slots of its two wrist distances, which come before it.
+  private final int[] featureKinds;
+  private final int[] featureA;
+  private final int[] featureB;
+  // Value slots hold the features followed by the constants.
+  private final float[] constants;
+
+  private GestureRuleSet(Compiler compiler) {
+    poses = compiler.poses.toArray(new HandPoseEnum[0]);
+    ruleStarts = toArray(compiler.ruleStarts);
+    code = toArray(compiler.code);
+    maxStackDepth = Math.max(1, compiler.maxDepth);
+    int features = compiler.featureKinds.size();
+    featureKinds = toArray(compiler.featureKinds);
+    featureA = toArray(compiler.featureA);
+    featureB = toArray(compiler.featureB);
+    constants = new float[compiler.constants.size()];
+    for (int i = 0; i < constants.length; ++i) {
+      constants[i] = compiler.constants.get(i);
+    }
+    // Constants are referenced by slot, after the features.
+    for (int pc : compiler.constantOperands) {
+      code[pc] += features;
+    }
+  }
+
+  /** Parses rules from a UTF-8 config stream. The stream is not closed. */
+  public static GestureRuleSet parse(InputStream config) throws IOException {
+    return parse(new InputStreamReader(config, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parses rules from {@code config}. The reader is not closed.
+   *
+   * @throws IllegalArgumentException if a rule is malformed, with its line number and column.
+   */
+  public static GestureRuleSet parse(Reader config) throws IOException {
+    Compiler compiler = new Compiler();
+    BufferedReader reader = new BufferedReader(config);
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      ++lineNumber;
+      int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      compiler.compileRule(line, lineNumber);
+    }
+    return new GestureRuleSet(compiler);
+  }
+
+  /** Returns the number of rules. */
+  public int size() {
+    return poses.length;
+  }
+
+  /** Returns the number of distinct features computed per hand. */
+  public int getFeatureCount() {
+    return featureKinds.length;
+  }
+
+  public HandPoseEnum getPose(int rule) {
+    return poses[rule];
+  }
+
+  /** Allocates the value slots needed by {@link #match}. */
+  float[] newValues() {
+    float[] values = new float[featureKinds.length + constants.length];
+    System.arraycopy(constants, 0, values, featureKinds.length, constants.length);
+    return values;
+  }
+
+  /** Allocates the stack needed by {@link #match}. */
+  boolean[] newStack() {
+    return new boolean[maxStackDepth];
+  }
+
+  /**
+   * Returns the index of the first rule that holds for the hand stored at {@code offset} in
+   * {@code landmarks}, or -1 if none does.
+   *
+   * @param fingerStates finger state code of the hand, see {@link HandPoseClassifier#fingerStates}.
+   * @param values scratch value slots from {@link #newValues}.
+   * @param stack scratch stack from {@link #newStack}.
+   */
+  int match(float[] landmarks, int offset, int fingerStates, float[] values, boolean[] stack) {
+    for (int f = 0; f < featureKinds.length; ++f) {
+      values[f] =
+          computeFeature(landmarks, offset, featureKinds[f], featureA[f], featureB[f], values);
+    }
+    for (int rule = 0; rule < poses.length; ++rule) {
+      int top = -1;
+      for (int pc = ruleStarts[rule], end = ruleStarts[rule + 1]; pc < end; ) {
+        int op = code[pc++];
+        switch (op) {
+          case OP_OPEN:
+            stack[++top] = (fingerStates & code[pc++]) != 0;
+            break;
+          case OP_TRUE:
+            stack[++top] = true;
+            break;
+          case OP_FALSE:
+            stack[++top] = false;
+            break;
+          case OP_NOT:
+            stack[top] = !stack[top];
+            break;
+          case OP_AND:
+            --top;
+            stack[top] = stack[top] && stack[top + 1];
+            break;
+          case OP_OR:
+            --top;
+            stack[top] = stack[top] || stack[top + 1];
+            break;
+          default:
+            float left = values[code[pc++]];
+            float right = values[code[pc++]];
+            stack[++top] = compare(op, left, right);
+            break;
+        }
+      }
+      if (stack[0]) {
+        return rule;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean compare(int op, float left, float right) {
+    switch (op) {
+      case OP_LT:
+        return left < right;
+      case OP_LE:
+        return left <= right;
+      case OP_GT:
+        return left > right;
+      case OP_GE:
+        return left >= right;
+      case OP_EQ:
+        return left == right;
+      default:
+        return left != right;
+    }
+  }
+
+  private static float computeFeature(
+      float[] landmarks, int offset, int kind, int a, int b, float[] values) {
+    switch (kind) {
+      case FEATURE_EXTENSION:
+        return values[a] - values[b];
+      case FEATURE_ANGLE:
+        return angle(landmarks, offset, a, b);
+      default:
+        return distance(landmarks, offset, a, b);
+    }
+  }
+
+  private static float distance(float[] landmarks, int offset, int a, int b) {
+    return (float) Math.sqrt(squaredDistance2d(landmarks, offset, a, b));
+  }
+
+  // Angle in degrees between the base to tip directions of two fingers.
+  private static float angle(float[] landmarks, int offset, int fingerA, int fingerB) {
+    int baseA = offset + FINGER_BASES[fingerA] * STRIDE;
+    int tipA = offset + FINGER_TIPS[fingerA] * STRIDE;
+    int baseB = offset + FINGER_BASES[fingerB] * STRIDE;
+    int tipB = offset + FINGER_TIPS[fingerB] * STRIDE;
+    float ax = landmarks[tipA] - landmarks[baseA];
+    float ay = landmarks[tipA + 1] - landmarks[baseA + 1];
+    float bx = landmarks[tipB] - landmarks[baseB];
+    float by = landmarks[tipB + 1] - landmarks[baseB + 1];
+    // atan2 of the cross and dot products is accurate for small and large angles alike.
+    return (float) Math.toDegrees(Math.abs(Math.atan2(ax * by - ay * bx, ax * bx + ay * by)));
+  }
+
+  private static int[] toArray(List<Integer> values) {
+    int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; ++i) {
+      array[i] = values.get(i);
+    }
+    return array;
+  }
+
+  /** Recursive descent parser emitting postfix code for one rule at a time. */
+  private static final class Compiler {
+    final List<HandPoseEnum> poses = new ArrayList<>();
+    final List<Integer> ruleStarts = new ArrayList<>();
+    final List<Integer> code = new ArrayList<>();
+    final List<Integer> featureKinds = new ArrayList<>();
+    final List<Integer> featureA = new ArrayList<>();
+    final List<Integer> featureB = new ArrayList<>();
+    final List<Float> constants = new ArrayList<>();
+    // Code positions holding a constant index, to be rebased once the feature count is known.
+    final List<Integer> constantOperands = new ArrayList<>();
+    private final Map<String, Integer> featureSlots = new HashMap<>();
+    private final Map<Float, Integer> constantIndices = new HashMap<>();
+    int maxDepth = 0;
+
+    private String text;
+    private int position;
+    private int lineNumber;
+    private int depth;
+
+    Compiler() {
+      ruleStarts.add(0);
+    }
+
+    void compileRule(String line, int lineNumber) {
+      this.text = line;
+      this.lineNumber = lineNumber;
+      this.position = 0;
+      this.depth = 0;
+      int colon = line.indexOf(':');
+      if (colon < 0) {
+        throw error("expected \"<pose>: <expression>\"");
+      }
+      String poseName = line.substring(0, colon).trim();
+      HandPoseEnum pose;
+      try {
+        pose = HandPoseEnum.valueOf(poseName);
+      } catch (IllegalArgumentException e) {
+        throw error("unknown pose \"" + poseName + "\"");
+      }
+      position = colon + 1;
+      parseOr();
+      skipSpaces();
+      if (position < text.length()) {
+        throw error("unexpected \"" + text.substring(position).trim() + "\"");
+      }
+      poses.add(pose);
+      ruleStarts.add(code.size());
+    }
+
+    private void parseOr() {
+      parseAnd();
+      while (accept("||")) {
+        parseAnd();
+        emit(OP_OR, -1);
+      }
+    }
+
+    private void parseAnd() {
+      parseUnary();
+      while (accept("&&")) {
+        parseUnary();
+        emit(OP_AND, -1);
+      }
+    }
+
+    private void parseUnary() {
+      if (accept("!")) {
+        parseUnary();
+        emit(OP_NOT, 0);
+      } else if (accept("(")) {
+        parseOr();
+        expect(")");
+      } else if (acceptWord("true")) {
+        emit(OP_TRUE, 1);
+      } else if (acceptWord("false")) {
+        emit(OP_FALSE, 1);
+      } else {
+        int start = position;
+        String word = peekWord();
+        int finger = indexOf(FINGERS, word);
+        if (finger >= 0 && text.startsWith(".open", position + word.length())) {
+          position += word.length() + ".open".length();
+          emit(OP_OPEN, 1);
+          code.add(FINGER_BITS[finger]);
+          return;
+        }
+        int left = parseValue();
+        int op = parseComparison(start);
+        int right = parseValue();
+        emit(op, 1);
+        addOperand(left);
+        addOperand(right);
+      }
+    }
+
+    private int parseComparison(int start) {
+      skipSpaces();
+      String[] operators = {"<=", ">=", "==", "!=", "<", ">"};
+      int[] opcodes = {OP_LE, OP_GE, OP_EQ, OP_NE, OP_LT, OP_GT};
+      for (int i = 0; i < operators.length; ++i) {
+        if (text.startsWith(operators[i], position)) {
+          position += operators[i].length();
+          return opcodes[i];
+        }
+      }
+      position = start;
+      throw error("expected a finger state or a comparison");
+    }
+
+    // Parses a number or a numeric feature. Returns a feature slot, or ~index for a constant.
+    private int parseValue() {
+      skipSpaces();
+      int start = position;
+      while (position < text.length() && "0123456789+-.".indexOf(text.charAt(position)) >= 0) {
+        ++position;
+      }
+      if (position > start) {
+        float value;
+        try {
+          value = Float.parseFloat(text.substring(start, position));
+        } catch (NumberFormatException e) {
+          position = start;
+          throw error("invalid number");
+        }
+        if (!accept("\u00b0")) {
+          acceptWord("deg");
+        }
+        Integer index = constantIndices.get(value);
+        if (index == null) {
+          index = constants.size();
+          constants.add(value);
+          constantIndices.put(value, index);
+        }
+        return ~index;
+      }
+      if (acceptWord("angle")) {
+        expect("(");
+        int a = parseFinger();
+        expect(",");
+        int b = parseFinger();
+        expect(")");
+        // The angle is symmetric, so angle(a, b) and angle(b, a) share a slot.
+        return feature(FEATURE_ANGLE, Math.min(a, b), Math.max(a, b));
+      }
+      if (acceptWord("distance")) {
+        expect("(");
+        int a = parsePoint();
+        expect(",");
+        int b = parsePoint();
+        expect(")");
+        return feature(FEATURE_DISTANCE, Math.min(a, b), Math.max(a, b));
+      }
+      if (indexOf(FINGERS, peekWord()) < 0) {
+        throw error("expected a number or a feature");
+      }
+      int finger = parseFinger();
+      expect(".extension");
+      // Interned before the extension, so they are computed first.
+      int tip = feature(FEATURE_DISTANCE, WRIST, FINGER_TIPS[finger]);
+      int base = feature(FEATURE_DISTANCE, WRIST, FINGER_BASES[finger]);
+      return feature(FEATURE_EXTENSION, tip, base);
+    }
+
+    private int parseFinger() {
+      skipSpaces();
+      String word = peekWord();
+      int finger = indexOf(FINGERS, word);
+      if (finger < 0) {
+        throw error("expected a finger");
+      }
+      position += word.length();
+      return finger;
+    }
+
+    // Parses wrist or <finger>.<joint> and returns its landmark index.
+    private int parsePoint() {
+      if (acceptWord("wrist")) {
+        return WRIST;
+      }
+      int finger = parseFinger();
+      expect(".");
+      String joint = peekWord();
+      int index = indexOf(JOINTS[finger], joint);
+      if (index < 0) {
+        throw error("expected a joint of the " + FINGERS[finger]);
+      }
+      position += joint.length();
+      // Finger f has its four joints at landmarks 4 * f + 1 to 4 * f + 4.
+      return 4 * finger + 1 + index;
+    }
+
+    private int feature(int kind, int a, int b) {
+      String key = kind + ":" + a + ":" + b;
+      Integer slot = featureSlots.get(key);
+      if (slot == null) {
+        slot = featureKinds.size();
+        featureKinds.add(kind);
+        featureA.add(a);
+        featureB.add(b);
+        featureSlots.put(key, slot);
+      }
+      return slot;
+    }
+
+    private void addOperand(int value) {
+      if (value < 0) {
+        constantOperands.add(code.size());
+        code.add(~value);
+      } else {
+        code.add(value);
+      }
+    }
+
+    // Appends an opcode that changes the stack depth by depthChange.
+    private void emit(int op, int depthChange) {
+      code.add(op);
+      depth += depthChange;
+      maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private String peekWord() {
+      skipSpaces();
+      int end = position;
+      while (end < text.length() && Character.isLetter(text.charAt(end))) {
+        ++end;
+      }
+      return text.substring(position, end);
+    }
+
+    private boolean acceptWord(String word) {
+      if (peekWord().equals(word)) {
+        position += word.length();
+        return true;
+      }
+      return false;
+    }
+
+    private boolean accept(String token) {
+      skipSpaces();
+      if (text.startsWith(token, position)) {
+        position += token.length();
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(String token) {
+      if (!accept(token)) {
+        throw error("expected \"" + token + "\"");
+      }
+    }
+
+    private void skipSpaces() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        ++position;
+      }
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(
+          "Line " + lineNumber + ", column " + (position + 1) + ": " + message + ".");
+    }
+  }
+
+  private static int indexOf(String[] values, String value) {
+    for (int i = 0; i < values.length; ++i) {
+      if (values[i].equals(value)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
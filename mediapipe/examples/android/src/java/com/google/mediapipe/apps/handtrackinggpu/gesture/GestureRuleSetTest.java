@@ -0,0 +1,197 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link GestureRuleSet}. */
+@RunWith(JUnit4.class)
+public final class GestureRuleSetTest {
+  // Workspace-relative, as seen from the test's runfiles directory.
+  private static final String CONFIG_DIR =
+      "mediapipe/examples/android/src/java/com/google/mediapipe/apps/handtrackinggpu/";
+
+  private final float[] hand = new float[HandLandmarks.SIZE];
+
+  @Test
+  public void parse_notBindsTighterThanAnd() throws IOException {
+    // (!false) && false, not !(false && false).
+    assertFalse(holds("!false && false"));
+    assertTrue(holds("!(false && false)"));
+    assertTrue(holds("!!true"));
+  }
+
+  @Test
+  public void parse_andBindsTighterThanOr() throws IOException {
+    // true || (false && false), not (true || false) && false.
+    assertTrue(holds("true || false && false"));
+    assertFalse(holds("(true || false) && false"));
+    // (false && true) || true.
+    assertTrue(holds("false && true || true"));
+  }
+
+  @Test
+  public void parse_fingerStatesUseTheirBits() throws IOException {
+    int indexAndPinky = HandPoseClassifier.INDEX | HandPoseClassifier.PINKY;
+    assertTrue(holds("index.open && pinky.open && !thumb.open", indexAndPinky));
+    assertFalse(holds("middle.open || ring.open", indexAndPinky));
+  }
+
+  @Test
+  public void parse_degreeSuffixesAreIgnored() throws IOException {
+    setFinger(HandLandmarks.INDEX_MCP, HandLandmarks.INDEX_TIP, 0f, 0);
+    setFinger(HandLandmarks.MIDDLE_MCP, HandLandmarks.MIDDLE_TIP, 1f, 30);
+    for (String threshold : new String[] {"20", "20deg", "20 deg", "20\u00b0"}) {
+      assertTrue(threshold, holds("angle(index, middle) > " + threshold));
+      assertTrue(threshold, holds("angle(middle, index) > " + threshold));
+    }
+    assertFalse(holds("angle(index, middle) > 40deg"));
+  }
+
+  @Test
+  public void parse_negativeConstants() throws IOException {
+    // The tip is 0.3 palm sizes closer to the wrist than the MCP joint.
+    set(HandLandmarks.INDEX_MCP, 0, -1f);
+    set(HandLandmarks.INDEX_TIP, 0, -0.7f);
+    assertTrue(holds("index.extension > -0.5"));
+    assertTrue(holds("index.extension < -.2"));
+    assertFalse(holds("index.extension >= 0"));
+    assertTrue(holds("-1 < index.extension"));
+  }
+
+  @Test
+  public void parse_internsSharedFeaturesAndConstants() throws IOException {
+    GestureRuleSet rules =
+        parse(
+            "PEACE: angle(index, middle) > 20deg && index.extension > 0\n"
+                + "TWO: angle(middle, index) <= 20\u00b0 || index.extension < 0.0\n"
+                + "ONE: index.open && distance(wrist, index.tip) > 0");
+    assertEquals(3, rules.size());
+    // angle(index, middle) and angle(middle, index) share a slot. index.extension is computed from
+    // distance(wrist, index.tip), which it shares with the last rule, and distance(wrist,
+    // index.mcp).
+    assertEquals(4, rules.getFeatureCount());
+    // 20 with either degree suffix is one constant, as are 0 and 0.0.
+    assertEquals(4 + 2, rules.newValues().length);
+
+    // The distance is shared whichever feature comes first.
+    rules = parse("ONE: distance(index.tip, wrist) > 0 && index.extension > 0");
+    assertEquals(3, rules.getFeatureCount());
+  }
+
+  @Test
+  public void match_extensionUsesSharedDistances() throws IOException {
+    // The tip is 0.5 palm sizes further from the wrist than the MCP joint.
+    set(HandLandmarks.INDEX_MCP, 0, -1f);
+    set(HandLandmarks.INDEX_TIP, 0, -1.5f);
+    assertTrue(holds("index.extension > 0.49 && index.extension < 0.51"));
+    assertTrue(holds("distance(wrist, index.tip) > 1.49 && index.extension < 0.51"));
+    assertTrue(holds("index.extension > 0.49 && distance(wrist, index.tip) < 1.51"));
+  }
+
+  @Test
+  public void parse_reportsLineAndColumn() throws IOException {
+    assertError("# comment\n\nFIST: true\nWAVE: true", "Line 4, column 1: unknown pose \"WAVE\".");
+    assertError("FIST: index.open &&", "Line 1, column 20: expected a number or a feature.");
+    assertError("FIST: index.open && (middle.open", "Line 1, column 33: expected \")\".");
+    assertError("FIST: index.open middle.open", "Line 1, column 18: unexpected \"middle.open\".");
+    // A bad comparison points at its left operand.
+    assertError(
+        "FIST: index.extension = 1",
+        "Line 1, column 7: expected a finger state or a comparison.");
+    assertError(
+        "FIST: distance(wrist, index.ip) > 1",
+        "Line 1, column 29: expected a joint of the index.");
+    assertError("FIST true", "Line 1, column 1: expected \"<pose>: <expression>\".");
+  }
+
+  @Test
+  public void parse_shippedRulesMatchShippedTable() throws IOException {
+    GestureRuleSet rules;
+    try (InputStream config = new FileInputStream(CONFIG_DIR + "hand_pose_rules.txt")) {
+      rules = GestureRuleSet.parse(config);
+    }
+    HandPoseTable table;
+    try (InputStream config = new FileInputStream(CONFIG_DIR + "hand_poses.txt")) {
+      table = HandPoseTable.parse(config);
+    }
+    float[] values = rules.newValues();
+    boolean[] stack = rules.newStack();
+    // With the fingers together, i.e. no spread for PEACE, every finger state maps to the same
+    // pose, and states without a table entry to no rule.
+    for (int states = 0; states < HandPoseTable.SIZE; ++states) {
+      int rule = rules.match(hand, 0, states, values, stack);
+      HandPoseEnum pose = rule >= 0 ? rules.getPose(rule) : null;
+      assertEquals(Integer.toBinaryString(states), table.get(states), pose);
+    }
+
+    // Spreading the index and middle fingers only turns TWO into PEACE.
+    setFinger(HandLandmarks.INDEX_MCP, HandLandmarks.INDEX_TIP, 0f, 0);
+    setFinger(HandLandmarks.MIDDLE_MCP, HandLandmarks.MIDDLE_TIP, 1f, 30);
+    for (int states = 0; states < HandPoseTable.SIZE; ++states) {
+      int rule = rules.match(hand, 0, states, values, stack);
+      HandPoseEnum expected =
+          table.get(states) == HandPoseEnum.TWO ? HandPoseEnum.PEACE : table.get(states);
+      HandPoseEnum pose = rule >= 0 ? rules.getPose(rule) : null;
+      assertEquals(Integer.toBinaryString(states), expected, pose);
+    }
+  }
+
+  private boolean holds(String expression) throws IOException {
+    return holds(expression, 0);
+  }
+
+  // Returns whether a single rule with the given expression holds for the current hand.
+  private boolean holds(String expression, int fingerStates) throws IOException {
+    GestureRuleSet rules = parse("FIST: " + expression);
+    return rules.match(hand, 0, fingerStates, rules.newValues(), rules.newStack()) == 0;
+  }
+
+  // Points a finger from (x, 0) one unit up, tilted by the given angle in degrees.
+  private void setFinger(int mcp, int tip, float x, double degrees) {
+    double radians = Math.toRadians(degrees);
+    set(mcp, x, 0);
+    set(tip, x + (float) Math.sin(radians), -(float) Math.cos(radians));
+  }
+
+  private void set(int landmark, float x, float y) {
+    hand[landmark * HandLandmarks.STRIDE] = x;
+    hand[landmark * HandLandmarks.STRIDE + 1] = y;
+  }
+
+  private static GestureRuleSet parse(String config) throws IOException {
+    return GestureRuleSet.parse(new StringReader(config));
+  }
+
+  private static void assertError(String config, String message) throws IOException {
+    try {
+      parse(config);
+      fail(config);
+    } catch (IllegalArgumentException expected) {
+      assertEquals(message, expected.getMessage());
+    }
+  }
+}
@@ -0,0 +1,278 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects sequences of gestures, such as FIST, PAPER, FIST within 1.5 seconds, in the stream of
+ * stabilized pose changes and recognized motion gestures.
+ *
+ * <p>All registered sequences are compiled into a single nondeterministic automaton with one state
+ * per sequence step, represented as a bit set. Every event advances all partial matches at once
+ * with the shift-and algorithm: the active states are shifted by one step and masked with the
+ * precomputed set of steps accepting the event. Only the surviving states are then checked against
+ * their time constraints, so the cost of an event does not grow with the number of registered
+ * sequences that cannot match it.
+ *
+ * <p>The steps of a sequence must be consecutive events: any other event in between breaks the
+ * partial match. A step may require its gesture to be held for a minimum time before the next step,
+ * and the whole sequence must complete within its maximum duration.
+ *
+ * <p>This class is not thread-safe. {@link OnSequenceDetectedListener} is invoked on the thread
+ * delivering the events.
+ */
+public final class GestureSequenceDetector {
+  private static final HandPoseEnum[] POSES = HandPoseEnum.values();
+  private static final MotionGestureEnum[] MOTIONS = MotionGestureEnum.values();
+  private static final int NUM_SYMBOLS = POSES.length + MOTIONS.length;
+
+  /** Receives completed sequences. */
+  public interface OnSequenceDetectedListener {
+    void onSequenceDetected(String name, long timestampMs);
+  }
+
+  /** One step of a sequence: a set of accepted gestures and a minimum hold time. */
+  public static final class Step {
+    private final boolean[] symbols;
+    private final long minHoldMs;
+
+    private Step(boolean[] symbols, long minHoldMs) {
+      this.symbols = symbols;
+      this.minHoldMs = minHoldMs;
+    }
+
+    /** Returns a step accepting any of {@code poses}. */
+    public static Step pose(HandPoseEnum... poses) {
+      boolean[] symbols = new boolean[NUM_SYMBOLS];
+      for (HandPoseEnum pose : poses) {
+        symbols[pose.ordinal()] = true;
+      }
+      return new Step(symbols, 0);
+    }
+
+    /** Returns a step accepting any of {@code gestures}. */
+    public static Step motion(MotionGestureEnum... gestures) {
+      boolean[] symbols = new boolean[NUM_SYMBOLS];
+      for (MotionGestureEnum gesture : gestures) {
+        if (gesture == MotionGestureEnum.NONE) {
+          throw new IllegalArgumentException("NONE is not a gesture.");
+        }
+        symbols[POSES.length + gesture.ordinal()] = true;
+      }
+      return new Step(symbols, 0);
+    }
+
+    /** Returns a copy of this step that must be held for {@code minHoldMs} before the next step. */
+    public Step heldFor(long minHoldMs) {
+      if (minHoldMs < 0) {
+        throw new IllegalArgumentException("minHoldMs must be non-negative.");
+      }
+      return new Step(symbols, minHoldMs);
+    }
+  }
+
+  /** Collects sequences and compiles them into a {@link GestureSequenceDetector}. */
+  public static final class Builder {
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> maxDurations = new ArrayList<>();
+    private final List<Step[]> sequences = new ArrayList<>();
+
+    /**
+     * Registers a sequence.
+     *
+     * @param name reported to the listener when the sequence completes.
+     * @param maxDurationMs maximum time between the first and the last step.
+     * @param steps the steps, in order. The last step cannot have a hold time.
+     */
+    public Builder addSequence(String name, long maxDurationMs, Step... steps) {
+      if (name == null) {
+        throw new NullPointerException("name");
+      }
+      if (steps.length == 0) {
+        throw new IllegalArgumentException("A sequence needs at least one step.");
+      }
+      if (steps[steps.length - 1].minHoldMs > 0) {
+        throw new IllegalArgumentException("The last step of " + name + " cannot be held.");
+      }
+      if (maxDurationMs < 0) {
+        throw new IllegalArgumentException("maxDurationMs must be non-negative.");
+      }
+      names.add(name);
+      maxDurations.add(maxDurationMs);
+      sequences.add(steps.clone());
+      return this;
+    }
+
+    public GestureSequenceDetector build() {
+      return new GestureSequenceDetector(this);
+    }
+  }
+
+  // Per state, i.e. per step of every sequence, in registration order.
+  private final int numStates;
+  private final String[] names;
+  private final int[] sequenceOfState;
+  private final long[] minHoldMs;
+  private final long[] maxDurationMs;
+  private final long[] startMs;
+  private final long[] enteredMs;
+  // Bit sets over the states.
+  private final long[] firstStates;
+  private final long[] lastStates;
+  private final long[][] acceptingStates;
+  private final long[] active;
+  private final long[] next;
+  private OnSequenceDetectedListener listener;
+
+  private GestureSequenceDetector(Builder builder) {
+    int states = 0;
+    for (Step[] steps : builder.sequences) {
+      states += steps.length;
+    }
+    numStates = states;
+    int words = (numStates + 63) >>> 6;
+    names = builder.names.toArray(new String[0]);
+    sequenceOfState = new int[numStates];
+    minHoldMs = new long[numStates];
+    maxDurationMs = new long[numStates];
+    startMs = new long[numStates];
+    enteredMs = new long[numStates];
+    firstStates = new long[words];
+    lastStates = new long[words];
+    acceptingStates = new long[NUM_SYMBOLS][words];
+    active = new long[words];
+    next = new long[words];
+
+    int state = 0;
+    for (int sequence = 0; sequence < builder.sequences.size(); ++sequence) {
+      Step[] steps = builder.sequences.get(sequence);
+      for (int i = 0; i < steps.length; ++i, ++state) {
+        sequenceOfState[state] = sequence;
+        minHoldMs[state] = steps[i].minHoldMs;
+        maxDurationMs[state] = builder.maxDurations.get(sequence);
+        if (i == 0) {
+          setBit(firstStates, state);
+        }
+        if (i == steps.length - 1) {
+          setBit(lastStates, state);
+        }
+        for (int symbol = 0; symbol < NUM_SYMBOLS; ++symbol) {
+          if (steps[i].symbols[symbol]) {
+            setBit(acceptingStates[symbol], state);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a detector for the sequences used by the hand tracking app:
+   *
+   * <ul>
+   *   <li>{@code FIST_PAPER_FIST}: FIST, PAPER, FIST within 1.5 s.
+   *   <li>{@code THUMB_SWIPE}: THUMB held for 0.8 s, then a swipe in any direction, within 3 s.
+   * </ul>
+   */
+  public static GestureSequenceDetector createDefault() {
+    return new Builder()
+        .addSequence(
+            "FIST_PAPER_FIST",
+            /*maxDurationMs=*/ 1500,
+            Step.pose(HandPoseEnum.FIST),
+            Step.pose(HandPoseEnum.PAPER),
+            Step.pose(HandPoseEnum.FIST))
+        .addSequence(
+            "THUMB_SWIPE",
+            /*maxDurationMs=*/ 3000,
+            Step.pose(HandPoseEnum.THUMB).heldFor(800),
+            Step.motion(
+                MotionGestureEnum.SWIPE_LEFT,
+                MotionGestureEnum.SWIPE_RIGHT,
+                MotionGestureEnum.SWIPE_UP,
+                MotionGestureEnum.SWIPE_DOWN))
+        .build();
+  }
+
+  public void setOnSequenceDetectedListener(OnSequenceDetectedListener listener) {
+    this.listener = listener;
+  }
+
+  /** Consumes a change of the stabilized pose. */
+  public void onPose(HandPoseEnum pose, long timestampMs) {
+    advance(pose.ordinal(), timestampMs);
+  }
+
+  /** Consumes a recognized motion gesture. {@link MotionGestureEnum#NONE} is ignored. */
+  public void onMotion(MotionGestureEnum gesture, long timestampMs) {
+    if (gesture != MotionGestureEnum.NONE) {
+      advance(POSES.length + gesture.ordinal(), timestampMs);
+    }
+  }
+
+  /** Drops all partial matches. */
+  public void reset() {
+    for (int w = 0; w < active.length; ++w) {
+      active[w] = 0;
+    }
+  }
+
+  private void advance(int symbol, long timestampMs) {
+    long[] accepting = acceptingStates[symbol];
+    long carry = 0;
+    for (int w = 0; w < active.length; ++w) {
+      // Every state moves to the following one; the first step of each sequence can always start,
+      // and nothing carries over from the last step of one sequence to the next sequence.
+      long shifted = (active[w] << 1) | carry;
+      carry = active[w] >>> 63;
+      next[w] = ((shifted & ~firstStates[w]) | firstStates[w]) & accepting[w];
+    }
+
+    // Walk the candidates from the highest state down, so that the timing of the previous state is
+    // read before it is overwritten.
+    for (int w = next.length - 1; w >= 0; --w) {
+      long bits = next[w];
+      while (bits != 0) {
+        int bit = 63 - Long.numberOfLeadingZeros(bits);
+        bits &= ~(1L << bit);
+        int state = (w << 6) + bit;
+        if ((firstStates[w] & (1L << bit)) != 0) {
+          startMs[state] = timestampMs;
+        } else {
+          int previous = state - 1;
+          if (timestampMs - enteredMs[previous] < minHoldMs[previous]
+              || timestampMs - startMs[previous] > maxDurationMs[state]) {
+            next[w] &= ~(1L << bit);
+            continue;
+          }
+          startMs[state] = startMs[previous];
+        }
+        enteredMs[state] = timestampMs;
+        if ((lastStates[w] & (1L << bit)) != 0) {
+          next[w] &= ~(1L << bit);
+          if (listener != null) {
+            listener.onSequenceDetected(names[sequenceOfState[state]], timestampMs);
+          }
+        }
+      }
+    }
+    System.arraycopy(next, 0, active, 0, active.length);
+  }
+
+  private static void setBit(long[] bits, int index) {
+    bits[index >>> 6] |= 1L << (index & 63);
+  }
+}
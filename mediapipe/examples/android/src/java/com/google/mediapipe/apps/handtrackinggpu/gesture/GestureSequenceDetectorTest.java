@@ -0,0 +1,154 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.mediapipe.apps.handtrackinggpu.gesture.GestureSequenceDetector.Step;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link GestureSequenceDetector}. */
+@RunWith(JUnit4.class)
+public final class GestureSequenceDetectorTest {
+  private final List<String> detected = new ArrayList<>();
+
+  @Test
+  public void fistPaperFist_detectedWithinMaxDuration() {
+    GestureSequenceDetector detector = createDefault();
+    detector.onPose(HandPoseEnum.FIST, 1000);
+    detector.onPose(HandPoseEnum.PAPER, 1700);
+    detector.onPose(HandPoseEnum.FIST, 2500);
+    assertEquals(Collections.singletonList("FIST_PAPER_FIST@2500"), detected);
+  }
+
+  @Test
+  public void fistPaperFist_notDetectedAfterMaxDuration() {
+    GestureSequenceDetector detector = createDefault();
+    detector.onPose(HandPoseEnum.FIST, 1000);
+    detector.onPose(HandPoseEnum.PAPER, 1700);
+    detector.onPose(HandPoseEnum.FIST, 2501);
+    assertEquals(Collections.emptyList(), detected);
+  }
+
+  @Test
+  public void thumbSwipe_rejectsShortHold() {
+    GestureSequenceDetector detector = createDefault();
+    detector.onPose(HandPoseEnum.THUMB, 0);
+    detector.onMotion(MotionGestureEnum.SWIPE_LEFT, 799);
+    assertEquals(Collections.emptyList(), detected);
+
+    detector.onPose(HandPoseEnum.THUMB, 1000);
+    detector.onMotion(MotionGestureEnum.SWIPE_LEFT, 1800);
+    assertEquals(Collections.singletonList("THUMB_SWIPE@1800"), detected);
+  }
+
+  @Test
+  public void unrelatedEvent_breaksMatch() {
+    GestureSequenceDetector detector = createDefault();
+    detector.onPose(HandPoseEnum.FIST, 0);
+    detector.onPose(HandPoseEnum.PAPER, 100);
+    detector.onMotion(MotionGestureEnum.SWIPE_UP, 200);
+    detector.onPose(HandPoseEnum.FIST, 300);
+    assertEquals(Collections.emptyList(), detected);
+
+    // NONE is not an event.
+    detector.onPose(HandPoseEnum.PAPER, 400);
+    detector.onMotion(MotionGestureEnum.NONE, 500);
+    detector.onPose(HandPoseEnum.FIST, 600);
+    assertEquals(Collections.singletonList("FIST_PAPER_FIST@600"), detected);
+  }
+
+  @Test
+  public void reset_dropsPartialMatches() {
+    GestureSequenceDetector detector = createDefault();
+    detector.onPose(HandPoseEnum.FIST, 0);
+    detector.onPose(HandPoseEnum.PAPER, 100);
+    detector.reset();
+    detector.onPose(HandPoseEnum.FIST, 200);
+    assertEquals(Collections.emptyList(), detected);
+  }
+
+  @Test
+  public void advance_carriesStatesAcrossWords() {
+    // 63 filler states put FIST, PAPER, FIST in states 63, 64 and 65.
+    GestureSequenceDetector detector =
+        withFiller(63)
+            .addSequence(
+                "FIST_PAPER_FIST",
+                /*maxDurationMs=*/ 1500,
+                Step.pose(HandPoseEnum.FIST),
+                Step.pose(HandPoseEnum.PAPER),
+                Step.pose(HandPoseEnum.FIST))
+            .build();
+    detector.setOnSequenceDetectedListener(this::record);
+    detector.onPose(HandPoseEnum.FIST, 0);
+    detector.onPose(HandPoseEnum.PAPER, 100);
+    detector.onPose(HandPoseEnum.FIST, 200);
+    assertEquals(Collections.singletonList("FIST_PAPER_FIST@200"), detected);
+
+    // The carried state is still subject to the steps being consecutive.
+    detector.onPose(HandPoseEnum.PAPER, 300);
+    detector.onPose(HandPoseEnum.ONE, 400);
+    detector.onPose(HandPoseEnum.FIST, 500);
+    assertEquals(1, detected.size());
+  }
+
+  @Test
+  public void advance_startsSequencesAtWordBoundary() {
+    // ONE is state 63, the last of its word; TWO, THREE are states 64 and 65. The first step of
+    // the second sequence must start a new match rather than continue the one ending in state 63.
+    GestureSequenceDetector detector =
+        withFiller(63)
+            .addSequence("ONE", /*maxDurationMs=*/ 0, Step.pose(HandPoseEnum.ONE))
+            .addSequence(
+                "TWO_THREE",
+                /*maxDurationMs=*/ 500,
+                Step.pose(HandPoseEnum.TWO),
+                Step.pose(HandPoseEnum.THREE))
+            .build();
+    detector.setOnSequenceDetectedListener(this::record);
+    detector.onPose(HandPoseEnum.ONE, 0);
+    detector.onPose(HandPoseEnum.TWO, 1000);
+    detector.onPose(HandPoseEnum.THREE, 1400);
+    // Timed from ONE, the match would have taken longer than 500 ms.
+    assertEquals(Arrays.asList("ONE@0", "TWO_THREE@1400"), detected);
+  }
+
+  private GestureSequenceDetector createDefault() {
+    GestureSequenceDetector detector = GestureSequenceDetector.createDefault();
+    detector.setOnSequenceDetectedListener(this::record);
+    return detector;
+  }
+
+  // Returns a builder with single-step sequences filling the first states, which no event used by
+  // the tests matches.
+  private static GestureSequenceDetector.Builder withFiller(int numStates) {
+    GestureSequenceDetector.Builder builder = new GestureSequenceDetector.Builder();
+    for (int i = 0; i < numStates; ++i) {
+      builder.addSequence("FILLER" + i, /*maxDurationMs=*/ 0, Step.pose(HandPoseEnum.SPIDERMAN));
+    }
+    return builder;
+  }
+
+  private void record(String name, long timestampMs) {
+    detected.add(name + "@" + timestampMs);
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.util.Random;
+
+/**
+ * Measures the linear scan of {@link GestureTemplateStore#findNearest}.
+ *
+ * <pre>
+ * bazel run :template_benchmark -- [--templates=N] [--queries=N] [--rounds=N]
+ * </pre>
+ *
+ * <p>Templates and queries are random vectors with the spread of normalized hands, so the scan does
+ * exactly the work it does on recorded templates. The first round warms up the JIT and is not
+ * reported.
+ */
+public final class GestureTemplateBenchmark {
+  public static final int DEFAULT_TEMPLATES = 5000;
+  public static final int DEFAULT_QUERIES = 1000;
+  public static final int DEFAULT_ROUNDS = 5;
+
+  private static final int NUM_LABELS = 8;
+
+  public static void main(String[] args) {
+    int numTemplates = DEFAULT_TEMPLATES;
+    int numQueries = DEFAULT_QUERIES;
+    int rounds = DEFAULT_ROUNDS;
+    for (String arg : args) {
+      if (arg.startsWith("--templates=")) {
+        numTemplates = Integer.parseInt(arg.substring("--templates=".length()));
+      } else if (arg.startsWith("--queries=")) {
+        numQueries = Integer.parseInt(arg.substring("--queries=".length()));
+      } else if (arg.startsWith("--rounds=")) {
+        rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+      } else {
+        usage();
+      }
+    }
+    if (numTemplates <= 0 || numQueries <= 0 || rounds <= 0) {
+      usage();
+    }
+
+    Random random = new Random(42);
+    GestureTemplateStore store = new GestureTemplateStore();
+    float[] vector = new float[HandLandmarks.SIZE];
+    for (int t = 0; t < numTemplates; ++t) {
+      fillRandom(random, vector, 0, HandLandmarks.SIZE);
+      store.add("T" + (t % NUM_LABELS), vector, 0);
+    }
+    float[] queries = new float[numQueries * HandLandmarks.SIZE];
+    fillRandom(random, queries, 0, queries.length);
+
+    GestureTemplateStore.Match match = new GestureTemplateStore.Match();
+    long checksum = 0;
+    for (int round = 0; round <= rounds; ++round) {
+      long startNanos = System.nanoTime();
+      for (int q = 0; q < numQueries; ++q) {
+        store.findNearest(queries, q * HandLandmarks.SIZE, match);
+        checksum += match.getIndex();
+      }
+      long elapsedNanos = System.nanoTime() - startNanos;
+      if (round > 0) {
+        System.out.printf(
+            "round %d: %.1f us per query over %d templates%n",
+            round, elapsedNanos / 1000.0 / numQueries, numTemplates);
+      }
+    }
+    // Printed so that the JIT cannot drop the scans.
+    System.out.println("checksum " + checksum);
+  }
+
+  private static void fillRandom(Random random, float[] values, int offset, int length) {
+    // Normalized landmarks are within about one palm size of the wrist.
+    for (int i = offset; i < offset + length; ++i) {
+      values[i] = (float) random.nextGaussian() * 0.5f;
+    }
+  }
+
+  private static void usage() {
+    System.err.println(
+        "Usage: GestureTemplateBenchmark [--templates=N] [--queries=N] [--rounds=N]");
+    System.exit(1);
+  }
+}
@@ -0,0 +1,182 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds a {@link GestureTemplateStore} for {@link TemplateHandPoseClassifier} from recorded hands.
+ *
+ * <p>Templates are recorded with the app's {@link LandmarkRecorder}, one log per pose, labelled by
+ * file name as described in {@link LandmarkLogFormat#labelOf}. The first hand of every {@code
+ * --stride}-th frame is normalized with {@link HandLandmarkNormalizer} and becomes a template,
+ * unless a template with the same label is closer than {@code --min-distance} palm sizes, so a hand
+ * held still does not fill the store with duplicates. Unlabelled logs are skipped.
+ *
+ * <pre>
+ * bazel run :templates -- [--stride=N] [--min-distance=D] [--append] OUTPUT LOG_OR_DIRECTORY...
+ * </pre>
+ *
+ * <p>With {@code --append}, the templates already in {@code OUTPUT} are kept. The app loads the
+ * output from its {@code hand_pose_templates.bin} asset.
+ */
+public final class GestureTemplateBuilder {
+  public static final int DEFAULT_STRIDE = 10;
+  public static final float DEFAULT_MIN_DISTANCE = 0.1f;
+
+  private final GestureTemplateStore store;
+  private final int stride;
+  private final float minDistance;
+  private final MultiHandFrame frame = new MultiHandFrame(1);
+  private final float[] normalized = new float[HandLandmarks.SIZE];
+  private final GestureTemplateStore.Match match = new GestureTemplateStore.Match();
+
+  /**
+   * @param store receives the templates.
+   * @param stride one in {@code stride} frames is considered.
+   * @param minDistance hands closer than this to a template of the same pose are skipped.
+   */
+  public GestureTemplateBuilder(GestureTemplateStore store, int stride, float minDistance) {
+    if (store.getDimension() != HandLandmarks.SIZE) {
+      throw new IllegalArgumentException(
+          "Template dimension " + store.getDimension() + " does not match " + HandLandmarks.SIZE);
+    }
+    if (stride <= 0 || minDistance < 0) {
+      throw new IllegalArgumentException("Need stride > 0 and minDistance >= 0.");
+    }
+    this.store = store;
+    this.stride = stride;
+    this.minDistance = minDistance;
+  }
+
+  /**
+   * Adds the raw landmarks of a hand stored at {@code offset} in {@code landmarks} as a template of
+   * {@code pose}, e.g. to record a template in the app.
+   *
+   * @return {@code false} if the hand cannot be normalized or is a near duplicate.
+   */
+  public boolean addHand(HandPoseEnum pose, float[] landmarks, int offset) {
+    if (!HandLandmarkNormalizer.normalize(landmarks, offset, normalized, 0)) {
+      return false;
+    }
+    // Only the nearest template is checked, so a near duplicate of another pose's template is
+    // still added.
+    store.findNearest(normalized, 0, match);
+    if (match.getIndex() >= 0
+        && match.getDistance() < minDistance
+        && pose.name().equals(match.getLabel())) {
+      return false;
+    }
+    store.add(pose.name(), normalized, 0);
+    return true;
+  }
+
+  /**
+   * Adds the hands of a log labelled with {@code pose}.
+   *
+   * @return the number of templates added.
+   */
+  public int addLog(LandmarkLogReader log, HandPoseEnum pose) {
+    int added = 0;
+    for (int f = 0; f < log.getFrameCount(); f += stride) {
+      log.readFrame(f, frame);
+      if (frame.getHandCount() > 0 && addHand(pose, frame.getHand(0).getLandmarks(), 0)) {
+        ++added;
+      }
+    }
+    return added;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int stride = DEFAULT_STRIDE;
+    float minDistance = DEFAULT_MIN_DISTANCE;
+    boolean append = false;
+    List<String> paths = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--stride=")) {
+        stride = Integer.parseInt(arg.substring("--stride=".length()));
+      } else if (arg.startsWith("--min-distance=")) {
+        minDistance = Float.parseFloat(arg.substring("--min-distance=".length()));
+      } else if (arg.equals("--append")) {
+        append = true;
+      } else if (arg.startsWith("--")) {
+        usage();
+      } else {
+        paths.add(arg);
+      }
+    }
+    if (paths.size() < 2 || stride <= 0 || minDistance < 0) {
+      usage();
+    }
+    File output = new File(paths.get(0));
+    List<File> logs = new ArrayList<>();
+    for (String path : paths.subList(1, paths.size())) {
+      collectLogs(new File(path), logs);
+    }
+    Collections.sort(logs);
+
+    GestureTemplateStore store = new GestureTemplateStore();
+    if (append && output.exists()) {
+      try (InputStream input = new FileInputStream(output)) {
+        store.readFrom(input);
+      }
+    }
+    int existing = store.size();
+    GestureTemplateBuilder builder = new GestureTemplateBuilder(store, stride, minDistance);
+    for (File log : logs) {
+      HandPoseEnum pose = LandmarkLogFormat.labelOf(log);
+      if (pose == null) {
+        System.err.println(log + ": not labelled, skipped.");
+        continue;
+      }
+      int added = builder.addLog(new LandmarkLogReader(log), pose);
+      System.out.println(log + ": " + added + " " + pose + " templates.");
+    }
+    try (OutputStream out = new FileOutputStream(output)) {
+      store.writeTo(out);
+    }
+    System.out.println(
+        "Wrote " + store.size() + " templates (" + (store.size() - existing) + " new) to "
+            + output);
+  }
+
+  private static void collectLogs(File file, List<File> logs) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          collectLogs(child, logs);
+        }
+      }
+    } else if (file.getName().endsWith(LandmarkLogFormat.FILE_SUFFIX)) {
+      logs.add(file);
+    }
+  }
+
+  private static void usage() {
+    System.err.println(
+        "Usage: GestureTemplateBuilder [--stride=N] [--min-distance=D] [--append] OUTPUT"
+            + " LOG_OR_DIRECTORY...");
+    System.exit(1);
+  }
+}
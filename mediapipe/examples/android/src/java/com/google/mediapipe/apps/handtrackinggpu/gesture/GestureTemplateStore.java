@@ -0,0 +1,220 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores user-recorded gesture templates and finds the one nearest to a hand.
+ *
+ * <p>Templates are fixed-length landmark vectors (by default one hand, {@link HandLandmarks#SIZE}
+ * floats), expected to be normalized by {@link HandLandmarkNormalizer} like the queries. They are
+ * packed back to back in a single {@code float[]}, and {@link #findNearest} is an exact linear scan
+ * over that array. With 63 dimensions, space-partitioning indexes such as KD-trees degrade to a
+ * full scan anyway, while the packed scan is branch-free in its inner loop and stays under a
+ * millisecond for thousands of templates; {@code bazel run :template_benchmark} measures it.
+ *
+ * <p>{@link TemplateHandPoseClassifier} classifies hands with a store built by {@link
+ * GestureTemplateBuilder}.
+ *
+ * <p>Adding templates is not thread-safe; matching against a store that is no longer modified can
+ * be done from any number of threads.
+ */
+public final class GestureTemplateStore {
+  /**
+   * Default acceptance radius, in palm sizes, for templates normalized by {@link
+   * HandLandmarkNormalizer}.
+   */
+  public static final float DEFAULT_ACCEPTANCE_RADIUS = 1.5f;
+
+  private static final int FILE_MAGIC = 0x47545331; // "GTS1"
+
+  /** Result of {@link #findNearest}. */
+  public static final class Match {
+    private int index = -1;
+    private String label;
+    private float distance = Float.POSITIVE_INFINITY;
+    private float confidence = 0;
+
+    /** Returns the index of the nearest template, or -1 if the store is empty. */
+    public int getIndex() {
+      return index;
+    }
+
+    /** Returns the label of the nearest template, or {@code null} if the store is empty. */
+    public String getLabel() {
+      return label;
+    }
+
+    /** Returns the Euclidean distance to the nearest template. */
+    public float getDistance() {
+      return distance;
+    }
+
+    /** Returns 1 for an exact match, falling linearly to 0 at the acceptance radius. */
+    public float getConfidence() {
+      return confidence;
+    }
+  }
+
+  private final int dimension;
+  private final float acceptanceRadius;
+  private float[] templates;
+  private final List<String> labels = new ArrayList<>();
+
+  /** Creates a store of normalized hands, see {@link #DEFAULT_ACCEPTANCE_RADIUS}. */
+  public GestureTemplateStore() {
+    this(DEFAULT_ACCEPTANCE_RADIUS);
+  }
+
+  public GestureTemplateStore(float acceptanceRadius) {
+    this(HandLandmarks.SIZE, acceptanceRadius);
+  }
+
+  /**
+   * @param dimension number of floats per template.
+   * @param acceptanceRadius distance at which the match confidence drops to zero.
+   */
+  public GestureTemplateStore(int dimension, float acceptanceRadius) {
+    if (dimension <= 0 || acceptanceRadius <= 0) {
+      throw new IllegalArgumentException("dimension and acceptanceRadius must be positive.");
+    }
+    this.dimension = dimension;
+    this.acceptanceRadius = acceptanceRadius;
+    this.templates = new float[dimension * 16];
+  }
+
+  public int getDimension() {
+    return dimension;
+  }
+
+  public int size() {
+    return labels.size();
+  }
+
+  public String getLabel(int index) {
+    return labels.get(index);
+  }
+
+  /**
+   * Adds a template.
+   *
+   * @param label name of the gesture; several templates may share a label.
+   * @param vector array holding the template at {@code offset}.
+   * @return the index of the new template.
+   */
+  public int add(String label, float[] vector, int offset) {
+    if (label == null) {
+      throw new NullPointerException("label");
+    }
+    if (vector.length < offset + dimension) {
+      throw new IllegalArgumentException("vector must hold " + dimension + " floats.");
+    }
+    int index = labels.size();
+    int needed = (index + 1) * dimension;
+    if (needed > templates.length) {
+      templates = Arrays.copyOf(templates, Math.max(needed, templates.length * 2));
+    }
+    System.arraycopy(vector, offset, templates, index * dimension, dimension);
+    labels.add(label);
+    return index;
+  }
+
+  /**
+   * Finds the template nearest to the vector stored at {@code offset} in {@code query}.
+   *
+   * @param match receives the result; reusing it across calls avoids allocations.
+   * @return {@code match}.
+   */
+  public Match findNearest(float[] query, int offset, Match match) {
+    if (query.length < offset + dimension) {
+      throw new IllegalArgumentException("query must hold " + dimension + " floats.");
+    }
+    float[] packed = templates;
+    int count = labels.size();
+    int bestIndex = -1;
+    float bestDistance = Float.POSITIVE_INFINITY;
+    for (int t = 0, base = 0; t < count; ++t, base += dimension) {
+      float sum = 0;
+      for (int i = 0; i < dimension; ++i) {
+        float d = packed[base + i] - query[offset + i];
+        sum += d * d;
+      }
+      if (sum < bestDistance) {
+        bestDistance = sum;
+        bestIndex = t;
+      }
+    }
+    match.index = bestIndex;
+    if (bestIndex < 0) {
+      match.label = null;
+      match.distance = Float.POSITIVE_INFINITY;
+      match.confidence = 0;
+    } else {
+      match.label = labels.get(bestIndex);
+      match.distance = (float) Math.sqrt(bestDistance);
+      match.confidence = Math.max(0f, 1f - match.distance / acceptanceRadius);
+    }
+    return match;
+  }
+
+  /** Writes all templates to {@code output}. The stream is not closed. */
+  public void writeTo(OutputStream output) throws IOException {
+    DataOutputStream data = new DataOutputStream(output);
+    data.writeInt(FILE_MAGIC);
+    data.writeInt(dimension);
+    data.writeInt(labels.size());
+    for (int t = 0; t < labels.size(); ++t) {
+      data.writeUTF(labels.get(t));
+      for (int i = 0; i < dimension; ++i) {
+        data.writeFloat(templates[t * dimension + i]);
+      }
+    }
+    data.flush();
+  }
+
+  /**
+   * Adds the templates previously written by {@link #writeTo}. The stream is not closed.
+   *
+   * @throws IOException if the stream is malformed or its dimension does not match this store.
+   */
+  public void readFrom(InputStream input) throws IOException {
+    DataInputStream data = new DataInputStream(input);
+    if (data.readInt() != FILE_MAGIC) {
+      throw new IOException("Not a gesture template file.");
+    }
+    int fileDimension = data.readInt();
+    if (fileDimension != dimension) {
+      throw new IOException(
+          "Template dimension " + fileDimension + " does not match store dimension " + dimension);
+    }
+    int count = data.readInt();
+    float[] vector = new float[dimension];
+    for (int t = 0; t < count; ++t) {
+      String label = data.readUTF();
+      for (int i = 0; i < dimension; ++i) {
+        vector[i] = data.readFloat();
+      }
+      add(label, vector, 0);
+    }
+  }
+}
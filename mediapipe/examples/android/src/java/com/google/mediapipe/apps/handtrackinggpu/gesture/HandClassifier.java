@@ -0,0 +1,34 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Maps the landmarks of one hand to a {@link HandPoseEnum}.
+ *
+ * <p>Classifiers are given landmarks normalized by {@link HandLandmarkNormalizer}, so the hand is
+ * normalized once per frame no matter how many classifiers look at it.
+ */
+public interface HandClassifier {
+  /**
+   * Classifies the hand stored at {@code offset} in {@code landmarks}.
+   *
+   * @param landmarks flat array of normalized landmarks laid out as described in {@link
+   *     HandLandmarks}.
+   * @param offset index of the wrist x coordinate in {@code landmarks}.
+   * @param result receives the pose and its confidence; the pose is {@link HandPoseEnum#UNKNOWN}
+   *     when the hand does not match any known pose or the confidence is too low.
+   */
+  void classify(float[] landmarks, int offset, PoseEstimate result);
+}
@@ -0,0 +1,69 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Maps hand landmarks into a hand-centric frame, independent of where the hand is in the image, how
+ * far it is from the camera and how it is rolled.
+ *
+ * <p>The normalized hand has its wrist at the origin and its middle finger MCP at (0, -1), i.e. the
+ * palm points up in image orientation and the palm size (wrist to middle MCP in the image plane) is
+ * 1. The depth is translated and scaled the same way but not rotated. Distances between normalized
+ * landmarks are therefore expressed in palm sizes.
+ */
+public final class HandLandmarkNormalizer {
+  /**
+   * Normalizes the hand stored at {@code srcOffset} in {@code src} into {@code dst} at {@code
+   * dstOffset}. {@code src} and {@code dst} may be the same array, but the two ranges must then
+   * either coincide or not overlap. Does not allocate.
+   *
+   * @return {@code false} if the palm size is zero, in which case {@code dst} is zero-filled.
+   */
+  public static boolean normalize(float[] src, int srcOffset, float[] dst, int dstOffset) {
+    if (src.length < srcOffset + HandLandmarks.SIZE
+        || dst.length < dstOffset + HandLandmarks.SIZE) {
+      throw new IllegalArgumentException("Arrays must hold " + HandLandmarks.SIZE + " floats.");
+    }
+    float wristX = src[srcOffset];
+    float wristY = src[srcOffset + 1];
+    float wristZ = src[srcOffset + 2];
+    int middleMcp = srcOffset + HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE;
+    float palmX = src[middleMcp] - wristX;
+    float palmY = src[middleMcp + 1] - wristY;
+    float palmSizeSquared = palmX * palmX + palmY * palmY;
+    if (!(palmSizeSquared > 0)) {
+      for (int i = 0; i < HandLandmarks.SIZE; ++i) {
+        dst[dstOffset + i] = 0;
+      }
+      return false;
+    }
+    // Rotating by the unit palm direction and dividing by the palm size folds into one matrix,
+    // since (palmX, palmY) / palmSize^2 is the unit direction divided by the palm size.
+    float ux = palmX / palmSizeSquared;
+    float uy = palmY / palmSizeSquared;
+    float inverseScale = (float) (1 / Math.sqrt(palmSizeSquared));
+    for (int i = 0; i < HandLandmarks.SIZE; i += HandLandmarks.STRIDE) {
+      float px = src[srcOffset + i] - wristX;
+      float py = src[srcOffset + i + 1] - wristY;
+      float pz = src[srcOffset + i + 2] - wristZ;
+      dst[dstOffset + i] = ux * py - uy * px;
+      dst[dstOffset + i + 1] = -(ux * px + uy * py);
+      dst[dstOffset + i + 2] = pz * inverseScale;
+    }
+    return true;
+  }
+
+  private HandLandmarkNormalizer() {}
+}
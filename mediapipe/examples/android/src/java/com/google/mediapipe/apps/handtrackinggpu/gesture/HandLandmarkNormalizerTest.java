@@ -0,0 +1,133 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HandLandmarkNormalizer}. */
+@RunWith(JUnit4.class)
+public final class HandLandmarkNormalizerTest {
+  private static final float EPSILON = 1e-4f;
+
+  @Test
+  public void normalize_mapsPalmToUnitUpVector() {
+    float[] normalized = normalize(createHand());
+    assertEquals(0f, normalized[HandLandmarks.WRIST * HandLandmarks.STRIDE], EPSILON);
+    assertEquals(0f, normalized[HandLandmarks.WRIST * HandLandmarks.STRIDE + 1], EPSILON);
+    assertEquals(0f, normalized[HandLandmarks.WRIST * HandLandmarks.STRIDE + 2], EPSILON);
+    float middleX = normalized[HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE];
+    float middleY = normalized[HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE + 1];
+    assertEquals(0f, middleX, EPSILON);
+    assertEquals(-1f, middleY, EPSILON);
+    // The palm size.
+    assertEquals(1f, (float) Math.hypot(middleX, middleY), EPSILON);
+  }
+
+  @Test
+  public void normalize_ignoresTranslationScaleAndRoll() {
+    float[] hand = createHand();
+    float[] expected = normalize(hand);
+
+    assertArrayEquals(expected, normalize(transform(hand, 0.3f, -0.2f, 0.1f, 1f, 0)), EPSILON);
+    assertArrayEquals(expected, normalize(transform(hand, 0, 0, 0, 2.5f, 0)), EPSILON);
+    assertArrayEquals(expected, normalize(transform(hand, 0, 0, 0, 1f, 1.2)), EPSILON);
+    assertArrayEquals(expected, normalize(transform(hand, -0.4f, 0.7f, 0, 0.6f, -2.9)), EPSILON);
+  }
+
+  @Test
+  public void normalize_distinguishesShapes() {
+    float[] hand = createHand();
+    float[] other = hand.clone();
+    // Bend the index tip towards the palm.
+    other[HandLandmarks.INDEX_TIP * HandLandmarks.STRIDE + 1] += 0.05f;
+    assertFalse(Arrays.equals(normalize(hand), normalize(other)));
+  }
+
+  @Test
+  public void normalize_supportsOffsetsAndInPlace() {
+    float[] hand = createHand();
+    float[] expected = normalize(hand);
+
+    float[] src = new float[HandLandmarks.SIZE + 5];
+    System.arraycopy(hand, 0, src, 5, HandLandmarks.SIZE);
+    float[] dst = new float[HandLandmarks.SIZE + 7];
+    assertTrue(HandLandmarkNormalizer.normalize(src, 5, dst, 7));
+    assertArrayEquals(expected, Arrays.copyOfRange(dst, 7, dst.length), 0f);
+
+    assertTrue(HandLandmarkNormalizer.normalize(src, 5, src, 5));
+    assertArrayEquals(expected, Arrays.copyOfRange(src, 5, src.length), 0f);
+  }
+
+  @Test
+  public void normalize_rejectsDegenerateHand() {
+    float[] hand = createHand();
+    // The middle MCP on top of the wrist in the image plane, only deeper.
+    System.arraycopy(hand, 0, hand, HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE, 2);
+    float[] dst = new float[HandLandmarks.SIZE];
+    Arrays.fill(dst, 1f);
+    assertFalse(HandLandmarkNormalizer.normalize(hand, 0, dst, 0));
+    assertArrayEquals(new float[HandLandmarks.SIZE], dst, 0f);
+
+    assertFalse(HandLandmarkNormalizer.normalize(new float[HandLandmarks.SIZE], 0, dst, 0));
+  }
+
+  private static float[] normalize(float[] hand) {
+    float[] normalized = new float[HandLandmarks.SIZE];
+    assertTrue(HandLandmarkNormalizer.normalize(hand, 0, normalized, 0));
+    return normalized;
+  }
+
+  // Returns a hand in image coordinates, palm size about 0.2, tilted and with some depth.
+  private static float[] createHand() {
+    Random random = new Random(7);
+    float[] hand = new float[HandLandmarks.SIZE];
+    for (int i = 0; i < HandLandmarks.NUM_LANDMARKS; ++i) {
+      hand[i * HandLandmarks.STRIDE] = 0.5f + (random.nextFloat() - 0.5f) * 0.3f;
+      hand[i * HandLandmarks.STRIDE + 1] = 0.5f + (random.nextFloat() - 0.5f) * 0.3f;
+      hand[i * HandLandmarks.STRIDE + 2] = (random.nextFloat() - 0.5f) * 0.1f;
+    }
+    hand[0] = 0.45f;
+    hand[1] = 0.7f;
+    hand[HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE] = 0.52f;
+    hand[HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE + 1] = 0.51f;
+    return hand;
+  }
+
+  // Rolls the hand by the given angle and scales it around the wrist, then translates it.
+  private static float[] transform(
+      float[] hand, float dx, float dy, float dz, float scale, double rollRadians) {
+    float cos = (float) Math.cos(rollRadians);
+    float sin = (float) Math.sin(rollRadians);
+    float[] result = new float[HandLandmarks.SIZE];
+    for (int i = 0; i < HandLandmarks.SIZE; i += HandLandmarks.STRIDE) {
+      float x = hand[i] - hand[0];
+      float y = hand[i + 1] - hand[1];
+      float z = hand[i + 2] - hand[2];
+      result[i] = hand[0] + dx + scale * (cos * x - sin * y);
+      result[i + 1] = hand[1] + dy + scale * (sin * x + cos * y);
+      result[i + 2] = hand[2] + dz + scale * z;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,77 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Layout of a single hand in a flat landmark array.
+ *
+ * <p>A hand is stored as {@link #NUM_LANDMARKS} consecutive (x, y, z) triples, i.e. landmark {@code
+ * i} lives at {@code offset + i * STRIDE}. The landmark indices follow the MediaPipe hand landmark
+ * model.
+ */
+public final class HandLandmarks {
+  public static final int NUM_LANDMARKS = 21;
+  public static final int STRIDE = 3;
+  /** Number of floats used by one hand. */
+  public static final int SIZE = NUM_LANDMARKS * STRIDE;
+
+  public static final int WRIST = 0;
+  public static final int THUMB_CMC = 1;
+  public static final int THUMB_MCP = 2;
+  public static final int THUMB_IP = 3;
+  public static final int THUMB_TIP = 4;
+  public static final int INDEX_MCP = 5;
+  public static final int INDEX_PIP = 6;
+  public static final int INDEX_DIP = 7;
+  public static final int INDEX_TIP = 8;
+  public static final int MIDDLE_MCP = 9;
+  public static final int MIDDLE_PIP = 10;
+  public static final int MIDDLE_DIP = 11;
+  public static final int MIDDLE_TIP = 12;
+  public static final int RING_MCP = 13;
+  public static final int RING_PIP = 14;
+  public static final int RING_DIP = 15;
+  public static final int RING_TIP = 16;
+  public static final int PINKY_MCP = 17;
+  public static final int PINKY_PIP = 18;
+  public static final int PINKY_DIP = 19;
+  public static final int PINKY_TIP = 20;
+
+  /** Returns the x coordinate of landmark {@code index}. */
+  public static float x(float[] landmarks, int offset, int index) {
+    return landmarks[offset + index * STRIDE];
+  }
+
+  /** Returns the y coordinate of landmark {@code index}. */
+  public static float y(float[] landmarks, int offset, int index) {
+    return landmarks[offset + index * STRIDE + 1];
+  }
+
+  /** Returns the z coordinate of landmark {@code index}. */
+  public static float z(float[] landmarks, int offset, int index) {
+    return landmarks[offset + index * STRIDE + 2];
+  }
+
+  /** Returns the squared distance between landmarks {@code a} and {@code b} in the image plane. */
+  public static float squaredDistance2d(float[] landmarks, int offset, int a, int b) {
+    int ia = offset + a * STRIDE;
+    int ib = offset + b * STRIDE;
+    float dx = landmarks[ia] - landmarks[ib];
+    float dy = landmarks[ia + 1] - landmarks[ib + 1];
+    return dx * dx + dy * dy;
+  }
+
+  private HandLandmarks() {}
+}
@@ -0,0 +1,133 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Turns how far the hand is opened into a continuous value between 0 (fist) and 1 (open hand), e.g.
+ * to drive a zoom level or a volume.
+ *
+ * <p>The openness is measured as the wrist to middle fingertip distance divided by the palm size,
+ * so it does not change as the hand moves towards or away from the camera. The controller
+ * calibrates itself online: it tracks the running minimum and maximum openness, and lets both decay
+ * towards the current measurement so that a single outlier does not compress the range forever.
+ * The measurement is mapped onto that range and smoothed with an exponential moving average. Until
+ * the range is wide enough to be meaningful, the value is held. The calibration survives {@link
+ * #reset}, so a hand that leaves and comes back is mapped onto the same range right away.
+ *
+ * <p>{@link #update} runs in constant time and does not allocate. This class is not thread-safe.
+ */
+public final class HandOpennessController {
+  public static final long DEFAULT_DECAY_TIME_MS = 20000;
+  public static final long DEFAULT_SMOOTHING_TIME_MS = 100;
+  public static final float DEFAULT_MIN_RANGE = 0.5f;
+
+  private final long decayTimeMs;
+  private final long smoothingTimeMs;
+  private final float minRange;
+  private float min;
+  private float max;
+  private float value = 0;
+  private long lastTimestampMs;
+  private boolean calibrated = false;
+  // False until the first update after construction or reset, which has no previous frame.
+  private boolean tracking = false;
+
+  public HandOpennessController() {
+    this(DEFAULT_DECAY_TIME_MS, DEFAULT_SMOOTHING_TIME_MS, DEFAULT_MIN_RANGE);
+  }
+
+  /**
+   * @param decayTimeMs time constant with which the calibrated extremes move back towards the
+   *     current measurement.
+   * @param smoothingTimeMs time constant of the output smoothing; 0 disables smoothing.
+   * @param minRange minimum difference, in palm sizes, between the calibrated extremes before a
+   *     value is emitted.
+   */
+  public HandOpennessController(long decayTimeMs, long smoothingTimeMs, float minRange) {
+    if (decayTimeMs <= 0 || smoothingTimeMs < 0 || !(minRange > 0)) {
+      throw new IllegalArgumentException(
+          "decayTimeMs and minRange must be positive, smoothingTimeMs non-negative.");
+    }
+    this.decayTimeMs = decayTimeMs;
+    this.smoothingTimeMs = smoothingTimeMs;
+    this.minRange = minRange;
+  }
+
+  /**
+   * Adds the hand stored at {@code offset} in {@code landmarks}.
+   *
+   * @param landmarks flat landmark array laid out as described in {@link HandLandmarks}.
+   * @param offset index of the wrist x coordinate in {@code landmarks}.
+   * @param timestampMs frame timestamp; must not decrease between calls.
+   * @return the smoothed openness, between 0 and 1.
+   */
+  public float update(float[] landmarks, int offset, long timestampMs) {
+    float palmSizeSquared =
+        HandLandmarks.squaredDistance2d(
+            landmarks, offset, HandLandmarks.WRIST, HandLandmarks.MIDDLE_MCP);
+    if (!(palmSizeSquared > 0)) {
+      return value;
+    }
+    float openness =
+        (float)
+            Math.sqrt(
+                HandLandmarks.squaredDistance2d(
+                        landmarks, offset, HandLandmarks.WRIST, HandLandmarks.MIDDLE_TIP)
+                    / palmSizeSquared);
+    if (!calibrated) {
+      min = openness;
+      max = openness;
+      lastTimestampMs = timestampMs;
+      calibrated = true;
+      tracking = true;
+      return value;
+    }
+
+    // The calibration does not decay while the hand was gone, and the output does not glide from
+    // where it was when the hand left.
+    boolean restarted = !tracking;
+    long elapsedMs = restarted ? 0 : Math.max(0, timestampMs - lastTimestampMs);
+    lastTimestampMs = timestampMs;
+    tracking = true;
+    float decay = (float) -Math.expm1(-(double) elapsedMs / decayTimeMs);
+    min = Math.min(min + decay * (openness - min), openness);
+    max = Math.max(max + decay * (openness - max), openness);
+
+    float range = max - min;
+    if (range < minRange) {
+      return value;
+    }
+    float target = (openness - min) / range;
+    if (smoothingTimeMs == 0 || restarted) {
+      value = target;
+    } else {
+      value += (float) -Math.expm1(-(double) elapsedMs / smoothingTimeMs) * (target - value);
+    }
+    return value;
+  }
+
+  /** Returns the latest smoothed openness, between 0 and 1. */
+  public float getValue() {
+    return value;
+  }
+
+  /**
+   * Restarts the smoothing, e.g. when the hand leaves the scene. The calibration and the value are
+   * kept until the next {@link #update}.
+   */
+  public void reset() {
+    tracking = false;
+  }
+}
@@ -0,0 +1,154 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HandOpennessController}. */
+@RunWith(JUnit4.class)
+public final class HandOpennessControllerTest {
+  private static final long FRAME_MS = 33;
+  // Wrist to middle fingertip distances, in palm sizes.
+  private static final float FIST = 1.0f;
+  private static final float OPEN = 2.0f;
+  // Long enough for the calibration to stay put during a test.
+  private static final long NO_DECAY_MS = 1000000000L;
+
+  private final float[] hand = new float[HandLandmarks.SIZE];
+  private long timestampMs = 0;
+
+  @Test
+  public void update_holdsValueUntilRangeIsCalibrated() {
+    HandOpennessController controller = new HandOpennessController(NO_DECAY_MS, 0, 0.5f);
+    assertEquals(0f, update(controller, 1.2f), 0f);
+    assertEquals(0f, update(controller, 1.5f), 0f);
+    // 1.2 to 1.8 is wider than 0.5.
+    assertEquals(1f, update(controller, 1.8f), 1e-6f);
+    assertEquals(0.5f, update(controller, 1.5f), 1e-6f);
+  }
+
+  @Test
+  public void update_mapsOpenCloseTraceOntoCalibratedRange() {
+    HandOpennessController controller = new HandOpennessController(NO_DECAY_MS, 0, 0.5f);
+    // One slow close-open-close cycle calibrates the fist and open hand.
+    for (int i = 0; i <= 60; ++i) {
+      update(controller, FIST + (OPEN - FIST) * (float) Math.sin(Math.PI * i / 60));
+    }
+    assertEquals(0f, update(controller, FIST), 1e-5f);
+    assertEquals(1f, update(controller, OPEN), 1e-5f);
+    assertEquals(0.25f, update(controller, FIST + 0.25f * (OPEN - FIST)), 1e-5f);
+    // Beyond the calibrated extremes widens the range instead of leaving [0, 1].
+    assertEquals(1f, update(controller, 2.5f), 1e-5f);
+    assertEquals(0.5f, update(controller, 1.75f), 1e-5f);
+  }
+
+  @Test
+  public void update_smoothsTowardsTarget() {
+    long smoothingMs = 100;
+    HandOpennessController controller =
+        new HandOpennessController(NO_DECAY_MS, smoothingMs, 0.5f);
+    update(controller, FIST);
+    update(controller, OPEN);
+    float expected = (float) -Math.expm1(-(double) FRAME_MS / smoothingMs);
+    assertEquals(expected, controller.getValue(), 1e-5f);
+
+    float previous = controller.getValue();
+    for (int i = 0; i < 30; ++i) {
+      float value = update(controller, OPEN);
+      assertTrue(value > previous);
+      previous = value;
+    }
+    assertEquals(1f, previous, 1e-3f);
+    assertTrue(update(controller, FIST) < previous);
+  }
+
+  @Test
+  public void update_calibrationDecaysTowardsMeasurement() {
+    long decayMs = 1000;
+    HandOpennessController controller = new HandOpennessController(decayMs, 0, 0.5f);
+    update(controller, FIST);
+    update(controller, OPEN);
+    // After many decay times at the fist, the open extreme has moved back and the range is too
+    // narrow, so the value is held.
+    for (int i = 0; i < 20 * decayMs / FRAME_MS; ++i) {
+      update(controller, FIST);
+    }
+    float held = controller.getValue();
+    assertEquals(held, update(controller, FIST + 0.4f), 0f);
+  }
+
+  @Test
+  public void reset_keepsCalibrationAndRestartsSmoothing() {
+    HandOpennessController controller = new HandOpennessController(NO_DECAY_MS, 100, 0.5f);
+    for (int i = 0; i < 30; ++i) {
+      update(controller, i % 2 == 0 ? FIST : OPEN);
+    }
+    controller.reset();
+    // The hand comes back half open a minute later: mapped onto the old range, without gliding
+    // from the value it had when it left.
+    timestampMs += 60000;
+    assertEquals(0.5f, update(controller, (FIST + OPEN) / 2), 1e-5f);
+    // The following frames are smoothed again.
+    float alpha = (float) -Math.expm1(-(double) FRAME_MS / 100);
+    assertEquals(0.5f + alpha * 0.5f, update(controller, OPEN), 1e-5f);
+  }
+
+  @Test
+  public void update_ignoresDegenerateHand() {
+    HandOpennessController controller = new HandOpennessController(NO_DECAY_MS, 0, 0.5f);
+    update(controller, FIST);
+    update(controller, OPEN);
+    float value = controller.getValue();
+    assertEquals(value, controller.update(new float[HandLandmarks.SIZE], 0, timestampMs), 0f);
+  }
+
+  @Test
+  public void constructor_rejectsInvalidArguments() {
+    try {
+      new HandOpennessController(0, 0, 0.5f);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new HandOpennessController(NO_DECAY_MS, -1, 0.5f);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new HandOpennessController(NO_DECAY_MS, 0, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  // Feeds a hand whose middle fingertip is openness palm sizes from the wrist, one frame later.
+  private float update(HandOpennessController controller, float openness) {
+    setY(HandLandmarks.WRIST, 0);
+    setY(HandLandmarks.MIDDLE_MCP, -0.1f);
+    setY(HandLandmarks.MIDDLE_TIP, -0.1f * openness);
+    timestampMs += FRAME_MS;
+    return controller.update(hand, 0, timestampMs);
+  }
+
+  private void setY(int landmark, float y) {
+    hand[landmark * HandLandmarks.STRIDE + 1] = y;
+  }
+}
@@ -0,0 +1,194 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.INDEX_MCP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.INDEX_TIP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.MIDDLE_MCP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.MIDDLE_PIP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.MIDDLE_TIP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.PINKY_MCP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.PINKY_TIP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.RING_MCP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.RING_TIP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.THUMB_TIP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.WRIST;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.squaredDistance2d;
+
+/**
+ * Rule-based classifier that maps the landmarks of one hand to a {@link HandPoseEnum}.
+ *
+ * <p>A finger is considered open when its tip is at least as far from the wrist as its MCP joint.
+ * The thumb is considered open when its tip is away from the middle/index knuckles. The five finger
+ * states are packed into a 5-bit code that indexes a {@link HandPoseTable}, so resolving the pose
+ * costs a single array lookup.
+ *
+ * <p>The confidence of a pose is the smallest margin by which a finger passed or failed its test,
+ * relative to {@link #FULL_CONFIDENCE_MARGIN}: a hand with a half-bent finger or a thumb right at
+ * the threshold gets a low confidence. Hands below the minimum confidence, and finger states
+ * without an entry in the pose table, are reported as {@link HandPoseEnum#UNKNOWN}.
+ *
+ * <p>All comparisons are done on squared distances between landmarks
+ * normalized by {@link HandLandmarkNormalizer}, so the thumb threshold does not depend on the
+ * distance to the camera. {@link #classify} does not allocate, so it can be called for every hand
+ * on every frame.
+ *
+ * <p>Instances are immutable and may be shared between threads.
+ */
+public final class HandPoseClassifier implements HandClassifier {
+  /**
+   * Default minimum distance, in palm sizes, between the thumb tip and the knuckles for an open
+   * thumb.
+   */
+  public static final float DEFAULT_THUMB_OPEN_THRESHOLD = 0.4f;
+  /** Default confidence below which a hand is reported as {@link HandPoseEnum#UNKNOWN}. */
+  public static final float DEFAULT_MIN_CONFIDENCE = 0.25f;
+  /** Margin, in palm sizes, from which a finger state is considered certain. */
+  public static final float FULL_CONFIDENCE_MARGIN = 0.3f;
+
+  public static final int NUM_FINGERS = 5;
+  // Finger state bits, set when the finger is open.
+  public static final int THUMB = 1;
+  public static final int INDEX = 1 << 1;
+  public static final int MIDDLE = 1 << 2;
+  public static final int RING = 1 << 3;
+  public static final int PINKY = 1 << 4;
+
+  private final HandPoseTable poseTable;
+  private final float thumbOpenThreshold;
+  private final float thumbOpenThresholdSquared;
+  private final float minConfidence;
+
+  public HandPoseClassifier() {
+    this(HandPoseTable.createDefault());
+  }
+
+  public HandPoseClassifier(HandPoseTable poseTable) {
+    this(poseTable, DEFAULT_THUMB_OPEN_THRESHOLD, DEFAULT_MIN_CONFIDENCE);
+  }
+
+  /**
+   * @param poseTable maps finger state codes to poses.
+   * @param thumbOpenThreshold minimum distance, in palm sizes, between the thumb tip and the
+   *     middle/index knuckles for the thumb to be considered open.
+   * @param minConfidence confidence below which a hand is reported as {@link
+   *     HandPoseEnum#UNKNOWN}.
+   */
+  public HandPoseClassifier(
+      HandPoseTable poseTable, float thumbOpenThreshold, float minConfidence) {
+    if (poseTable == null) {
+      throw new NullPointerException("poseTable");
+    }
+    if (thumbOpenThreshold < 0) {
+      throw new IllegalArgumentException("thumbOpenThreshold must be non-negative.");
+    }
+    if (minConfidence < 0 || minConfidence > 1) {
+      throw new IllegalArgumentException("minConfidence must be between 0 and 1.");
+    }
+    this.poseTable = poseTable;
+    this.thumbOpenThreshold = thumbOpenThreshold;
+    this.thumbOpenThresholdSquared = thumbOpenThreshold * thumbOpenThreshold;
+    this.minConfidence = minConfidence;
+  }
+
+  @Override
+  public void classify(float[] landmarks, int offset, PoseEstimate result) {
+    float confidence = confidence(landmarks, offset);
+    HandPoseEnum pose =
+        confidence >= minConfidence ? poseTable.get(fingerStates(landmarks, offset)) : null;
+    result.set(pose != null ? pose : HandPoseEnum.UNKNOWN, confidence);
+  }
+
+  /**
+   * Returns the finger state code of the hand stored at {@code offset} in {@code landmarks}, i.e.
+   * the bitwise or of {@link #THUMB}, {@link #INDEX}, {@link #MIDDLE}, {@link #RING} and {@link
+   * #PINKY} for every open finger.
+   */
+  public int fingerStates(float[] landmarks, int offset) {
+    if (landmarks.length < offset + HandLandmarks.SIZE) {
+      throw new IllegalArgumentException("landmarks must hold " + HandLandmarks.SIZE + " floats.");
+    }
+    float wristMiddleMcp = squaredDistance2d(landmarks, offset, WRIST, MIDDLE_MCP);
+    float wristMiddleTip = squaredDistance2d(landmarks, offset, WRIST, MIDDLE_TIP);
+    boolean middleOpen = wristMiddleMcp <= wristMiddleTip;
+
+    int states = 0;
+    if (isThumbOpen(landmarks, offset, !middleOpen)) {
+      states |= THUMB;
+    }
+    if (isFingerOpen(landmarks, offset, INDEX_MCP, INDEX_TIP)) {
+      states |= INDEX;
+    }
+    if (middleOpen) {
+      states |= MIDDLE;
+    }
+    if (isFingerOpen(landmarks, offset, RING_MCP, RING_TIP)) {
+      states |= RING;
+    }
+    if (isFingerOpen(landmarks, offset, PINKY_MCP, PINKY_TIP)) {
+      states |= PINKY;
+    }
+    return states;
+  }
+
+  /**
+   * Returns how clearly every finger of the hand stored at {@code offset} in {@code landmarks} is
+   * either open or closed, between 0 and 1.
+   */
+  public float confidence(float[] landmarks, int offset) {
+    if (landmarks.length < offset + HandLandmarks.SIZE) {
+      throw new IllegalArgumentException("landmarks must hold " + HandLandmarks.SIZE + " floats.");
+    }
+    float middleMargin = fingerMargin(landmarks, offset, MIDDLE_MCP, MIDDLE_TIP);
+    float thumbMargin;
+    if (middleMargin < 0) {
+      thumbMargin = distance(landmarks, offset, THUMB_TIP, MIDDLE_PIP) - thumbOpenThreshold;
+    } else {
+      thumbMargin =
+          Math.min(
+                  distance(landmarks, offset, THUMB_TIP, MIDDLE_MCP),
+                  distance(landmarks, offset, THUMB_TIP, INDEX_MCP))
+              - thumbOpenThreshold;
+    }
+    float margin = Math.min(Math.abs(middleMargin), Math.abs(thumbMargin));
+    margin = Math.min(margin, Math.abs(fingerMargin(landmarks, offset, INDEX_MCP, INDEX_TIP)));
+    margin = Math.min(margin, Math.abs(fingerMargin(landmarks, offset, RING_MCP, RING_TIP)));
+    margin = Math.min(margin, Math.abs(fingerMargin(landmarks, offset, PINKY_MCP, PINKY_TIP)));
+    return Math.min(1f, margin / FULL_CONFIDENCE_MARGIN);
+  }
+
+  // Signed difference between the wrist to tip and the wrist to MCP distances; positive when open.
+  private static float fingerMargin(float[] landmarks, int offset, int mcp, int tip) {
+    return distance(landmarks, offset, WRIST, tip) - distance(landmarks, offset, WRIST, mcp);
+  }
+
+  private static float distance(float[] landmarks, int offset, int a, int b) {
+    return (float) Math.sqrt(squaredDistance2d(landmarks, offset, a, b));
+  }
+
+  private static boolean isFingerOpen(float[] landmarks, int offset, int mcp, int tip) {
+    return squaredDistance2d(landmarks, offset, WRIST, mcp)
+        <= squaredDistance2d(landmarks, offset, WRIST, tip);
+  }
+
+  private boolean isThumbOpen(float[] landmarks, int offset, boolean middleClosed) {
+    if (middleClosed) {
+      return squaredDistance2d(landmarks, offset, THUMB_TIP, MIDDLE_PIP)
+          >= thumbOpenThresholdSquared;
+    }
+    return squaredDistance2d(landmarks, offset, THUMB_TIP, MIDDLE_MCP) >= thumbOpenThresholdSquared
+        && squaredDistance2d(landmarks, offset, THUMB_TIP, INDEX_MCP) >= thumbOpenThresholdSquared;
+  }
+}
@@ -1,4 +1,4 @@
-package com.google.mediapipe.apps.handtrackinggpu;
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
 
 public enum HandPoseEnum {
 
@@ -0,0 +1,192 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Weights of a two-layer perceptron that maps normalized hand landmarks to hand poses.
+ *
+ * <p>The network has one ReLU hidden layer followed by a softmax over {@link #getLabels}. All
+ * weights are stored in flat row-major {@code float[]} arrays. Models are trained offline by {@link
+ * HandPoseModelTrainer} and evaluated by {@link LearnedHandPoseClassifier}.
+ *
+ * <p>A model is not modified after training, so it may be shared between threads.
+ */
+public final class HandPoseModel {
+  private static final int FILE_MAGIC = 0x48504d31; // "HPM1"
+  // Upper bound on the input and hidden sizes accepted by readFrom.
+  private static final int MAX_LAYER_SIZE = 4096;
+
+  private final HandPoseEnum[] labels;
+  private final int inputSize;
+  private final int hiddenSize;
+  // hiddenSize x inputSize.
+  final float[] hiddenWeights;
+  final float[] hiddenBiases;
+  // labels.length x hiddenSize.
+  final float[] outputWeights;
+  final float[] outputBiases;
+
+  HandPoseModel(HandPoseEnum[] labels, int inputSize, int hiddenSize) {
+    if (labels.length < 2 || inputSize <= 0 || hiddenSize <= 0) {
+      throw new IllegalArgumentException(
+          "Need at least two labels and positive input and hidden sizes.");
+    }
+    this.labels = labels.clone();
+    this.inputSize = inputSize;
+    this.hiddenSize = hiddenSize;
+    hiddenWeights = new float[hiddenSize * inputSize];
+    hiddenBiases = new float[hiddenSize];
+    outputWeights = new float[labels.length * hiddenSize];
+    outputBiases = new float[labels.length];
+  }
+
+  /** Returns the pose of each output, in output order. */
+  public HandPoseEnum[] getLabels() {
+    return labels.clone();
+  }
+
+  HandPoseEnum getLabel(int output) {
+    return labels[output];
+  }
+
+  public int getInputSize() {
+    return inputSize;
+  }
+
+  public int getHiddenSize() {
+    return hiddenSize;
+  }
+
+  public int getOutputSize() {
+    return labels.length;
+  }
+
+  /**
+   * Evaluates the network on the vector stored at {@code offset} in {@code input}. Does not
+   * allocate.
+   *
+   * @param hidden receives the hidden layer activations; must hold {@link #getHiddenSize} floats.
+   * @param probabilities receives the probability of each label; must hold {@link
+   *     #getOutputSize} floats.
+   * @return the index of the most probable label.
+   */
+  public int evaluate(float[] input, int offset, float[] hidden, float[] probabilities) {
+    for (int h = 0, row = 0; h < hiddenSize; ++h, row += inputSize) {
+      float sum = hiddenBiases[h];
+      for (int i = 0; i < inputSize; ++i) {
+        sum += hiddenWeights[row + i] * input[offset + i];
+      }
+      hidden[h] = sum > 0 ? sum : 0;
+    }
+    int best = 0;
+    float maxLogit = Float.NEGATIVE_INFINITY;
+    for (int o = 0, row = 0; o < labels.length; ++o, row += hiddenSize) {
+      float sum = outputBiases[o];
+      for (int h = 0; h < hiddenSize; ++h) {
+        sum += outputWeights[row + h] * hidden[h];
+      }
+      probabilities[o] = sum;
+      if (sum > maxLogit) {
+        maxLogit = sum;
+        best = o;
+      }
+    }
+    float total = 0;
+    for (int o = 0; o < labels.length; ++o) {
+      float p = (float) Math.exp(probabilities[o] - maxLogit);
+      probabilities[o] = p;
+      total += p;
+    }
+    for (int o = 0; o < labels.length; ++o) {
+      probabilities[o] /= total;
+    }
+    return best;
+  }
+
+  /** Writes the model to {@code output}. The stream is not closed. */
+  public void writeTo(OutputStream output) throws IOException {
+    DataOutputStream data = new DataOutputStream(output);
+    data.writeInt(FILE_MAGIC);
+    data.writeInt(inputSize);
+    data.writeInt(hiddenSize);
+    data.writeInt(labels.length);
+    for (HandPoseEnum label : labels) {
+      data.writeUTF(label.name());
+    }
+    writeFloats(data, hiddenWeights);
+    writeFloats(data, hiddenBiases);
+    writeFloats(data, outputWeights);
+    writeFloats(data, outputBiases);
+    data.flush();
+  }
+
+  /**
+   * Reads a model previously written by {@link #writeTo}. The stream is not closed.
+   *
+   * @throws IOException if the stream is not a valid model.
+   */
+  public static HandPoseModel readFrom(InputStream input) throws IOException {
+    DataInputStream data = new DataInputStream(input);
+    if (data.readInt() != FILE_MAGIC) {
+      throw new IOException("Not a hand pose model.");
+    }
+    int inputSize = data.readInt();
+    int hiddenSize = data.readInt();
+    int labelCount = data.readInt();
+    // Checked before anything is allocated, so a corrupt header cannot ask for huge arrays.
+    if (inputSize <= 0 || inputSize > MAX_LAYER_SIZE) {
+      throw new IOException("Invalid hand pose model: input size " + inputSize);
+    }
+    if (hiddenSize <= 0 || hiddenSize > MAX_LAYER_SIZE) {
+      throw new IOException("Invalid hand pose model: hidden size " + hiddenSize);
+    }
+    if (labelCount < 2 || labelCount > HandPoseEnum.values().length) {
+      throw new IOException("Invalid hand pose model: " + labelCount + " labels");
+    }
+    HandPoseEnum[] labels = new HandPoseEnum[labelCount];
+    HandPoseModel model;
+    try {
+      for (int i = 0; i < labels.length; ++i) {
+        labels[i] = HandPoseEnum.valueOf(data.readUTF());
+      }
+      model = new HandPoseModel(labels, inputSize, hiddenSize);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid hand pose model: " + e.getMessage(), e);
+    }
+    readFloats(data, model.hiddenWeights);
+    readFloats(data, model.hiddenBiases);
+    readFloats(data, model.outputWeights);
+    readFloats(data, model.outputBiases);
+    return model;
+  }
+
+  private static void writeFloats(DataOutputStream data, float[] values) throws IOException {
+    for (float value : values) {
+      data.writeFloat(value);
+    }
+  }
+
+  private static void readFloats(DataInputStream data, float[] values) throws IOException {
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = data.readFloat();
+    }
+  }
+}
@@ -0,0 +1,386 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Trains a {@link HandPoseModel} from recorded hand landmarks.
+ *
+ * <p>Hands come from landmark logs recorded with the app's {@link LandmarkRecorder}, one log per
+ * pose, labelled by file name as described in {@link LandmarkLogFormat#labelOf}, or from a text
+ * dataset with one hand per line: the pose name followed by the 63 raw landmark coordinates, laid
+ * out as described in {@link HandLandmarks}, all separated by commas. Empty lines and lines
+ * starting with {@code #} are ignored. The landmarks are normalized with {@link
+ * HandLandmarkNormalizer} before training, exactly as they are at inference time.
+ *
+ * <p>Training minimizes the cross-entropy with mini-batch gradient descent with momentum and a
+ * small weight decay. It runs on a plain JVM, from this package's directory:
+ *
+ * <pre>
+ * bazel run :trainer -- [--hidden=N] [--epochs=N] OUTPUT DATASET_LOG_OR_DIRECTORY...
+ * </pre>
+ *
+ * <p>Directories are searched for logs; unlabelled logs are skipped. The app loads the output from
+ * its {@code hand_pose_model.bin} asset.
+ */
+public final class HandPoseModelTrainer {
+  public static final int DEFAULT_HIDDEN_SIZE = 32;
+  public static final int DEFAULT_EPOCHS = 200;
+  public static final int DEFAULT_BATCH_SIZE = 32;
+  public static final float DEFAULT_LEARNING_RATE = 0.05f;
+  public static final float DEFAULT_MOMENTUM = 0.9f;
+  public static final float DEFAULT_WEIGHT_DECAY = 1e-4f;
+
+  private int hiddenSize = DEFAULT_HIDDEN_SIZE;
+  private int epochs = DEFAULT_EPOCHS;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private float learningRate = DEFAULT_LEARNING_RATE;
+  private float momentum = DEFAULT_MOMENTUM;
+  private float weightDecay = DEFAULT_WEIGHT_DECAY;
+  private long seed = 0;
+
+  // Normalized samples, packed back to back, and the label of each sample.
+  private float[] samples = new float[HandLandmarks.SIZE * 256];
+  private final List<HandPoseEnum> sampleLabels = new ArrayList<>();
+  private final MultiHandFrame frame = new MultiHandFrame(1);
+
+  public HandPoseModelTrainer setHiddenSize(int hiddenSize) {
+    this.hiddenSize = hiddenSize;
+    return this;
+  }
+
+  public HandPoseModelTrainer setEpochs(int epochs) {
+    this.epochs = epochs;
+    return this;
+  }
+
+  public HandPoseModelTrainer setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public HandPoseModelTrainer setLearningRate(float learningRate) {
+    this.learningRate = learningRate;
+    return this;
+  }
+
+  public HandPoseModelTrainer setMomentum(float momentum) {
+    this.momentum = momentum;
+    return this;
+  }
+
+  public HandPoseModelTrainer setWeightDecay(float weightDecay) {
+    this.weightDecay = weightDecay;
+    return this;
+  }
+
+  public HandPoseModelTrainer setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public int getSampleCount() {
+    return sampleLabels.size();
+  }
+
+  /**
+   * Adds one hand given by its raw landmarks.
+   *
+   * @return {@code false} if the hand cannot be normalized and was skipped.
+   */
+  public boolean addSample(HandPoseEnum pose, float[] landmarks, int offset) {
+    int index = sampleLabels.size();
+    if ((index + 1) * HandLandmarks.SIZE > samples.length) {
+      samples = Arrays.copyOf(samples, samples.length * 2);
+    }
+    if (!HandLandmarkNormalizer.normalize(landmarks, offset, samples, index * HandLandmarks.SIZE)) {
+      return false;
+    }
+    sampleLabels.add(pose);
+    return true;
+  }
+
+  /**
+   * Adds the samples of a dataset in the text format described above.
+   *
+   * @throws IllegalArgumentException if a line is malformed, with its line number.
+   */
+  public void addSamples(Reader dataset) throws IOException {
+    BufferedReader reader = new BufferedReader(dataset);
+    float[] landmarks = new float[HandLandmarks.SIZE];
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      ++lineNumber;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(",");
+      if (fields.length != HandLandmarks.SIZE + 1) {
+        throw new IllegalArgumentException(
+            "Line " + lineNumber + ": expected a pose and " + HandLandmarks.SIZE + " values.");
+      }
+      try {
+        HandPoseEnum pose = HandPoseEnum.valueOf(fields[0].trim());
+        for (int i = 0; i < HandLandmarks.SIZE; ++i) {
+          landmarks[i] = Float.parseFloat(fields[i + 1].trim());
+        }
+        addSample(pose, landmarks, 0);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Adds the first hand of every frame of a log labelled with {@code pose}.
+   *
+   * @return the number of samples added.
+   */
+  public int addLog(LandmarkLogReader log, HandPoseEnum pose) {
+    int added = 0;
+    for (int f = 0; f < log.getFrameCount(); ++f) {
+      log.readFrame(f, frame);
+      if (frame.getHandCount() > 0 && addSample(pose, frame.getHand(0).getLandmarks(), 0)) {
+        ++added;
+      }
+    }
+    return added;
+  }
+
+  /** Trains a model on all samples added so far. */
+  public HandPoseModel train() {
+    HandPoseEnum[] labels = collectLabels();
+    int count = sampleLabels.size();
+    int[] targets = new int[count];
+    for (int s = 0; s < count; ++s) {
+      for (int o = 0; o < labels.length; ++o) {
+        if (labels[o] == sampleLabels.get(s)) {
+          targets[s] = o;
+        }
+      }
+    }
+
+    int inputs = HandLandmarks.SIZE;
+    int outputs = labels.length;
+    HandPoseModel model = new HandPoseModel(labels, inputs, hiddenSize);
+    Random random = new Random(seed);
+    // He initialization for the ReLU layer, Xavier for the softmax layer.
+    initialize(model.hiddenWeights, Math.sqrt(2.0 / inputs), random);
+    initialize(model.outputWeights, Math.sqrt(1.0 / hiddenSize), random);
+
+    float[][] parameters = {
+      model.hiddenWeights, model.hiddenBiases, model.outputWeights, model.outputBiases
+    };
+    float[][] gradients = new float[parameters.length][];
+    float[][] velocities = new float[parameters.length][];
+    for (int p = 0; p < parameters.length; ++p) {
+      gradients[p] = new float[parameters[p].length];
+      velocities[p] = new float[parameters[p].length];
+    }
+    float[] hidden = new float[hiddenSize];
+    float[] probabilities = new float[outputs];
+    float[] hiddenError = new float[hiddenSize];
+    int[] order = new int[count];
+    for (int s = 0; s < count; ++s) {
+      order[s] = s;
+    }
+
+    for (int epoch = 0; epoch < epochs; ++epoch) {
+      shuffle(order, random);
+      for (int start = 0; start < count; start += batchSize) {
+        int end = Math.min(count, start + batchSize);
+        for (float[] gradient : gradients) {
+          Arrays.fill(gradient, 0);
+        }
+        for (int b = start; b < end; ++b) {
+          int sample = order[b];
+          int offset = sample * inputs;
+          model.evaluate(samples, offset, hidden, probabilities);
+          probabilities[targets[sample]] -= 1;
+          // probabilities now holds the gradient of the loss with respect to the logits.
+          Arrays.fill(hiddenError, 0);
+          for (int o = 0, row = 0; o < outputs; ++o, row += hiddenSize) {
+            float error = probabilities[o];
+            gradients[3][o] += error;
+            for (int h = 0; h < hiddenSize; ++h) {
+              gradients[2][row + h] += error * hidden[h];
+              hiddenError[h] += error * model.outputWeights[row + h];
+            }
+          }
+          for (int h = 0, row = 0; h < hiddenSize; ++h, row += inputs) {
+            if (hidden[h] <= 0) {
+              continue;
+            }
+            float error = hiddenError[h];
+            gradients[1][h] += error;
+            for (int i = 0; i < inputs; ++i) {
+              gradients[0][row + i] += error * samples[offset + i];
+            }
+          }
+        }
+        float scale = 1f / (end - start);
+        for (int p = 0; p < parameters.length; ++p) {
+          // Only the weight matrices are decayed, not the biases.
+          float decay = (p % 2 == 0) ? weightDecay : 0;
+          float[] parameter = parameters[p];
+          float[] gradient = gradients[p];
+          float[] velocity = velocities[p];
+          for (int i = 0; i < parameter.length; ++i) {
+            float step = gradient[i] * scale + decay * parameter[i];
+            velocity[i] = momentum * velocity[i] - learningRate * step;
+            parameter[i] += velocity[i];
+          }
+        }
+      }
+    }
+    return model;
+  }
+
+  /** Returns the fraction of the added samples that {@code model} classifies correctly. */
+  public float accuracy(HandPoseModel model) {
+    float[] hidden = new float[model.getHiddenSize()];
+    float[] probabilities = new float[model.getOutputSize()];
+    int correct = 0;
+    for (int s = 0; s < sampleLabels.size(); ++s) {
+      int best = model.evaluate(samples, s * HandLandmarks.SIZE, hidden, probabilities);
+      if (model.getLabel(best) == sampleLabels.get(s)) {
+        ++correct;
+      }
+    }
+    return sampleLabels.isEmpty() ? 0 : (float) correct / sampleLabels.size();
+  }
+
+  private HandPoseEnum[] collectLabels() {
+    boolean[] present = new boolean[HandPoseEnum.values().length];
+    for (HandPoseEnum label : sampleLabels) {
+      present[label.ordinal()] = true;
+    }
+    List<HandPoseEnum> labels = new ArrayList<>();
+    for (HandPoseEnum pose : HandPoseEnum.values()) {
+      if (present[pose.ordinal()]) {
+        labels.add(pose);
+      }
+    }
+    if (labels.size() < 2) {
+      throw new IllegalStateException("The dataset must contain at least two poses.");
+    }
+    return labels.toArray(new HandPoseEnum[0]);
+  }
+
+  private static void initialize(float[] weights, double scale, Random random) {
+    for (int i = 0; i < weights.length; ++i) {
+      weights[i] = (float) (random.nextGaussian() * scale);
+    }
+  }
+
+  private static void shuffle(int[] values, Random random) {
+    for (int i = values.length - 1; i > 0; --i) {
+      int j = random.nextInt(i + 1);
+      int value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    HandPoseModelTrainer trainer = new HandPoseModelTrainer();
+    List<String> paths = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--hidden=")) {
+        trainer.setHiddenSize(Integer.parseInt(arg.substring("--hidden=".length())));
+      } else if (arg.startsWith("--epochs=")) {
+        trainer.setEpochs(Integer.parseInt(arg.substring("--epochs=".length())));
+      } else if (arg.startsWith("--")) {
+        usage();
+      } else {
+        paths.add(arg);
+      }
+    }
+    if (paths.size() < 2 || trainer.hiddenSize <= 0 || trainer.epochs < 0) {
+      usage();
+    }
+    File output = new File(paths.get(0));
+    List<File> logs = new ArrayList<>();
+    for (String path : paths.subList(1, paths.size())) {
+      File file = new File(path);
+      if (file.isDirectory() || path.endsWith(LandmarkLogFormat.FILE_SUFFIX)) {
+        collectLogs(file, logs);
+        continue;
+      }
+      int before = trainer.getSampleCount();
+      try (Reader dataset =
+          new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+        trainer.addSamples(dataset);
+      }
+      System.out.println(file + ": " + (trainer.getSampleCount() - before) + " hands.");
+    }
+    Collections.sort(logs);
+    for (File log : logs) {
+      HandPoseEnum pose = LandmarkLogFormat.labelOf(log);
+      if (pose == null) {
+        System.err.println(log + ": not labelled, skipped.");
+        continue;
+      }
+      int added = trainer.addLog(new LandmarkLogReader(log), pose);
+      System.out.println(log + ": " + added + " " + pose + " hands.");
+    }
+
+    HandPoseModel model = trainer.train();
+    System.out.println(
+        "Trained on "
+            + trainer.getSampleCount()
+            + " hands, training accuracy "
+            + trainer.accuracy(model));
+    try (OutputStream out = new FileOutputStream(output)) {
+      model.writeTo(out);
+    }
+  }
+
+  private static void collectLogs(File file, List<File> logs) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          collectLogs(child, logs);
+        }
+      }
+    } else if (file.getName().endsWith(LandmarkLogFormat.FILE_SUFFIX)) {
+      logs.add(file);
+    }
+  }
+
+  private static void usage() {
+    System.err.println(
+        "Usage: HandPoseModelTrainer [--hidden=N] [--epochs=N] OUTPUT"
+            + " DATASET_LOG_OR_DIRECTORY...");
+    System.exit(1);
+  }
+}
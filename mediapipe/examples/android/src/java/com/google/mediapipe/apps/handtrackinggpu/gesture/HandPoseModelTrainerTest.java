@@ -0,0 +1,216 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HandPoseModelTrainer} and {@link HandPoseModel}. */
+@RunWith(JUnit4.class)
+public final class HandPoseModelTrainerTest {
+  private static final HandPoseEnum[] POSES = {
+    HandPoseEnum.FIST, HandPoseEnum.PAPER, HandPoseEnum.PEACE
+  };
+  // Byte offsets of the header fields written by HandPoseModel.writeTo.
+  private static final int INPUT_SIZE_OFFSET = 4;
+  private static final int LABEL_COUNT_OFFSET = 12;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void train_separatesSyntheticPoses() {
+    float[][] shapes = createShapes();
+    HandPoseModelTrainer trainer = new HandPoseModelTrainer().setEpochs(50).setSeed(1);
+    addSamples(trainer, shapes, 100, new Random(2));
+    HandPoseModel model = trainer.train();
+    assertArrayEquals(POSES, model.getLabels());
+    assertEquals(HandLandmarks.SIZE, model.getInputSize());
+    assertTrue(trainer.accuracy(model) >= 0.95f);
+
+    // Hands the model has not seen.
+    HandPoseModelTrainer heldOut = new HandPoseModelTrainer();
+    addSamples(heldOut, shapes, 50, new Random(3));
+    assertTrue(heldOut.accuracy(model) >= 0.95f);
+  }
+
+  @Test
+  public void train_needsTwoPoses() {
+    HandPoseModelTrainer trainer = new HandPoseModelTrainer();
+    trainer.addSample(HandPoseEnum.FIST, createShapes()[0], 0);
+    try {
+      trainer.train();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void addSamples_parsesDataset() throws IOException {
+    float[] hand = createShapes()[0];
+    StringBuilder dataset = new StringBuilder("# pose, landmarks\n\n");
+    dataset.append(HandPoseEnum.FIST);
+    for (float value : hand) {
+      dataset.append(", ").append(value);
+    }
+    dataset.append('\n');
+    HandPoseModelTrainer trainer = new HandPoseModelTrainer();
+    trainer.addSamples(new StringReader(dataset.toString()));
+    assertEquals(1, trainer.getSampleCount());
+
+    try {
+      trainer.addSamples(new StringReader("# comment\nFIST, 1, 2\n"));
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().startsWith("Line 2:"));
+    }
+  }
+
+  @Test
+  public void addLog_addsFirstHandOfEachFrame() throws IOException {
+    float[][] shapes = createShapes();
+    File file = temporaryFolder.newFile("fist_take1" + LandmarkLogFormat.FILE_SUFFIX);
+    assertEquals(HandPoseEnum.FIST, LandmarkLogFormat.labelOf(file));
+    MultiHandFrame frame = new MultiHandFrame(2);
+    try (LandmarkRecorder recorder = new LandmarkRecorder(file, 2)) {
+      for (int f = 0; f < 5; ++f) {
+        frame.begin(33L * f);
+        // No hand in the first frame, two hands in the others.
+        for (int h = 0; f > 0 && h < 2; ++h) {
+          System.arraycopy(shapes[h], 0, frame.addHand().getLandmarks(), 0, HandLandmarks.SIZE);
+        }
+        assertTrue(recorder.record(frame));
+      }
+    }
+
+    HandPoseModelTrainer trainer = new HandPoseModelTrainer();
+    assertEquals(4, trainer.addLog(new LandmarkLogReader(file), HandPoseEnum.FIST));
+    assertEquals(4, trainer.getSampleCount());
+  }
+
+  @Test
+  public void model_roundTripsThroughStream() throws IOException {
+    HandPoseModelTrainer trainer = new HandPoseModelTrainer().setEpochs(5).setHiddenSize(8);
+    addSamples(trainer, createShapes(), 10, new Random(4));
+    HandPoseModel model = trainer.train();
+    HandPoseModel copy = HandPoseModel.readFrom(new ByteArrayInputStream(toBytes(model)));
+
+    assertArrayEquals(model.getLabels(), copy.getLabels());
+    assertEquals(model.getInputSize(), copy.getInputSize());
+    assertEquals(model.getHiddenSize(), copy.getHiddenSize());
+    assertArrayEquals(model.hiddenWeights, copy.hiddenWeights, 0f);
+    assertArrayEquals(model.hiddenBiases, copy.hiddenBiases, 0f);
+    assertArrayEquals(model.outputWeights, copy.outputWeights, 0f);
+    assertArrayEquals(model.outputBiases, copy.outputBiases, 0f);
+    assertEquals(trainer.accuracy(model), trainer.accuracy(copy), 0f);
+  }
+
+  @Test
+  public void readFrom_rejectsInvalidModels() throws IOException {
+    HandPoseModelTrainer trainer = new HandPoseModelTrainer().setEpochs(1).setHiddenSize(4);
+    addSamples(trainer, createShapes(), 2, new Random(5));
+    byte[] bytes = toBytes(trainer.train());
+
+    assertInvalid(Arrays.copyOf(bytes, bytes.length - 1));
+    assertInvalid(withInt(bytes, 0, 0));
+    assertInvalid(withInt(bytes, LABEL_COUNT_OFFSET, -1));
+    assertInvalid(withInt(bytes, LABEL_COUNT_OFFSET, 1));
+    assertInvalid(withInt(bytes, LABEL_COUNT_OFFSET, Integer.MAX_VALUE));
+    assertInvalid(withInt(bytes, INPUT_SIZE_OFFSET, 0));
+    assertInvalid(withInt(bytes, INPUT_SIZE_OFFSET, Integer.MAX_VALUE));
+    assertInvalid(withInt(bytes, INPUT_SIZE_OFFSET + 4, -7));
+  }
+
+  // Returns one base hand per pose, each with its own random finger layout.
+  private static float[][] createShapes() {
+    float[][] shapes = new float[POSES.length][];
+    for (int p = 0; p < POSES.length; ++p) {
+      Random random = new Random(100 + p);
+      float[] hand = new float[HandLandmarks.SIZE];
+      for (int i = 0; i < HandLandmarks.NUM_LANDMARKS; ++i) {
+        hand[i * HandLandmarks.STRIDE] = 0.5f + (random.nextFloat() - 0.5f) * 0.3f;
+        hand[i * HandLandmarks.STRIDE + 1] = 0.5f + (random.nextFloat() - 0.5f) * 0.3f;
+        hand[i * HandLandmarks.STRIDE + 2] = (random.nextFloat() - 0.5f) * 0.1f;
+      }
+      // The same palm for every pose, so only the fingers tell them apart.
+      hand[0] = 0.5f;
+      hand[1] = 0.7f;
+      hand[HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE] = 0.5f;
+      hand[HandLandmarks.MIDDLE_MCP * HandLandmarks.STRIDE + 1] = 0.5f;
+      shapes[p] = hand;
+    }
+    return shapes;
+  }
+
+  // Adds perPose noisy copies of each shape, randomly moved, scaled and rolled.
+  private static void addSamples(
+      HandPoseModelTrainer trainer, float[][] shapes, int perPose, Random random) {
+    float[] hand = new float[HandLandmarks.SIZE];
+    for (int n = 0; n < perPose; ++n) {
+      for (int p = 0; p < POSES.length; ++p) {
+        float[] shape = shapes[p];
+        double roll = (random.nextDouble() - 0.5) * Math.PI;
+        float cos = (float) Math.cos(roll);
+        float sin = (float) Math.sin(roll);
+        float scale = 0.5f + random.nextFloat();
+        float dx = (random.nextFloat() - 0.5f) * 0.4f;
+        float dy = (random.nextFloat() - 0.5f) * 0.4f;
+        for (int i = 0; i < HandLandmarks.SIZE; i += HandLandmarks.STRIDE) {
+          float x = shape[i] - shape[0] + (float) random.nextGaussian() * 0.01f;
+          float y = shape[i + 1] - shape[1] + (float) random.nextGaussian() * 0.01f;
+          hand[i] = shape[0] + dx + scale * (cos * x - sin * y);
+          hand[i + 1] = shape[1] + dy + scale * (sin * x + cos * y);
+          hand[i + 2] = scale * (shape[i + 2] + (float) random.nextGaussian() * 0.01f);
+        }
+        assertTrue(trainer.addSample(POSES[p], hand, 0));
+      }
+    }
+  }
+
+  private static byte[] toBytes(HandPoseModel model) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    model.writeTo(output);
+    return output.toByteArray();
+  }
+
+  private static byte[] withInt(byte[] bytes, int offset, int value) {
+    byte[] result = bytes.clone();
+    ByteBuffer.wrap(result).putInt(offset, value);
+    return result;
+  }
+
+  private static void assertInvalid(byte[] bytes) {
+    try {
+      HandPoseModel.readFrom(new ByteArrayInputStream(bytes));
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+}
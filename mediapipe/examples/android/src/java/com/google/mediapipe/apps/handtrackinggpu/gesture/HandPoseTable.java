@@ -0,0 +1,151 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lookup table from a 5-bit finger state code to a {@link HandPoseEnum}.
+ *
+ * <p>Bit {@code i} of the code is set when finger {@code i} is open, with the thumb as bit 0 and
+ * the pinky as bit 4 (see {@link HandPoseClassifier#THUMB}). Codes without an entry map to {@code
+ * null}.
+ *
+ * <p>Tables are loaded from a plain text config with one rule per line:
+ *
+ * <pre>
+ * # thumb index middle ring pinky -> pose
+ * 01100 TWO
+ * 1**** UNKNOWN
+ * </pre>
+ *
+ * <p>where {@code 1} means open, {@code 0} closed and {@code *} either. Blank lines and text after
+ * {@code #} are ignored. Assigning two different poses to the same finger state is an error.
+ */
+public final class HandPoseTable {
+  /** Number of distinct finger state codes. */
+  public static final int SIZE = 1 << HandPoseClassifier.NUM_FINGERS;
+
+  private final HandPoseEnum[] poses = new HandPoseEnum[SIZE];
+
+  private HandPoseTable() {}
+
+  /** Returns the pose for {@code fingerStates}, or {@code null} if the code has no entry. */
+  public HandPoseEnum get(int fingerStates) {
+    return poses[fingerStates];
+  }
+
+  /** Returns the table matching the poses the hand tracking app has always recognized. */
+  public static HandPoseTable createDefault() {
+    HandPoseTable table = new HandPoseTable();
+    table.put("00000", HandPoseEnum.FIST, 0);
+    table.put("11111", HandPoseEnum.PAPER, 0);
+    table.put("01000", HandPoseEnum.ONE, 0);
+    table.put("01100", HandPoseEnum.TWO, 0);
+    table.put("01110", HandPoseEnum.THREE, 0);
+    table.put("01111", HandPoseEnum.FOUR, 0);
+    table.put("10000", HandPoseEnum.THUMB, 0);
+    table.put("11000", HandPoseEnum.RIGHT, 0);
+    table.put("01001", HandPoseEnum.SPIDERMAN, 0);
+    return table;
+  }
+
+  /** Parses a table from a UTF-8 config stream. The stream is not closed. */
+  public static HandPoseTable parse(InputStream config) throws IOException {
+    return parse(new InputStreamReader(config, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parses a table from {@code config}. The reader is not closed.
+   *
+   * @throws IllegalArgumentException if a line is malformed or conflicts with an earlier line.
+   */
+  public static HandPoseTable parse(Reader config) throws IOException {
+    HandPoseTable table = new HandPoseTable();
+    BufferedReader reader = new BufferedReader(config);
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      ++lineNumber;
+      int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] fields = line.split("\\s+");
+      if (fields.length != 2) {
+        throw new IllegalArgumentException(
+            "Line " + lineNumber + ": expected \"<finger states> <pose>\", got \"" + line + "\".");
+      }
+      HandPoseEnum pose;
+      try {
+        pose = HandPoseEnum.valueOf(fields[1]);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            "Line " + lineNumber + ": unknown pose \"" + fields[1] + "\".", e);
+      }
+      table.put(fields[0], pose, lineNumber);
+    }
+    return table;
+  }
+
+  private void put(String pattern, HandPoseEnum pose, int lineNumber) {
+    if (pattern.length() != HandPoseClassifier.NUM_FINGERS) {
+      throw new IllegalArgumentException(
+          "Line " + lineNumber + ": finger states must have "
+              + HandPoseClassifier.NUM_FINGERS + " characters, got \"" + pattern + "\".");
+    }
+    int required = 0;
+    int wildcards = 0;
+    for (int finger = 0; finger < pattern.length(); ++finger) {
+      switch (pattern.charAt(finger)) {
+        case '1':
+          required |= 1 << finger;
+          break;
+        case '0':
+          break;
+        case '*':
+          wildcards |= 1 << finger;
+          break;
+        default:
+          throw new IllegalArgumentException(
+              "Line " + lineNumber + ": invalid finger state in \"" + pattern + "\".");
+      }
+    }
+    // Enumerates every subset of the wildcard bits.
+    int subset = wildcards;
+    while (true) {
+      int code = required | subset;
+      if (poses[code] != null && poses[code] != pose) {
+        throw new IllegalArgumentException(
+            "Line " + lineNumber + ": \"" + pattern + "\" maps to " + pose
+                + " but is already mapped to " + poses[code] + ".");
+      }
+      poses[code] = pose;
+      if (subset == 0) {
+        break;
+      }
+      subset = (subset - 1) & wildcards;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HandPoseTable}. */
+@RunWith(JUnit4.class)
+public final class HandPoseTableTest {
+  // Workspace-relative, as seen from the test's runfiles directory.
+  private static final String CONFIG_DIR =
+      "mediapipe/examples/android/src/java/com/google/mediapipe/apps/handtrackinggpu/";
+
+  @Test
+  public void get_looksUpFingerStateBits() throws IOException {
+    HandPoseTable table = parse("01100 TWO\n10000 THUMB\n00001 ONE");
+    // The thumb is the first character and bit 0, the pinky the last character and bit 4.
+    assertEquals(HandPoseEnum.TWO, table.get(HandPoseClassifier.INDEX | HandPoseClassifier.MIDDLE));
+    assertEquals(HandPoseEnum.THUMB, table.get(HandPoseClassifier.THUMB));
+    assertEquals(HandPoseEnum.ONE, table.get(HandPoseClassifier.PINKY));
+    assertNull(table.get(0));
+    assertNull(table.get(HandPoseTable.SIZE - 1));
+  }
+
+  @Test
+  public void parse_ignoresCommentsAndBlankLines() throws IOException {
+    HandPoseTable table =
+        parse("# thumb index middle ring pinky -> pose\n\n   \n  11111   PAPER  # open hand\n");
+    assertEquals(HandPoseEnum.PAPER, table.get(HandPoseTable.SIZE - 1));
+    assertEquals(1, countMapped(table));
+  }
+
+  @Test
+  public void parse_expandsWildcards() throws IOException {
+    HandPoseTable table = parse("1**** UNKNOWN\n0*0*0 FIST");
+    for (int states = 0; states < HandPoseTable.SIZE; ++states) {
+      HandPoseEnum expected = null;
+      if ((states & HandPoseClassifier.THUMB) != 0) {
+        expected = HandPoseEnum.UNKNOWN;
+      } else if ((states & (HandPoseClassifier.MIDDLE | HandPoseClassifier.PINKY)) == 0) {
+        expected = HandPoseEnum.FIST;
+      }
+      assertEquals(Integer.toBinaryString(states), expected, table.get(states));
+    }
+    // 16 codes with the thumb open, and 4 with the thumb, middle and pinky closed.
+    assertEquals(16 + 4, countMapped(table));
+  }
+
+  @Test
+  public void parse_allowsOverlapsWithTheSamePose() throws IOException {
+    HandPoseTable table = parse("1**** UNKNOWN\n11111 UNKNOWN\n01100 TWO\n01100 TWO");
+    assertEquals(HandPoseEnum.UNKNOWN, table.get(HandPoseTable.SIZE - 1));
+    assertEquals(HandPoseEnum.TWO, table.get(HandPoseClassifier.INDEX | HandPoseClassifier.MIDDLE));
+  }
+
+  @Test
+  public void parse_rejectsConflictingPoses() throws IOException {
+    assertError(
+        "1**** UNKNOWN\n\n11111 PAPER",
+        "Line 3: \"11111\" maps to PAPER but is already mapped to UNKNOWN.");
+    // A wildcard conflicting with an earlier exact state.
+    assertError(
+        "01100 TWO\n01*00 PEACE", "Line 2: \"01*00\" maps to PEACE but is already mapped to TWO.");
+  }
+
+  @Test
+  public void parse_rejectsMalformedLines() throws IOException {
+    assertError("0110 TWO", "Line 1: finger states must have 5 characters, got \"0110\".");
+    assertError("01102 TWO", "Line 1: invalid finger state in \"01102\".");
+    assertError("# comment\n01100 WAVE", "Line 2: unknown pose \"WAVE\".");
+    assertError("01100", "Line 1: expected \"<finger states> <pose>\", got \"01100\".");
+    assertError(
+        "01100 TWO PEACE", "Line 1: expected \"<finger states> <pose>\", got \"01100 TWO PEACE\".");
+  }
+
+  @Test
+  public void createDefault_matchesShippedTable() throws IOException {
+    HandPoseTable shipped;
+    try (InputStream config = new FileInputStream(CONFIG_DIR + "hand_poses.txt")) {
+      shipped = HandPoseTable.parse(config);
+    }
+    HandPoseTable table = HandPoseTable.createDefault();
+    for (int states = 0; states < HandPoseTable.SIZE; ++states) {
+      assertEquals(Integer.toBinaryString(states), shipped.get(states), table.get(states));
+    }
+    assertEquals(9, countMapped(table));
+  }
+
+  private static HandPoseTable parse(String config) throws IOException {
+    return HandPoseTable.parse(new StringReader(config));
+  }
+
+  private static int countMapped(HandPoseTable table) {
+    int count = 0;
+    for (int states = 0; states < HandPoseTable.SIZE; ++states) {
+      if (table.get(states) != null) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private static void assertError(String config, String message) throws IOException {
+    try {
+      parse(config);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertEquals(message, expected.getMessage());
+    }
+  }
+}
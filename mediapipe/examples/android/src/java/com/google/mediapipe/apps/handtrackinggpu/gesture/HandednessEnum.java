@@ -0,0 +1,9 @@
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+public enum HandednessEnum {
+
+    LEFT,
+    RIGHT,
+    UNKNOWN,
+
+}
@@ -0,0 +1,107 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.MIDDLE_MCP;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.STRIDE;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.WRIST;
+import static com.google.mediapipe.apps.handtrackinggpu.gesture.HandLandmarks.squaredDistance2d;
+
+/**
+ * Tells whether a hand moved enough since it was last classified to be worth classifying again.
+ *
+ * <p>The gate keeps the landmarks of the last hand it let through as a reference. A new hand is let
+ * through when any of a few sampled landmarks (the wrist, the knuckles at both sides of the palm
+ * and the fingertips) moved, in the image plane and along either axis, by more than the threshold
+ * relative to the palm size, i.e. when the L-infinity distance on the sampled coordinates exceeds
+ * it. Comparing against the last classified hand rather than the previous frame means slow drifts
+ * still add up to a new classification. A hand is also let through once the refresh interval has
+ * elapsed, so a stale result is never kept for long.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class LandmarkChangeGate {
+  /** Default threshold, in palm sizes. */
+  public static final float DEFAULT_THRESHOLD = 0.05f;
+  /** Default maximum time between two classifications of a stationary hand. */
+  public static final long DEFAULT_REFRESH_MS = 500;
+
+  private static final int[] SAMPLED_LANDMARKS = {
+    WRIST,
+    HandLandmarks.INDEX_MCP,
+    HandLandmarks.PINKY_MCP,
+    HandLandmarks.THUMB_TIP,
+    HandLandmarks.INDEX_TIP,
+    HandLandmarks.MIDDLE_TIP,
+    HandLandmarks.RING_TIP,
+    HandLandmarks.PINKY_TIP
+  };
+
+  private final float threshold;
+  private final long refreshMs;
+  // x and y of the sampled landmarks of the last hand let through.
+  private final float[] reference = new float[SAMPLED_LANDMARKS.length * 2];
+  private boolean hasReference = false;
+  private long referenceMs;
+
+  public LandmarkChangeGate() {
+    this(DEFAULT_THRESHOLD, DEFAULT_REFRESH_MS);
+  }
+
+  /**
+   * @param threshold movement, in palm sizes, above which a hand is classified again.
+   * @param refreshMs maximum time between two classifications of a stationary hand.
+   */
+  public LandmarkChangeGate(float threshold, long refreshMs) {
+    if (threshold < 0 || refreshMs <= 0) {
+      throw new IllegalArgumentException("Need threshold >= 0 and refreshMs > 0.");
+    }
+    this.threshold = threshold;
+    this.refreshMs = refreshMs;
+  }
+
+  /**
+   * Returns whether the raw landmarks of the hand stored at {@code offset} in {@code landmarks}
+   * should be classified, and if so makes them the new reference.
+   */
+  public boolean hasChanged(float[] landmarks, int offset, long timestampMs) {
+    if (hasReference && timestampMs >= referenceMs && timestampMs - referenceMs < refreshMs) {
+      float limit =
+          threshold * (float) Math.sqrt(squaredDistance2d(landmarks, offset, WRIST, MIDDLE_MCP));
+      float maxDelta = 0;
+      for (int i = 0; i < SAMPLED_LANDMARKS.length; ++i) {
+        int index = offset + SAMPLED_LANDMARKS[i] * STRIDE;
+        maxDelta = Math.max(maxDelta, Math.abs(landmarks[index] - reference[2 * i]));
+        maxDelta = Math.max(maxDelta, Math.abs(landmarks[index + 1] - reference[2 * i + 1]));
+      }
+      if (maxDelta <= limit) {
+        return false;
+      }
+    }
+    for (int i = 0; i < SAMPLED_LANDMARKS.length; ++i) {
+      int index = offset + SAMPLED_LANDMARKS[i] * STRIDE;
+      reference[2 * i] = landmarks[index];
+      reference[2 * i + 1] = landmarks[index + 1];
+    }
+    referenceMs = timestampMs;
+    hasReference = true;
+    return true;
+  }
+
+  /** Forgets the reference, so that the next hand is let through, e.g. when the hand left. */
+  public void reset() {
+    hasReference = false;
+  }
+}
@@ -0,0 +1,420 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts landmark logs into a columnar layout for training jobs, with one row per recorded hand.
+ *
+ * <p>Every column is stored contiguously and aligned to {@link #COLUMN_ALIGNMENT} bytes, so a
+ * column can be memory-mapped and sliced directly, e.g. with {@code numpy.memmap}. All values are
+ * little-endian. The file starts with a header:
+ *
+ * <ul>
+ *   <li>{@link #MAGIC} and {@link #VERSION} as ints, the row count as a long and the column count
+ *       as an int;
+ *   <li>per column, its name as a length-prefixed ASCII string, its {@link #TYPE_INT32 type} as an
+ *       int and the file offset of its first value as a long;
+ *   <li>the label names as an int count followed by length-prefixed ASCII strings. Label {@code i}
+ *       names {@code HandPoseEnum} constant {@code i}; -1 means unlabelled.
+ * </ul>
+ *
+ * <p>The columns are {@code timestamp_ms}, {@code frame}, {@code hand}, {@code handedness} (codes
+ * of {@link LandmarkLogFormat}), {@code handedness_score}, {@code label} and then the landmark
+ * coordinates {@code x0}, {@code y0}, {@code z0} up to {@code z20}. Labels come from the log file
+ * names, see {@link LandmarkLogFormat#labelOf}. With {@code --normalized}, the landmarks are
+ * normalized by {@link HandLandmarkNormalizer}, as the classifiers see them; hands that cannot be
+ * normalized get NaN coordinates.
+ *
+ * <p>Logs are streamed in chunks of {@link #CHUNK_FRAMES} frames in two passes, one to count the
+ * rows and one to fill the columns, so memory stays bounded whatever the log size. Logs are
+ * converted in parallel, one task per log:
+ *
+ * <pre>
+ * bazel run :export -- [--normalized] [--threads=N] OUTPUT_DIRECTORY LOG_OR_DIRECTORY...
+ * </pre>
+ *
+ * <p>Logs found in a directory keep their path below it in {@code OUTPUT_DIRECTORY}. Two logs that
+ * would still be written to the same file are reported before anything is exported.
+ */
+public final class LandmarkColumnExporter {
+  public static final int MAGIC = 0x484c4331; // "HLC1"
+  public static final int VERSION = 1;
+  public static final String FILE_SUFFIX = ".hlc";
+  public static final int COLUMN_ALIGNMENT = 64;
+
+  public static final int TYPE_INT32 = 0;
+  public static final int TYPE_INT64 = 1;
+  public static final int TYPE_FLOAT32 = 2;
+
+  /** Number of log frames read and column rows written at once. */
+  public static final int CHUNK_FRAMES = 4096;
+
+  // Columns preceding the landmark coordinates.
+  private static final String[] LEADING_COLUMNS = {
+    "timestamp_ms", "frame", "hand", "handedness", "handedness_score", "label"
+  };
+  private static final int[] LEADING_TYPES = {
+    TYPE_INT64, TYPE_INT32, TYPE_INT32, TYPE_INT32, TYPE_FLOAT32, TYPE_INT32
+  };
+  private static final int NUM_COLUMNS = LEADING_COLUMNS.length + HandLandmarks.SIZE;
+  private static final String[] COLUMN_NAMES = new String[NUM_COLUMNS];
+  private static final int[] COLUMN_TYPES = new int[NUM_COLUMNS];
+  private static final int[] COLUMN_WIDTHS = new int[NUM_COLUMNS];
+
+  static {
+    char[] axes = {'x', 'y', 'z'};
+    for (int c = 0; c < NUM_COLUMNS; ++c) {
+      if (c < LEADING_COLUMNS.length) {
+        COLUMN_NAMES[c] = LEADING_COLUMNS[c];
+        COLUMN_TYPES[c] = LEADING_TYPES[c];
+      } else {
+        int coordinate = c - LEADING_COLUMNS.length;
+        COLUMN_NAMES[c] =
+            axes[coordinate % HandLandmarks.STRIDE] + "" + coordinate / HandLandmarks.STRIDE;
+        COLUMN_TYPES[c] = TYPE_FLOAT32;
+      }
+      COLUMN_WIDTHS[c] = COLUMN_TYPES[c] == TYPE_INT64 ? 8 : 4;
+    }
+  }
+
+  private final boolean normalized;
+
+  /** @param normalized whether to export normalized rather than raw landmarks. */
+  public LandmarkColumnExporter(boolean normalized) {
+    this.normalized = normalized;
+  }
+
+  /**
+   * Converts one log. Uses a few megabytes of buffers regardless of the log size; an exporter may
+   * be used by several threads at once.
+   *
+   * @return the number of rows written.
+   * @throws IOException if the log cannot be read or the output cannot be written.
+   */
+  public long export(File log, File output) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(log, "r");
+        RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+      FileChannel in = input.getChannel();
+      ByteBuffer header = ByteBuffer.allocate(LandmarkLogFormat.HEADER_SIZE);
+      readFully(in, header, 0);
+      header.flip();
+      int maxHands = LandmarkLogFormat.readHeader(header);
+      if (maxHands < 0) {
+        throw new IOException(log + " is not a landmark log.");
+      }
+      int recordSize = LandmarkLogFormat.recordSize(maxHands);
+      long frameCount = (in.size() - LandmarkLogFormat.HEADER_SIZE) / recordSize;
+      ByteBuffer records = ByteBuffer.allocateDirect(CHUNK_FRAMES * recordSize);
+
+      long rowCount = countRows(in, records, recordSize, maxHands, frameCount);
+      FileChannel channel = out.getChannel();
+      channel.truncate(0);
+      long[] columnOffsets = writeHeader(channel, rowCount);
+
+      HandPoseEnum label = LandmarkLogFormat.labelOf(log);
+      new ChunkWriter(channel, columnOffsets, maxHands, label == null ? -1 : label.ordinal())
+          .write(in, records, recordSize, frameCount);
+      return rowCount;
+    }
+  }
+
+  private static long countRows(
+      FileChannel in, ByteBuffer records, int recordSize, int maxHands, long frameCount)
+      throws IOException {
+    long rows = 0;
+    for (long first = 0; first < frameCount; first += CHUNK_FRAMES) {
+      int frames = (int) Math.min(CHUNK_FRAMES, frameCount - first);
+      readChunk(in, records, recordSize, first, frames);
+      for (int f = 0, p = 0; f < frames; ++f, p += recordSize) {
+        rows += Math.max(0, Math.min(records.getInt(p + 8), maxHands));
+      }
+    }
+    return rows;
+  }
+
+  // Lays out the columns after the header, writes the header and returns the column offsets.
+  private static long[] writeHeader(FileChannel channel, long rowCount) throws IOException {
+    HandPoseEnum[] poses = HandPoseEnum.values();
+    int headerSize = 4 + 4 + 8 + 4 + 4;
+    for (String name : COLUMN_NAMES) {
+      headerSize += 4 + name.length() + 4 + 8;
+    }
+    for (HandPoseEnum pose : poses) {
+      headerSize += 4 + pose.name().length();
+    }
+    ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putLong(rowCount).putInt(NUM_COLUMNS);
+    long[] columnOffsets = new long[NUM_COLUMNS];
+    long offset = align(headerSize);
+    for (int c = 0; c < NUM_COLUMNS; ++c) {
+      columnOffsets[c] = offset;
+      putString(header, COLUMN_NAMES[c]);
+      header.putInt(COLUMN_TYPES[c]).putLong(offset);
+      offset = align(offset + rowCount * COLUMN_WIDTHS[c]);
+    }
+    header.putInt(poses.length);
+    for (HandPoseEnum pose : poses) {
+      putString(header, pose.name());
+    }
+    header.flip();
+    writeFully(channel, header, 0);
+    // Size the file up front, so that the columns can be filled in any order.
+    if (channel.size() < offset) {
+      writeFully(channel, ByteBuffer.allocate(1), offset - 1);
+    }
+    return columnOffsets;
+  }
+
+  // Decodes chunks of frames and appends their hands to every column.
+  private final class ChunkWriter {
+    private final FileChannel channel;
+    private final long[] columnOffsets;
+    private final int maxHands;
+    private final int label;
+    // Holds up to CHUNK_FRAMES rows per column, and is flushed to the file whenever it is full.
+    private final ByteBuffer[] columns = new ByteBuffer[NUM_COLUMNS];
+    private final MultiHandFrame frame;
+    private final float[] landmarks = new float[HandLandmarks.SIZE];
+    private long rowsWritten = 0;
+
+    ChunkWriter(FileChannel channel, long[] columnOffsets, int maxHands, int label) {
+      this.channel = channel;
+      this.columnOffsets = columnOffsets;
+      this.maxHands = maxHands;
+      this.label = label;
+      frame = new MultiHandFrame(maxHands);
+      for (int c = 0; c < NUM_COLUMNS; ++c) {
+        columns[c] =
+            ByteBuffer.allocateDirect(CHUNK_FRAMES * COLUMN_WIDTHS[c])
+                .order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+
+    void write(FileChannel in, ByteBuffer records, int recordSize, long frameCount)
+        throws IOException {
+      for (long first = 0; first < frameCount; first += CHUNK_FRAMES) {
+        int frames = (int) Math.min(CHUNK_FRAMES, frameCount - first);
+        readChunk(in, records, recordSize, first, frames);
+        for (int f = 0; f < frames; ++f) {
+          LandmarkLogFormat.readFrame(records, f * recordSize, maxHands, frame);
+          for (int h = 0; h < frame.getHandCount(); ++h) {
+            if (!columns[0].hasRemaining()) {
+              flush();
+            }
+            addRow((int) (first + f), h);
+          }
+        }
+      }
+      flush();
+    }
+
+    private void addRow(int frameIndex, int handIndex) {
+      MultiHandFrame.Hand hand = frame.getHand(handIndex);
+      columns[0].putLong(frame.getTimestampMs());
+      columns[1].putInt(frameIndex);
+      columns[2].putInt(handIndex);
+      columns[3].putInt(LandmarkLogFormat.encodeHandedness(hand.getHandedness()));
+      columns[4].putFloat(hand.getHandednessScore());
+      columns[5].putInt(label);
+      float[] values = hand.getLandmarks();
+      if (normalized) {
+        if (!HandLandmarkNormalizer.normalize(values, 0, landmarks, 0)) {
+          Arrays.fill(landmarks, Float.NaN);
+        }
+        values = landmarks;
+      }
+      for (int i = 0; i < HandLandmarks.SIZE; ++i) {
+        columns[LEADING_COLUMNS.length + i].putFloat(values[i]);
+      }
+    }
+
+    private void flush() throws IOException {
+      int rows = columns[0].position() / COLUMN_WIDTHS[0];
+      for (int c = 0; c < NUM_COLUMNS; ++c) {
+        ByteBuffer column = columns[c];
+        column.flip();
+        writeFully(channel, column, columnOffsets[c] + rowsWritten * COLUMN_WIDTHS[c]);
+        column.clear();
+      }
+      rowsWritten += rows;
+    }
+  }
+
+  private static void readChunk(
+      FileChannel in, ByteBuffer records, int recordSize, long firstFrame, int frames)
+      throws IOException {
+    records.clear();
+    records.limit(frames * recordSize);
+    readFully(in, records, LandmarkLogFormat.HEADER_SIZE + firstFrame * recordSize);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of file.");
+      }
+      position += read;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static void putString(ByteBuffer buffer, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+    buffer.putInt(bytes.length).put(bytes);
+  }
+
+  private static long align(long offset) {
+    return (offset + COLUMN_ALIGNMENT - 1) / COLUMN_ALIGNMENT * COLUMN_ALIGNMENT;
+  }
+
+  /**
+   * Finds the logs below {@code inputs} and maps each to its output file. A log found in an input
+   * directory keeps its path relative to that directory, so logs with the same name in different
+   * subdirectories do not overwrite each other.
+   *
+   * @throws IOException if two logs would be written to the same output file.
+   */
+  static Map<File, File> mapOutputs(File outputDirectory, List<File> inputs) throws IOException {
+    Map<File, File> outputs = new LinkedHashMap<>();
+    for (File input : inputs) {
+      collectLogs(input, outputDirectory, outputs);
+    }
+    Map<File, File> logsByOutput = new HashMap<>();
+    for (Map.Entry<File, File> entry : outputs.entrySet()) {
+      File other = logsByOutput.put(entry.getValue(), entry.getKey());
+      if (other != null) {
+        throw new IOException(
+            other + " and " + entry.getKey() + " would both be written to " + entry.getValue());
+      }
+    }
+    return outputs;
+  }
+
+  private static void collectLogs(File file, File outputDirectory, Map<File, File> outputs) {
+    String name = file.getName();
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          collectLogs(
+              child,
+              child.isDirectory() ? new File(outputDirectory, child.getName()) : outputDirectory,
+              outputs);
+        }
+      }
+    } else if (name.endsWith(LandmarkLogFormat.FILE_SUFFIX)) {
+      String baseName = name.substring(0, name.length() - LandmarkLogFormat.FILE_SUFFIX.length());
+      outputs.put(file, new File(outputDirectory, baseName + FILE_SUFFIX));
+    }
+  }
+
+  /**
+   * Usage: {@code LandmarkColumnExporter [--normalized] [--threads=N] OUTPUT_DIRECTORY
+   * LOG_OR_DIRECTORY...}. Each log is written to the output directory under its own name, with
+   * the {@link #FILE_SUFFIX} suffix, see {@link #mapOutputs}.
+   */
+  public static void main(String[] args) throws InterruptedException {
+    boolean normalized = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+    List<String> paths = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.equals("--normalized")) {
+        normalized = true;
+      } else if (arg.startsWith("--threads=")) {
+        threads = Integer.parseInt(arg.substring("--threads=".length()));
+      } else {
+        paths.add(arg);
+      }
+    }
+    if (paths.size() < 2 || threads <= 0) {
+      System.err.println(
+          "Usage: LandmarkColumnExporter [--normalized] [--threads=N] OUTPUT_DIRECTORY"
+              + " LOG_OR_DIRECTORY...");
+      System.exit(1);
+    }
+    File outputDirectory = new File(paths.get(0));
+    if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+      System.err.println("Cannot create " + outputDirectory);
+      System.exit(1);
+    }
+    List<File> inputs = new ArrayList<>();
+    for (String path : paths.subList(1, paths.size())) {
+      inputs.add(new File(path));
+    }
+    Map<File, File> outputs;
+    try {
+      outputs = mapOutputs(outputDirectory, inputs);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+      return;
+    }
+    List<File> logs = new ArrayList<>(outputs.keySet());
+
+    LandmarkColumnExporter exporter = new LandmarkColumnExporter(normalized);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Long>> futures = new ArrayList<>(logs.size());
+    for (File log : logs) {
+      File output = outputs.get(log);
+      File parent = output.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs()) {
+        System.err.println("Cannot create " + parent);
+        System.exit(1);
+      }
+      futures.add(executor.submit(() -> exporter.export(log, output)));
+    }
+    long rows = 0;
+    int failed = 0;
+    for (int i = 0; i < logs.size(); ++i) {
+      try {
+        rows += futures.get(i).get();
+      } catch (ExecutionException e) {
+        System.err.println(logs.get(i) + ": " + e.getCause());
+        ++failed;
+      }
+    }
+    executor.shutdown();
+    System.out.println("Exported " + rows + " hands from " + (logs.size() - failed) + " logs.");
+    if (failed > 0) {
+      System.exit(1);
+    }
+  }
+}
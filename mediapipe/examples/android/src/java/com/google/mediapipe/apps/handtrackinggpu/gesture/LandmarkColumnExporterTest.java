@@ -0,0 +1,224 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LandmarkColumnExporter}. */
+@RunWith(JUnit4.class)
+public final class LandmarkColumnExporterTest {
+  private static final int MAX_HANDS = 2;
+  // Spans two chunks, so the columns are flushed more than once.
+  private static final int FRAME_COUNT = LandmarkColumnExporter.CHUNK_FRAMES + 10;
+  private static final int LEADING_COLUMNS = 6;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void export_writesAlignedColumns() throws IOException {
+    File log = temporaryFolder.newFile("peace_take1" + LandmarkLogFormat.FILE_SUFFIX);
+    // Large enough that the recorder never drops a frame.
+    try (LandmarkRecorder recorder = new LandmarkRecorder(log, MAX_HANDS, FRAME_COUNT)) {
+      for (int f = 0; f < FRAME_COUNT; ++f) {
+        assertTrue(recorder.record(createFrame(f)));
+      }
+    }
+    File output = temporaryFolder.newFile("peace_take1" + LandmarkColumnExporter.FILE_SUFFIX);
+    long rowCount = new LandmarkColumnExporter(/*normalized=*/ false).export(log, output);
+
+    // Frame f holds f % 3 hands.
+    long expectedRows = 0;
+    for (int f = 0; f < FRAME_COUNT; ++f) {
+      expectedRows += f % 3;
+    }
+    assertEquals(expectedRows, rowCount);
+
+    ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(output.toPath()));
+    file.order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(LandmarkColumnExporter.MAGIC, file.getInt());
+    assertEquals(LandmarkColumnExporter.VERSION, file.getInt());
+    assertEquals(rowCount, file.getLong());
+    int columnCount = file.getInt();
+    assertEquals(LEADING_COLUMNS + HandLandmarks.SIZE, columnCount);
+
+    String[] names = new String[columnCount];
+    int[] types = new int[columnCount];
+    long[] offsets = new long[columnCount];
+    for (int c = 0; c < columnCount; ++c) {
+      names[c] = getString(file);
+      types[c] = file.getInt();
+      offsets[c] = file.getLong();
+    }
+    assertEquals(
+        Arrays.asList("timestamp_ms", "frame", "hand", "handedness", "handedness_score", "label"),
+        Arrays.asList(names).subList(0, LEADING_COLUMNS));
+    assertEquals("x0", names[LEADING_COLUMNS]);
+    assertEquals("y0", names[LEADING_COLUMNS + 1]);
+    assertEquals("z20", names[columnCount - 1]);
+    assertEquals(LandmarkColumnExporter.TYPE_INT64, types[0]);
+    assertEquals(LandmarkColumnExporter.TYPE_FLOAT32, types[4]);
+    assertEquals(LandmarkColumnExporter.TYPE_INT32, types[5]);
+    assertEquals(LandmarkColumnExporter.TYPE_FLOAT32, types[columnCount - 1]);
+
+    HandPoseEnum[] poses = HandPoseEnum.values();
+    assertEquals(poses.length, file.getInt());
+    for (HandPoseEnum pose : poses) {
+      assertEquals(pose.name(), getString(file));
+    }
+
+    // Every column is aligned and starts after the header and the previous column.
+    long end = file.position();
+    for (int c = 0; c < columnCount; ++c) {
+      assertEquals(0, offsets[c] % LandmarkColumnExporter.COLUMN_ALIGNMENT);
+      assertTrue(offsets[c] >= end);
+      end = offsets[c] + rowCount * width(types[c]);
+    }
+    assertTrue(file.limit() >= end);
+
+    int row = 0;
+    for (int f = 0; f < FRAME_COUNT; ++f) {
+      MultiHandFrame expected = createFrame(f);
+      for (int h = 0; h < expected.getHandCount(); ++h, ++row) {
+        MultiHandFrame.Hand hand = expected.getHand(h);
+        assertEquals(expected.getTimestampMs(), file.getLong((int) offsets[0] + 8 * row));
+        assertEquals(f, getInt(file, offsets[1], row));
+        assertEquals(h, getInt(file, offsets[2], row));
+        assertEquals(
+            LandmarkLogFormat.encodeHandedness(hand.getHandedness()),
+            getInt(file, offsets[3], row));
+        assertEquals(hand.getHandednessScore(), getFloat(file, offsets[4], row), 0f);
+        assertEquals(HandPoseEnum.PEACE.ordinal(), getInt(file, offsets[5], row));
+        for (int i = 0; i < HandLandmarks.SIZE; ++i) {
+          assertEquals(
+              hand.getLandmarks()[i], getFloat(file, offsets[LEADING_COLUMNS + i], row), 0f);
+        }
+      }
+    }
+    assertEquals(rowCount, row);
+  }
+
+  @Test
+  public void export_marksUnlabelledLogs() throws IOException {
+    File log = temporaryFolder.newFile("take1" + LandmarkLogFormat.FILE_SUFFIX);
+    try (LandmarkRecorder recorder = new LandmarkRecorder(log, MAX_HANDS)) {
+      recorder.record(createFrame(1));
+    }
+    File output = temporaryFolder.newFile("take1" + LandmarkColumnExporter.FILE_SUFFIX);
+    assertEquals(1, new LandmarkColumnExporter(/*normalized=*/ false).export(log, output));
+
+    ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(output.toPath()));
+    file.order(ByteOrder.LITTLE_ENDIAN).position(4 + 4 + 8 + 4);
+    long labelOffset = 0;
+    for (int c = 0; c <= 5; ++c) {
+      getString(file);
+      file.getInt();
+      labelOffset = file.getLong();
+    }
+    assertEquals(-1, getInt(file, labelOffset, 0));
+  }
+
+  @Test
+  public void mapOutputs_mirrorsRelativePaths() throws IOException {
+    File input = temporaryFolder.newFolder("input");
+    File first = createLog(new File(input, "alice"), "fist");
+    File second = createLog(new File(input, "bob"), "fist");
+    File top = createLog(input, "paper");
+    File outputDirectory = new File(temporaryFolder.getRoot(), "output");
+
+    Map<File, File> outputs =
+        LandmarkColumnExporter.mapOutputs(outputDirectory, Collections.singletonList(input));
+    assertEquals(3, outputs.size());
+    assertEquals(new File(new File(outputDirectory, "alice"), "fist.hlc"), outputs.get(first));
+    assertEquals(new File(new File(outputDirectory, "bob"), "fist.hlc"), outputs.get(second));
+    assertEquals(new File(outputDirectory, "paper.hlc"), outputs.get(top));
+
+    // A log given directly is written under its own name.
+    outputs =
+        LandmarkColumnExporter.mapOutputs(outputDirectory, Collections.singletonList(second));
+    assertEquals(new File(outputDirectory, "fist.hlc"), outputs.get(second));
+  }
+
+  @Test
+  public void mapOutputs_rejectsCollisions() throws IOException {
+    File first = createLog(temporaryFolder.newFolder("alice"), "fist");
+    File second = createLog(temporaryFolder.newFolder("bob"), "fist");
+    File outputDirectory = new File(temporaryFolder.getRoot(), "output");
+    try {
+      LandmarkColumnExporter.mapOutputs(
+          outputDirectory, Arrays.asList(first.getParentFile(), second.getParentFile()));
+      fail();
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().contains(first.getPath()));
+      assertTrue(expected.getMessage().contains(second.getPath()));
+    }
+  }
+
+  // Returns frame f, which holds f % 3 hands with landmarks derived from f.
+  private static MultiHandFrame createFrame(int f) {
+    MultiHandFrame frame = new MultiHandFrame(MAX_HANDS);
+    frame.begin(1000L + 33L * f);
+    for (int h = 0; h < f % 3; ++h) {
+      MultiHandFrame.Hand hand = frame.addHand();
+      hand.setHandedness(h == 0 ? HandednessEnum.LEFT : HandednessEnum.RIGHT, 0.5f + h * 0.25f);
+      float[] landmarks = hand.getLandmarks();
+      for (int i = 0; i < landmarks.length; ++i) {
+        landmarks[i] = f + h * 0.5f + i * 0.001f;
+      }
+    }
+    return frame;
+  }
+
+  private static File createLog(File directory, String name) throws IOException {
+    assertTrue(directory.isDirectory() || directory.mkdirs());
+    File log = new File(directory, name + LandmarkLogFormat.FILE_SUFFIX);
+    new LandmarkRecorder(log, MAX_HANDS).close();
+    return log;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  private static int getInt(ByteBuffer buffer, long columnOffset, int row) {
+    return buffer.getInt((int) columnOffset + 4 * row);
+  }
+
+  private static float getFloat(ByteBuffer buffer, long columnOffset, int row) {
+    return buffer.getFloat((int) columnOffset + 4 * row);
+  }
+
+  private static int width(int type) {
+    return type == LandmarkColumnExporter.TYPE_INT64 ? 8 : 4;
+  }
+}
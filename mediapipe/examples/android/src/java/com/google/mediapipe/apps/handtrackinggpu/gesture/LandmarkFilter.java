@@ -0,0 +1,35 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Streaming low-pass filter over the landmarks of one hand.
+ *
+ * <p>Implementations keep a separate state for every coordinate of every landmark, indexed the same
+ * way as the landmark array, and must not allocate in {@link #filter}.
+ */
+public interface LandmarkFilter {
+  /**
+   * Filters the hand stored at {@code srcOffset} in {@code src} into {@code dst} at {@code
+   * dstOffset}. The two ranges may coincide to filter in place.
+   *
+   * @param timestampMs frame timestamp; a frame that is not newer than the previous one leaves the
+   *     state unchanged and only outputs it.
+   */
+  void filter(float[] src, int srcOffset, float[] dst, int dstOffset, long timestampMs);
+
+  /** Forgets the filter state, e.g. when the hand leaves the scene. */
+  void reset();
+}
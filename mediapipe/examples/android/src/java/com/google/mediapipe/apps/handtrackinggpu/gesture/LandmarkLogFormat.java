@@ -0,0 +1,162 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Layout of the binary landmark logs written by {@link LandmarkRecorder}.
+ *
+ * <p>A log starts with a header of three big-endian ints: {@link #MAGIC}, {@link #VERSION} and the
+ * maximum number of hands per frame. It is followed by fixed-size frame records, so record {@code
+ * i} starts at {@code HEADER_SIZE + i * recordSize(maxHands)}. Each record holds:
+ *
+ * <ul>
+ *   <li>the frame timestamp in milliseconds, as a long;
+ *   <li>the number of hands in the frame, as an int;
+ *   <li>{@code maxHands} hand slots, each made of the handedness code as an int, the handedness
+ *       score as a float and the {@link HandLandmarks#SIZE} raw landmark coordinates as floats.
+ *       Slots past the hand count are zero.
+ * </ul>
+ */
+public final class LandmarkLogFormat {
+  public static final int MAGIC = 0x484c5231; // "HLR1"
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 3 * 4;
+  /** File name suffix of landmark logs. */
+  public static final String FILE_SUFFIX = ".hlr";
+
+  static final int HAND_SIZE = 4 + 4 + HandLandmarks.SIZE * 4;
+  static final int FRAME_HEADER_SIZE = 8 + 4;
+
+  // Handedness codes, independent of the declaration order of HandednessEnum.
+  private static final int HANDEDNESS_UNKNOWN = 0;
+  private static final int HANDEDNESS_LEFT = 1;
+  private static final int HANDEDNESS_RIGHT = 2;
+
+  private LandmarkLogFormat() {}
+
+  /** Returns the size in bytes of one frame record. */
+  public static int recordSize(int maxHands) {
+    return FRAME_HEADER_SIZE + maxHands * HAND_SIZE;
+  }
+
+  static void writeHeader(ByteBuffer buffer, int maxHands) {
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(maxHands);
+  }
+
+  /**
+   * Checks the header at the current position of {@code buffer} and returns its maximum number of
+   * hands per frame, or -1 if it is not a landmark log header.
+   */
+  static int readHeader(ByteBuffer buffer) {
+    if (buffer.remaining() < HEADER_SIZE
+        || buffer.getInt() != MAGIC
+        || buffer.getInt() != VERSION) {
+      return -1;
+    }
+    int maxHands = buffer.getInt();
+    return maxHands > 0 ? maxHands : -1;
+  }
+
+  /** Encodes {@code frame} as one record at {@code position}, without moving the buffer. */
+  static void writeFrame(ByteBuffer buffer, int position, int maxHands, MultiHandFrame frame) {
+    int handCount = Math.min(frame.getHandCount(), maxHands);
+    buffer.putLong(position, frame.getTimestampMs());
+    buffer.putInt(position + 8, handCount);
+    int handPosition = position + FRAME_HEADER_SIZE;
+    for (int h = 0; h < maxHands; ++h, handPosition += HAND_SIZE) {
+      if (h < handCount) {
+        MultiHandFrame.Hand hand = frame.getHand(h);
+        buffer.putInt(handPosition, encodeHandedness(hand.getHandedness()));
+        buffer.putFloat(handPosition + 4, hand.getHandednessScore());
+        float[] landmarks = hand.getLandmarks();
+        for (int i = 0, p = handPosition + 8; i < HandLandmarks.SIZE; ++i, p += 4) {
+          buffer.putFloat(p, landmarks[i]);
+        }
+      } else {
+        for (int p = handPosition; p < handPosition + HAND_SIZE; p += 4) {
+          buffer.putInt(p, 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Decodes the record at {@code position} into {@code frame}, without moving the buffer. At most
+   * {@link MultiHandFrame#getMaxHands} hands are decoded.
+   */
+  static void readFrame(ByteBuffer buffer, int position, int maxHands, MultiHandFrame frame) {
+    frame.begin(buffer.getLong(position));
+    int handCount = Math.min(buffer.getInt(position + 8), maxHands);
+    int handPosition = position + FRAME_HEADER_SIZE;
+    for (int h = 0; h < handCount; ++h, handPosition += HAND_SIZE) {
+      MultiHandFrame.Hand hand = frame.addHand();
+      if (hand == null) {
+        break;
+      }
+      hand.setHandedness(
+          decodeHandedness(buffer.getInt(handPosition)), buffer.getFloat(handPosition + 4));
+      float[] landmarks = hand.getLandmarks();
+      for (int i = 0, p = handPosition + 8; i < HandLandmarks.SIZE; ++i, p += 4) {
+        landmarks[i] = buffer.getFloat(p);
+      }
+    }
+  }
+
+  /**
+   * Returns the pose a log is labelled with, or {@code null} if it is not labelled. A log is
+   * labelled with the pose its file name starts with, up to the first {@code _}, {@code -} or
+   * {@code .}, ignoring case, e.g. {@code PAPER_2020-01-31.hlr}.
+   */
+  public static HandPoseEnum labelOf(File log) {
+    String name = log.getName();
+    int end = 0;
+    while (end < name.length() && "_-.".indexOf(name.charAt(end)) < 0) {
+      ++end;
+    }
+    String prefix = name.substring(0, end).toUpperCase(Locale.US);
+    for (HandPoseEnum pose : HandPoseEnum.values()) {
+      if (pose.name().equals(prefix)) {
+        return pose;
+      }
+    }
+    return null;
+  }
+
+  static int encodeHandedness(HandednessEnum handedness) {
+    switch (handedness) {
+      case LEFT:
+        return HANDEDNESS_LEFT;
+      case RIGHT:
+        return HANDEDNESS_RIGHT;
+      default:
+        return HANDEDNESS_UNKNOWN;
+    }
+  }
+
+  private static HandednessEnum decodeHandedness(int code) {
+    switch (code) {
+      case HANDEDNESS_LEFT:
+        return HandednessEnum.LEFT;
+      case HANDEDNESS_RIGHT:
+        return HandednessEnum.RIGHT;
+      default:
+        return HandednessEnum.UNKNOWN;
+    }
+  }
+}
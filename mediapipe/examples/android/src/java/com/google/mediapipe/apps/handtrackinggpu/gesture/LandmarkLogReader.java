@@ -0,0 +1,78 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a landmark log written by {@link LandmarkRecorder} through a read-only memory mapping.
+ *
+ * <p>Records have a fixed size, so any frame can be read directly by index. Reading a frame decodes
+ * it into a caller-owned {@link MultiHandFrame} and does not allocate. A torn trailing record is
+ * ignored.
+ *
+ * <p>A reader may be used by one thread at a time; open one reader per thread to read a log
+ * concurrently.
+ */
+public final class LandmarkLogReader {
+  private final MappedByteBuffer buffer;
+  private final int maxHands;
+  private final int recordSize;
+  private final int frameCount;
+
+  /** @throws IOException if the file cannot be mapped or is not a landmark log. */
+  public LandmarkLogReader(File file) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+      FileChannel channel = input.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(file + " is too large to be mapped.");
+      }
+      // The mapping stays valid after the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    maxHands = LandmarkLogFormat.readHeader(buffer);
+    if (maxHands < 0) {
+      throw new IOException(file + " is not a landmark log.");
+    }
+    recordSize = LandmarkLogFormat.recordSize(maxHands);
+    frameCount = (buffer.capacity() - LandmarkLogFormat.HEADER_SIZE) / recordSize;
+  }
+
+  /** Returns the maximum number of hands per frame the log was recorded with. */
+  public int getMaxHands() {
+    return maxHands;
+  }
+
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Decodes frame {@code index} into {@code frame}. Hands past {@link MultiHandFrame#getMaxHands}
+   * are skipped.
+   */
+  public void readFrame(int index, MultiHandFrame frame) {
+    if (index < 0 || index >= frameCount) {
+      throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount);
+    }
+    LandmarkLogFormat.readFrame(
+        buffer, LandmarkLogFormat.HEADER_SIZE + index * recordSize, maxHands, frame);
+  }
+}
@@ -0,0 +1,243 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends hand frames to a binary log in {@link LandmarkLogFormat}, off the calling thread.
+ *
+ * <p>{@link #record} encodes the frame into a preallocated ring of records and returns; a
+ * background thread writes the ring to the file in batches. Nothing is allocated per frame, so the
+ * recorder can stay attached to the live pipeline. If the writer falls behind and the ring is
+ * full, the frame is dropped and counted in {@link #getDroppedCount} rather than blocking the
+ * caller.
+ *
+ * <p>{@link #record} must only be called from one thread at a time, typically the landmark packet
+ * callback thread. A frame recorded concurrently with {@link #close} is either written or counted
+ * as dropped; frames recorded after it are dropped.
+ */
+public final class LandmarkRecorder implements Closeable {
+  /** Default number of frames buffered between the caller and the writer, about 2 s at 60 fps. */
+  public static final int DEFAULT_CAPACITY = 128;
+
+  private static final long WRITER_PARK_NANOS = 20_000_000;
+
+  private final int maxHands;
+  private final int recordSize;
+  private final int capacity;
+  private final byte[] ring;
+  private final ByteBuffer ringBuffer;
+  private final FileOutputStream output;
+  private final Thread writer;
+
+  // Number of records encoded by record() and written by the writer thread. Records in between are
+  // pending in the ring.
+  private final AtomicLong produced = new AtomicLong();
+  private final AtomicLong consumed = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private volatile boolean closed = false;
+  // Set while record() runs, so that close() can wait for a frame being published concurrently.
+  private volatile boolean recording = false;
+  private volatile IOException writeError;
+
+  public LandmarkRecorder(File file, int maxHands) throws IOException {
+    this(file, maxHands, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Opens {@code file} for appending and starts the writer thread. A new or empty file gets a
+   * header; an existing log must have been written with the same {@code maxHands}, and a
+   * truncated last record, e.g. from a crash, is discarded.
+   *
+   * @param capacity number of frames buffered while the writer is busy.
+   * @throws IOException if the file cannot be opened or is not a compatible log.
+   */
+  public LandmarkRecorder(File file, int maxHands, int capacity) throws IOException {
+    if (maxHands <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("maxHands and capacity must be positive.");
+    }
+    this.maxHands = maxHands;
+    this.recordSize = LandmarkLogFormat.recordSize(maxHands);
+    this.capacity = capacity;
+    ring = new byte[recordSize * capacity];
+    ringBuffer = ByteBuffer.wrap(ring);
+
+    long validLength = checkExistingLog(file, maxHands, recordSize);
+    output = new FileOutputStream(file, /*append=*/ true);
+    try {
+      FileChannel channel = output.getChannel();
+      if (channel.size() != validLength) {
+        channel.truncate(validLength);
+      }
+      if (validLength == 0) {
+        ByteBuffer header = ByteBuffer.allocate(LandmarkLogFormat.HEADER_SIZE);
+        LandmarkLogFormat.writeHeader(header, maxHands);
+        output.write(header.array());
+      }
+    } catch (IOException e) {
+      output.close();
+      throw e;
+    }
+
+    writer = new Thread(this::drain, "LandmarkRecorder");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Queues {@code frame} for writing. Hands past the {@code maxHands} given at construction are
+   * not recorded.
+   *
+   * @return {@code false} if the frame was dropped because the ring is full, the recorder is
+   *     closed or a previous write failed.
+   */
+  public boolean record(MultiHandFrame frame) {
+    // Set before closed is read, and close() sets closed before it reads this: either the frame
+    // is dropped here, or close() waits for it and writes it.
+    recording = true;
+    try {
+      long index = produced.get();
+      if (closed || writeError != null || index - consumed.get() == capacity) {
+        dropped.incrementAndGet();
+        return false;
+      }
+      LandmarkLogFormat.writeFrame(
+          ringBuffer, (int) (index % capacity) * recordSize, maxHands, frame);
+      produced.lazySet(index + 1);
+    } finally {
+      recording = false;
+    }
+    LockSupport.unpark(writer);
+    return true;
+  }
+
+  /** Returns the number of frames written to the file so far. */
+  public long getWrittenCount() {
+    return consumed.get();
+  }
+
+  /** Returns the number of frames dropped by {@link #record}. */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Writes the pending frames, stops the writer thread and closes the file.
+   *
+   * @throws IOException if a write failed, now or earlier on the writer thread.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(writer);
+    boolean interrupted = false;
+    while (writer.isAlive()) {
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    // A frame that passed the closed check in record() may have been published after the writer
+    // last looked; write it here.
+    while (recording) {
+      Thread.yield();
+    }
+    try {
+      if (writeError == null) {
+        writePending();
+      }
+    } catch (IOException e) {
+      writeError = e;
+    }
+    try {
+      output.close();
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (writeError != null) {
+      throw writeError;
+    }
+  }
+
+  private void drain() {
+    try {
+      // close() writes what is left once the writer has stopped.
+      while (!closed) {
+        if (!writePending()) {
+          LockSupport.parkNanos(this, WRITER_PARK_NANOS);
+        }
+      }
+    } catch (IOException e) {
+      writeError = e;
+    }
+  }
+
+  // Writes the records pending in the ring, at most two calls for the two ends of the ring.
+  // Returns false if there were none.
+  private boolean writePending() throws IOException {
+    long start = consumed.get();
+    long end = produced.get();
+    if (start == end) {
+      return false;
+    }
+    while (start < end) {
+      int slot = (int) (start % capacity);
+      int count = (int) Math.min(end - start, capacity - slot);
+      output.write(ring, slot * recordSize, count * recordSize);
+      start += count;
+      consumed.lazySet(start);
+    }
+    return true;
+  }
+
+  // Returns the length of the whole records of an existing log, or 0 if there is none.
+  private static long checkExistingLog(File file, int maxHands, int recordSize)
+      throws IOException {
+    long length = file.length();
+    if (length == 0) {
+      return 0;
+    }
+    ByteBuffer header = ByteBuffer.allocate(LandmarkLogFormat.HEADER_SIZE);
+    try (FileInputStream input = new FileInputStream(file)) {
+      input.getChannel().read(header);
+    }
+    header.flip();
+    int fileMaxHands = LandmarkLogFormat.readHeader(header);
+    if (fileMaxHands < 0) {
+      throw new IOException(file + " is not a landmark log.");
+    }
+    if (fileMaxHands != maxHands) {
+      throw new IOException(
+          file + " holds up to " + fileMaxHands + " hands per frame, not " + maxHands);
+    }
+    long records = (length - LandmarkLogFormat.HEADER_SIZE) / recordSize;
+    return LandmarkLogFormat.HEADER_SIZE + records * recordSize;
+  }
+}
@@ -0,0 +1,211 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LandmarkRecorder} and {@link LandmarkLogReader}. */
+@RunWith(JUnit4.class)
+public final class LandmarkRecorderTest {
+  private static final int MAX_HANDS = 2;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final MultiHandFrame frame = new MultiHandFrame(MAX_HANDS);
+
+  @Test
+  public void record_roundTripsThroughReader() throws IOException {
+    File file = temporaryFolder.newFile("log" + LandmarkLogFormat.FILE_SUFFIX);
+    try (LandmarkRecorder recorder = new LandmarkRecorder(file, MAX_HANDS)) {
+      for (int f = 0; f < 10; ++f) {
+        assertTrue(recorder.record(createFrame(f, f % (MAX_HANDS + 1))));
+      }
+    }
+
+    LandmarkLogReader reader = new LandmarkLogReader(file);
+    assertEquals(MAX_HANDS, reader.getMaxHands());
+    assertEquals(10, reader.getFrameCount());
+    for (int f = 0; f < 10; ++f) {
+      reader.readFrame(f, frame);
+      assertFrame(f, f % (MAX_HANDS + 1), frame);
+    }
+  }
+
+  @Test
+  public void record_dropsHandsPastMaxHands() throws IOException {
+    File file = temporaryFolder.newFile("log" + LandmarkLogFormat.FILE_SUFFIX);
+    try (LandmarkRecorder recorder = new LandmarkRecorder(file, 1)) {
+      recorder.record(createFrame(0, 2));
+    }
+    LandmarkLogReader reader = new LandmarkLogReader(file);
+    reader.readFrame(0, frame);
+    assertFrame(0, 1, frame);
+  }
+
+  @Test
+  public void constructor_appendsToExistingLog() throws IOException {
+    File file = temporaryFolder.newFile("log" + LandmarkLogFormat.FILE_SUFFIX);
+    recordFrames(file, 0, 3);
+    recordFrames(file, 3, 2);
+    LandmarkLogReader reader = new LandmarkLogReader(file);
+    assertEquals(5, reader.getFrameCount());
+    for (int f = 0; f < 5; ++f) {
+      reader.readFrame(f, frame);
+      assertFrame(f, 1, frame);
+    }
+  }
+
+  @Test
+  public void constructor_truncatesTornRecord() throws IOException {
+    File file = temporaryFolder.newFile("log" + LandmarkLogFormat.FILE_SUFFIX);
+    recordFrames(file, 0, 3);
+    // Half a record, as left by a crash in the middle of a write.
+    try (FileOutputStream output = new FileOutputStream(file, /*append=*/ true)) {
+      output.write(new byte[LandmarkLogFormat.recordSize(MAX_HANDS) / 2]);
+    }
+    // The reader ignores the torn record.
+    assertEquals(3, new LandmarkLogReader(file).getFrameCount());
+
+    // The recorder drops it, so the next record starts at a record boundary.
+    recordFrames(file, 3, 2);
+    assertEquals(
+        LandmarkLogFormat.HEADER_SIZE + 5 * LandmarkLogFormat.recordSize(MAX_HANDS),
+        file.length());
+    LandmarkLogReader reader = new LandmarkLogReader(file);
+    for (int f = 0; f < 5; ++f) {
+      reader.readFrame(f, frame);
+      assertFrame(f, 1, frame);
+    }
+  }
+
+  @Test
+  public void constructor_rejectsOtherMaxHands() throws IOException {
+    File file = temporaryFolder.newFile("log" + LandmarkLogFormat.FILE_SUFFIX);
+    recordFrames(file, 0, 1);
+    long length = file.length();
+    try {
+      new LandmarkRecorder(file, MAX_HANDS + 1);
+      fail();
+    } catch (IOException expected) {
+    }
+    assertEquals(length, file.length());
+  }
+
+  @Test
+  public void constructorsRejectOtherFiles() throws IOException {
+    File file = temporaryFolder.newFile("log" + LandmarkLogFormat.FILE_SUFFIX);
+    try (FileOutputStream output = new FileOutputStream(file)) {
+      output.write(new byte[100]);
+    }
+    try {
+      new LandmarkRecorder(file, MAX_HANDS);
+      fail();
+    } catch (IOException expected) {
+    }
+    try {
+      new LandmarkLogReader(file);
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void close_accountsForConcurrentFrames() throws Exception {
+    for (int run = 0; run < 100; ++run) {
+      File file = temporaryFolder.newFile("log" + run + LandmarkLogFormat.FILE_SUFFIX);
+      LandmarkRecorder recorder = new LandmarkRecorder(file, MAX_HANDS, /*capacity=*/ 4);
+      AtomicLong attempts = new AtomicLong();
+      AtomicBoolean closing = new AtomicBoolean();
+      Thread producer =
+          new Thread(
+              () -> {
+                MultiHandFrame frame = createFrame(0, 1);
+                // Keep recording until a frame is dropped after close() started.
+                while (true) {
+                  boolean recorded = recorder.record(frame);
+                  attempts.incrementAndGet();
+                  if (!recorded && closing.get()) {
+                    break;
+                  }
+                }
+              });
+      producer.start();
+      while (attempts.get() < 100) {
+        Thread.yield();
+      }
+      closing.set(true);
+      recorder.close();
+      producer.join();
+
+      // Every frame is either written or dropped, and the written ones are in the file.
+      assertEquals(attempts.get(), recorder.getWrittenCount() + recorder.getDroppedCount());
+      assertEquals(recorder.getWrittenCount(), new LandmarkLogReader(file).getFrameCount());
+      assertFalse(recorder.record(frame));
+    }
+  }
+
+  private static void recordFrames(File file, int first, int count) throws IOException {
+    try (LandmarkRecorder recorder = new LandmarkRecorder(file, MAX_HANDS)) {
+      for (int f = first; f < first + count; ++f) {
+        assertTrue(recorder.record(createFrame(f, 1)));
+      }
+    }
+  }
+
+  // Returns frame f with the given number of hands, whose landmarks are derived from f.
+  private static MultiHandFrame createFrame(int f, int handCount) {
+    MultiHandFrame frame = new MultiHandFrame(MAX_HANDS + 1);
+    frame.begin(1000L + 33L * f);
+    for (int h = 0; h < handCount; ++h) {
+      MultiHandFrame.Hand hand = frame.addHand();
+      hand.setHandedness(h == 0 ? HandednessEnum.LEFT : HandednessEnum.RIGHT, 0.5f + h * 0.25f);
+      float[] landmarks = hand.getLandmarks();
+      for (int i = 0; i < landmarks.length; ++i) {
+        landmarks[i] = f + h * 0.5f + i * 0.001f;
+      }
+    }
+    return frame;
+  }
+
+  private static void assertFrame(int f, int handCount, MultiHandFrame frame) {
+    MultiHandFrame expected = createFrame(f, Math.min(handCount, MAX_HANDS));
+    assertEquals(expected.getTimestampMs(), frame.getTimestampMs());
+    assertEquals(expected.getHandCount(), frame.getHandCount());
+    for (int h = 0; h < expected.getHandCount(); ++h) {
+      MultiHandFrame.Hand expectedHand = expected.getHand(h);
+      MultiHandFrame.Hand hand = frame.getHand(h);
+      assertEquals(expectedHand.getHandedness(), hand.getHandedness());
+      assertEquals(expectedHand.getHandednessScore(), hand.getHandednessScore(), 0f);
+      float[] landmarks = hand.getLandmarks();
+      for (int i = 0; i < landmarks.length; ++i) {
+        assertEquals(expectedHand.getLandmarks()[i], landmarks[i], 0f);
+      }
+    }
+  }
+}
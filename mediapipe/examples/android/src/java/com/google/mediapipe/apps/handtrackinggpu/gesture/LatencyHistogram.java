@@ -0,0 +1,131 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket histogram of latencies, with microsecond resolution.
+ *
+ * <p>Latencies below 16 us get a bucket each; above that, every power of two is split into 8
+ * buckets, so a percentile is never off by more than 12.5%. Latencies above about 71 minutes go to
+ * the last bucket. The buckets are allocated up front and {@link #record} does not allocate, so it
+ * can be called on every frame. All methods are thread-safe; percentiles read while latencies are
+ * being recorded may be off by the samples recorded meanwhile.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Latencies below this get one bucket each.
+  private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+  private static final int MAX_EXPONENT = 31;
+  // Package-private for tests, like the bucket arithmetic below.
+  static final int NUM_BUCKETS =
+      LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sumMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  /** Adds a latency, in nanoseconds. Negative latencies count as 0. */
+  public void record(long nanos) {
+    long micros = Math.max(nanos / 1000, 0);
+    counts.incrementAndGet(bucketOf(micros));
+    count.incrementAndGet();
+    sumMicros.addAndGet(micros);
+    long max = maxMicros.get();
+    while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+      max = maxMicros.get();
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /** Returns the mean latency in microseconds, or 0 if nothing was recorded. */
+  public long getMeanMicros() {
+    long n = count.get();
+    return n == 0 ? 0 : sumMicros.get() / n;
+  }
+
+  public long getMaxMicros() {
+    return maxMicros.get();
+  }
+
+  /**
+   * Returns the latency, in microseconds, below which the fraction {@code quantile} of the
+   * recorded latencies fall, rounded up to the end of its bucket, or 0 if nothing was recorded.
+   *
+   * @param quantile between 0 and 1, e.g. 0.95 for the 95th percentile.
+   */
+  public long getPercentileMicros(double quantile) {
+    if (!(quantile >= 0 && quantile <= 1)) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+    }
+    long total = 0;
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      total += counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max((long) Math.ceil(quantile * total), 1);
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        // The end of the bucket may be past the largest latency actually recorded.
+        return Math.min(bucketEndMicros(i), maxMicros.get());
+      }
+    }
+    return maxMicros.get();
+  }
+
+  /** Clears all recorded latencies. */
+  public void reset() {
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    sumMicros.set(0);
+    maxMicros.set(0);
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < LINEAR_LIMIT) {
+      return (int) micros;
+    }
+    int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+    if (micros >= 1L << (MAX_EXPONENT + 1)) {
+      return NUM_BUCKETS - 1;
+    }
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  // Largest latency that goes to the bucket.
+  static long bucketEndMicros(int bucket) {
+    if (bucket < LINEAR_LIMIT) {
+      return bucket;
+    }
+    int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+    int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+}
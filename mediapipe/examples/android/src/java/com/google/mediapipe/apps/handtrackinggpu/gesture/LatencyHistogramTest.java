@@ -0,0 +1,107 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LatencyHistogram}. */
+@RunWith(JUnit4.class)
+public final class LatencyHistogramTest {
+  @Test
+  public void bucketOf_linearBelow16Micros() {
+    for (int micros = 0; micros < 16; ++micros) {
+      assertEquals(micros, LatencyHistogram.bucketOf(micros));
+      assertEquals(micros, LatencyHistogram.bucketEndMicros(micros));
+    }
+  }
+
+  @Test
+  public void bucketOf_splitsPowersOfTwoInEight() {
+    // 16 and 17 share the first bucket of [16, 32), whose buckets are 2 us wide.
+    assertEquals(16, LatencyHistogram.bucketOf(16));
+    assertEquals(16, LatencyHistogram.bucketOf(17));
+    assertEquals(17, LatencyHistogram.bucketEndMicros(16));
+    // 31 ends [16, 32) and 32 starts [32, 64), whose buckets are 4 us wide.
+    assertEquals(23, LatencyHistogram.bucketOf(31));
+    assertEquals(31, LatencyHistogram.bucketEndMicros(23));
+    assertEquals(24, LatencyHistogram.bucketOf(32));
+    assertEquals(35, LatencyHistogram.bucketEndMicros(24));
+  }
+
+  @Test
+  public void bucketOf_clampsAbove2To32Micros() {
+    int last = LatencyHistogram.NUM_BUCKETS - 1;
+    assertEquals(last, LatencyHistogram.bucketOf((1L << 32) - 1));
+    assertEquals(last, LatencyHistogram.bucketOf(1L << 32));
+    assertEquals(last, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    assertEquals((1L << 32) - 1, LatencyHistogram.bucketEndMicros(last));
+  }
+
+  @Test
+  public void bucketEndMicros_isLastValueOfBucket() {
+    for (int bucket = 0; bucket < LatencyHistogram.NUM_BUCKETS - 1; ++bucket) {
+      long end = LatencyHistogram.bucketEndMicros(bucket);
+      assertEquals(bucket, LatencyHistogram.bucketOf(end));
+      assertEquals(bucket + 1, LatencyHistogram.bucketOf(end + 1));
+    }
+  }
+
+  @Test
+  public void getPercentileMicros_within12Point5PercentOfExact() {
+    Random random = new Random(42);
+    LatencyHistogram histogram = new LatencyHistogram();
+    long[] micros = new long[10000];
+    for (int i = 0; i < micros.length; ++i) {
+      // Log-uniform between 1 us and about 22 minutes, below the last bucket.
+      micros[i] = (long) Math.exp(random.nextDouble() * 21);
+      histogram.record(micros[i] * 1000);
+    }
+    Arrays.sort(micros);
+    for (double quantile : new double[] {0.01, 0.25, 0.5, 0.9, 0.95, 0.99, 0.999, 1}) {
+      long exact = micros[Math.max((int) Math.ceil(quantile * micros.length), 1) - 1];
+      long estimate = histogram.getPercentileMicros(quantile);
+      assertTrue(quantile + ": " + estimate + " < " + exact, estimate >= exact);
+      assertTrue(quantile + ": " + estimate + " vs " + exact, estimate <= exact * 1.125);
+    }
+    assertEquals(micros[micros.length - 1], histogram.getMaxMicros());
+    assertEquals(micros.length, histogram.getCount());
+  }
+
+  @Test
+  public void record_negativeLatencyCountsAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5000);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getPercentileMicros(1));
+  }
+
+  @Test
+  public void reset_clearsEverything() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(123456);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMaxMicros());
+    assertEquals(0, histogram.getMeanMicros());
+    assertEquals(0, histogram.getPercentileMicros(0.5));
+  }
+}
@@ -0,0 +1,67 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Classifies hands with a trained {@link HandPoseModel}, as an alternative to the rule-based {@link
+ * HandPoseClassifier}.
+ *
+ * <p>The confidence of a pose is its softmax probability. The activations are preallocated, so
+ * {@link #classify} does not allocate; in exchange an instance must not be used by several threads
+ * at once. {@link MultiHandClassifier} creates one instance per hand slot.
+ */
+public final class LearnedHandPoseClassifier implements HandClassifier {
+  /** Default probability below which a hand is reported as {@link HandPoseEnum#UNKNOWN}. */
+  public static final float DEFAULT_MIN_CONFIDENCE = 0.6f;
+
+  private final HandPoseModel model;
+  private final float minConfidence;
+  private final float[] hidden;
+  private final float[] probabilities;
+
+  public LearnedHandPoseClassifier(HandPoseModel model) {
+    this(model, DEFAULT_MIN_CONFIDENCE);
+  }
+
+  /**
+   * @param model the trained model; its input size must be {@link HandLandmarks#SIZE}.
+   * @param minConfidence probability below which a hand is reported as {@link
+   *     HandPoseEnum#UNKNOWN}.
+   */
+  public LearnedHandPoseClassifier(HandPoseModel model, float minConfidence) {
+    if (model.getInputSize() != HandLandmarks.SIZE) {
+      throw new IllegalArgumentException(
+          "Model input size " + model.getInputSize() + " does not match " + HandLandmarks.SIZE);
+    }
+    if (minConfidence < 0 || minConfidence > 1) {
+      throw new IllegalArgumentException("minConfidence must be between 0 and 1.");
+    }
+    this.model = model;
+    this.minConfidence = minConfidence;
+    hidden = new float[model.getHiddenSize()];
+    probabilities = new float[model.getOutputSize()];
+  }
+
+  @Override
+  public void classify(float[] landmarks, int offset, PoseEstimate result) {
+    if (landmarks.length < offset + HandLandmarks.SIZE) {
+      throw new IllegalArgumentException("landmarks must hold " + HandLandmarks.SIZE + " floats.");
+    }
+    int best = model.evaluate(landmarks, offset, hidden, probabilities);
+    float confidence = probabilities[best];
+    result.set(
+        confidence >= minConfidence ? model.getLabel(best) : HandPoseEnum.UNKNOWN, confidence);
+  }
+}
@@ -0,0 +1,15 @@
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+public enum MotionGestureEnum {
+
+    NONE,
+    SWIPE_LEFT,
+    SWIPE_RIGHT,
+    SWIPE_UP,
+    SWIPE_DOWN,
+    CIRCLE_CLOCKWISE,
+    CIRCLE_COUNTERCLOCKWISE,
+    PUSH,
+    PULL,
+
+}
@@ -0,0 +1,285 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Recognizes dynamic hand gestures (swipes, circles, push/pull) from a stream of hand landmarks.
+ *
+ * <p>Swipes and push/pull are detected on the wrist trajectory, using the palm size (wrist to
+ * middle MCP) as a proxy for the distance to the camera. Circles are detected on the index tip
+ * trajectory. Each trajectory is kept in a fixed-size ring buffer covering the last {@code
+ * windowMs}, and its path length and accumulated turning angle are updated incrementally as samples
+ * enter and leave the window, so every {@link #update} runs in constant time and does not allocate.
+ *
+ * <p>Directions are in image coordinates, i.e. x grows to the right and y grows downwards.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class MotionGestureRecognizer {
+  public static final int DEFAULT_CAPACITY = 64;
+  public static final long DEFAULT_WINDOW_MS = 1000;
+  public static final long DEFAULT_COOLDOWN_MS = 500;
+
+  // Minimum net wrist displacement, in normalized image coordinates, for a swipe.
+  private static final float MIN_SWIPE_DISTANCE = 0.25f;
+  // Minimum average wrist speed, in normalized image coordinates per second, for a swipe.
+  private static final float MIN_SWIPE_SPEED = 0.6f;
+  // Minimum ratio of net displacement to path length for a swipe.
+  private static final float MIN_SWIPE_STRAIGHTNESS = 0.8f;
+  // Minimum accumulated turning angle of the index tip for a circle.
+  private static final float MIN_CIRCLE_TURNING = (float) (2 * Math.PI * 0.85);
+  // Minimum index tip path length for a circle.
+  private static final float MIN_CIRCLE_PATH_LENGTH = 0.2f;
+  // Maximum ratio of net displacement to path length for a circle, i.e. how closed it must be.
+  private static final float MAX_CIRCLE_OPENING = 0.35f;
+  // Minimum relative palm size change for a push or pull.
+  private static final float MIN_PUSH_RATIO = 1.35f;
+
+  private final long windowMs;
+  private final long cooldownMs;
+  private final Trajectory wrist;
+  private final Trajectory indexTip;
+  private long cooldownUntilMs;
+  private boolean coolingDown = false;
+
+  public MotionGestureRecognizer() {
+    this(DEFAULT_CAPACITY, DEFAULT_WINDOW_MS, DEFAULT_COOLDOWN_MS);
+  }
+
+  /**
+   * @param capacity maximum number of samples kept per trajectory.
+   * @param windowMs samples older than this, relative to the newest sample, are discarded.
+   * @param cooldownMs time after a recognized gesture during which no new gesture is reported.
+   */
+  public MotionGestureRecognizer(int capacity, long windowMs, long cooldownMs) {
+    if (capacity < 3) {
+      throw new IllegalArgumentException("capacity must be at least 3.");
+    }
+    if (windowMs <= 0 || cooldownMs < 0) {
+      throw new IllegalArgumentException("windowMs must be positive and cooldownMs non-negative.");
+    }
+    this.windowMs = windowMs;
+    this.cooldownMs = cooldownMs;
+    this.wrist = new Trajectory(capacity);
+    this.indexTip = new Trajectory(capacity);
+  }
+
+  /**
+   * Adds the hand stored at {@code offset} in {@code landmarks}.
+   *
+   * @param landmarks flat landmark array laid out as described in {@link HandLandmarks}.
+   * @param offset index of the wrist x coordinate in {@code landmarks}.
+   * @param timestampMs frame timestamp; must not decrease between calls.
+   * @return the gesture completed by this frame, or {@link MotionGestureEnum#NONE}.
+   */
+  public MotionGestureEnum update(float[] landmarks, int offset, long timestampMs) {
+    if (coolingDown) {
+      if (timestampMs < cooldownUntilMs) {
+        return MotionGestureEnum.NONE;
+      }
+      coolingDown = false;
+    }
+    float palmSize =
+        (float)
+            Math.sqrt(
+                HandLandmarks.squaredDistance2d(
+                    landmarks, offset, HandLandmarks.WRIST, HandLandmarks.MIDDLE_MCP));
+    wrist.add(
+        timestampMs,
+        HandLandmarks.x(landmarks, offset, HandLandmarks.WRIST),
+        HandLandmarks.y(landmarks, offset, HandLandmarks.WRIST),
+        palmSize,
+        windowMs);
+    indexTip.add(
+        timestampMs,
+        HandLandmarks.x(landmarks, offset, HandLandmarks.INDEX_TIP),
+        HandLandmarks.y(landmarks, offset, HandLandmarks.INDEX_TIP),
+        palmSize,
+        windowMs);
+
+    MotionGestureEnum gesture = detect();
+    if (gesture != MotionGestureEnum.NONE) {
+      reset();
+      cooldownUntilMs = timestampMs + cooldownMs;
+      coolingDown = true;
+    }
+    return gesture;
+  }
+
+  /** Forgets the tracked trajectories, e.g. when the hand leaves the scene. */
+  public void reset() {
+    wrist.clear();
+    indexTip.clear();
+  }
+
+  private MotionGestureEnum detect() {
+    if (indexTip.size >= 3
+        && Math.abs(indexTip.turning) >= MIN_CIRCLE_TURNING
+        && indexTip.pathLength >= MIN_CIRCLE_PATH_LENGTH
+        && indexTip.netDistance() <= MAX_CIRCLE_OPENING * indexTip.pathLength) {
+      // With y pointing down, a positive turning angle is clockwise on screen.
+      return indexTip.turning > 0
+          ? MotionGestureEnum.CIRCLE_CLOCKWISE
+          : MotionGestureEnum.CIRCLE_COUNTERCLOCKWISE;
+    }
+    if (wrist.size < 2) {
+      return MotionGestureEnum.NONE;
+    }
+    float net = wrist.netDistance();
+    long durationMs = wrist.durationMs();
+    if (net >= MIN_SWIPE_DISTANCE
+        && durationMs > 0
+        && net * 1000f / durationMs >= MIN_SWIPE_SPEED
+        && net >= MIN_SWIPE_STRAIGHTNESS * wrist.pathLength) {
+      float dx = wrist.netDx();
+      float dy = wrist.netDy();
+      if (Math.abs(dx) >= Math.abs(dy)) {
+        return dx > 0 ? MotionGestureEnum.SWIPE_RIGHT : MotionGestureEnum.SWIPE_LEFT;
+      }
+      return dy > 0 ? MotionGestureEnum.SWIPE_DOWN : MotionGestureEnum.SWIPE_UP;
+    }
+    float oldestDepth = wrist.depth[wrist.oldest()];
+    float newestDepth = wrist.depth[wrist.newest()];
+    if (oldestDepth > 0 && newestDepth > 0) {
+      if (newestDepth >= MIN_PUSH_RATIO * oldestDepth) {
+        // The palm grows as the hand moves towards the camera.
+        return MotionGestureEnum.PUSH;
+      }
+      if (oldestDepth >= MIN_PUSH_RATIO * newestDepth) {
+        return MotionGestureEnum.PULL;
+      }
+    }
+    return MotionGestureEnum.NONE;
+  }
+
+  /**
+   * Ring buffer of timestamped positions with a running path length and turning angle.
+   *
+   * <p>{@code segment[i]} holds the length of the segment ending at sample {@code i} and {@code
+   * turn[i]} the signed angle between the two segments ending at sample {@code i}. Both are zeroed
+   * once the samples they depend on leave the window, so the running sums always cover exactly the
+   * samples in the buffer.
+   */
+  private static final class Trajectory {
+    final long[] timestampMs;
+    final float[] x;
+    final float[] y;
+    final float[] depth;
+    final float[] segment;
+    final float[] turn;
+    int head = 0;
+    int size = 0;
+    double pathLength = 0;
+    double turning = 0;
+
+    Trajectory(int capacity) {
+      timestampMs = new long[capacity];
+      x = new float[capacity];
+      y = new float[capacity];
+      depth = new float[capacity];
+      segment = new float[capacity];
+      turn = new float[capacity];
+    }
+
+    void add(long ts, float px, float py, float pd, long windowMs) {
+      while (size > 0 && ts - timestampMs[head] > windowMs) {
+        evictOldest();
+      }
+      if (size == x.length) {
+        evictOldest();
+      }
+      int index = wrap(head + size);
+      float segmentLength = 0;
+      float turnAngle = 0;
+      if (size >= 1) {
+        int previous = newest();
+        float dx = px - x[previous];
+        float dy = py - y[previous];
+        segmentLength = (float) Math.sqrt(dx * dx + dy * dy);
+        if (size >= 2 && segmentLength > 0 && segment[previous] > 0) {
+          int beforePrevious = wrap(previous - 1 + x.length);
+          float pdx = x[previous] - x[beforePrevious];
+          float pdy = y[previous] - y[beforePrevious];
+          turnAngle = (float) Math.atan2(pdx * dy - pdy * dx, pdx * dx + pdy * dy);
+        }
+      }
+      timestampMs[index] = ts;
+      x[index] = px;
+      y[index] = py;
+      depth[index] = pd;
+      segment[index] = segmentLength;
+      turn[index] = turnAngle;
+      pathLength += segmentLength;
+      turning += turnAngle;
+      ++size;
+    }
+
+    void clear() {
+      head = 0;
+      size = 0;
+      pathLength = 0;
+      turning = 0;
+    }
+
+    int oldest() {
+      return head;
+    }
+
+    int newest() {
+      return wrap(head + size - 1);
+    }
+
+    long durationMs() {
+      return timestampMs[newest()] - timestampMs[head];
+    }
+
+    float netDx() {
+      return x[newest()] - x[head];
+    }
+
+    float netDy() {
+      return y[newest()] - y[head];
+    }
+
+    float netDistance() {
+      float dx = netDx();
+      float dy = netDy();
+      return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private void evictOldest() {
+      head = wrap(head + 1);
+      --size;
+      if (size == 0) {
+        clear();
+        return;
+      }
+      // The new oldest sample loses the segment (and turn) that connected it to the evicted one.
+      pathLength -= segment[head];
+      turning -= turn[head];
+      segment[head] = 0;
+      turn[head] = 0;
+      if (size >= 2) {
+        int second = wrap(head + 1);
+        turning -= turn[second];
+        turn[second] = 0;
+      }
+    }
+
+    private int wrap(int index) {
+      return index >= x.length ? index - x.length : index;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Classifies every hand of a {@link MultiHandFrame}.
+ *
+ * <p>Each hand slot gets its own {@link HandClassifier} instance from the supplied factory, so
+ * classifiers with internal scratch buffers need not be thread-safe. When an {@link Executor} is
+ * given and the frame holds more than one hand, the hands after the first are classified on the
+ * executor while the calling thread classifies the first one. This pays off for the heavier
+ * classifiers; for the rule-based {@link HandPoseClassifier} the hand-off usually costs more than
+ * it saves, so pass a {@code null} executor to classify sequentially.
+ *
+ * <p>Every hand is normalized once with {@link HandLandmarkNormalizer} into {@link
+ * MultiHandFrame.Hand#getNormalizedLandmarks}, and the classifier is run on the normalized
+ * landmarks.
+ *
+ * <p>When a {@link LandmarkChangeGate} factory is given, each hand slot gets a gate. A hand that
+ * barely moved since it was last classified keeps the pose, confidence and normalized landmarks
+ * of that classification instead of being normalized and classified again. Slots left empty by a
+ * frame have their gate reset, so a hand entering the scene is always classified.
+ *
+ * <p>The per-hand tasks and results are allocated once, so steady-state classification does not
+ * allocate beyond what the executor itself does.
+ *
+ * <p>{@link #classify} must not be called concurrently.
+ */
+public final class MultiHandClassifier {
+  private final HandClassifier[] classifiers;
+  private final Executor executor;
+  private final LandmarkChangeGate[] gates;
+  private final PoseEstimate[] results;
+  // Indices of the hands classified in the current frame.
+  private final int[] evaluatedHands;
+  private final Runnable[] tasks;
+  private final Semaphore finishedTasks = new Semaphore(0);
+  private MultiHandFrame frame;
+  private volatile RuntimeException taskFailure;
+  // Read from other threads for logging only.
+  private volatile long evaluatedCount = 0;
+  private volatile long skippedCount = 0;
+
+  /**
+   * @param classifierFactory creates the classifier used for one hand slot.
+   * @param maxHands maximum number of hands per frame.
+   * @param executor runs the classification of additional hands, or {@code null} to classify all
+   *     hands on the calling thread.
+   */
+  public MultiHandClassifier(
+      Supplier<? extends HandClassifier> classifierFactory, int maxHands, Executor executor) {
+    this(classifierFactory, maxHands, executor, /*gateFactory=*/ null);
+  }
+
+  /**
+   * @param classifierFactory creates the classifier used for one hand slot.
+   * @param maxHands maximum number of hands per frame.
+   * @param executor runs the classification of additional hands, or {@code null} to classify all
+   *     hands on the calling thread.
+   * @param gateFactory creates the change gate of one hand slot, or {@code null} to classify every
+   *     hand on every frame.
+   */
+  public MultiHandClassifier(
+      Supplier<? extends HandClassifier> classifierFactory,
+      int maxHands,
+      Executor executor,
+      Supplier<LandmarkChangeGate> gateFactory) {
+    if (maxHands <= 0) {
+      throw new IllegalArgumentException("maxHands must be positive.");
+    }
+    this.executor = executor;
+    classifiers = new HandClassifier[maxHands];
+    gates = gateFactory != null ? new LandmarkChangeGate[maxHands] : null;
+    results = new PoseEstimate[maxHands];
+    evaluatedHands = new int[maxHands];
+    tasks = new Runnable[maxHands];
+    for (int i = 0; i < maxHands; ++i) {
+      classifiers[i] = classifierFactory.get();
+      if (gates != null) {
+        gates[i] = gateFactory.get();
+      }
+      results[i] = new PoseEstimate();
+      final int hand = i;
+      tasks[i] =
+          () -> {
+            try {
+              classifyHand(hand);
+            } catch (RuntimeException e) {
+              taskFailure = e;
+            } finally {
+              finishedTasks.release();
+            }
+          };
+    }
+  }
+
+  /**
+   * Normalizes and assigns a pose to every hand in {@code frame}.
+   *
+   * @return the number of hands actually classified, as opposed to reusing the result of an
+   *     earlier frame.
+   */
+  public int classify(MultiHandFrame frame) {
+    int handCount = frame.getHandCount();
+    if (handCount > classifiers.length) {
+      throw new IllegalArgumentException(
+          "Frame holds " + handCount + " hands, at most " + classifiers.length + " supported.");
+    }
+
+    int evaluated = 0;
+    for (int i = 0; i < handCount; ++i) {
+      MultiHandFrame.Hand hand = frame.getHand(i);
+      if (gates == null || gates[i].hasChanged(hand.getLandmarks(), 0, frame.getTimestampMs())) {
+        evaluatedHands[evaluated++] = i;
+      } else {
+        hand.setPose(results[i].getPose(), results[i].getConfidence());
+      }
+    }
+    if (gates != null) {
+      for (int i = handCount; i < gates.length; ++i) {
+        gates[i].reset();
+      }
+    }
+    evaluatedCount += evaluated;
+    skippedCount += handCount - evaluated;
+
+    this.frame = frame;
+    try {
+      if (executor == null || evaluated < 2) {
+        for (int i = 0; i < evaluated; ++i) {
+          classifyHand(evaluatedHands[i]);
+        }
+      } else {
+        int submitted = 0;
+        try {
+          for (int i = 1; i < evaluated; ++i) {
+            executor.execute(tasks[evaluatedHands[i]]);
+            ++submitted;
+          }
+          classifyHand(evaluatedHands[0]);
+        } finally {
+          // Never leave a task running against the frame after returning.
+          finishedTasks.acquireUninterruptibly(submitted);
+        }
+        RuntimeException failure = taskFailure;
+        if (failure != null) {
+          taskFailure = null;
+          throw failure;
+        }
+      }
+    } finally {
+      this.frame = null;
+    }
+    return evaluated;
+  }
+
+  /** Resets the change gates of all hand slots, so the next frame is classified in full. */
+  public void reset() {
+    if (gates != null) {
+      for (LandmarkChangeGate gate : gates) {
+        gate.reset();
+      }
+    }
+  }
+
+  /** Returns the number of hands classified so far. */
+  public long getEvaluatedCount() {
+    return evaluatedCount;
+  }
+
+  /** Returns the number of hands that reused an earlier result because they barely moved. */
+  public long getSkippedCount() {
+    return skippedCount;
+  }
+
+  private void classifyHand(int index) {
+    MultiHandFrame.Hand hand = frame.getHand(index);
+    float[] normalized = hand.getNormalizedLandmarks();
+    HandLandmarkNormalizer.normalize(hand.getLandmarks(), 0, normalized, 0);
+    PoseEstimate result = results[index];
+    classifiers[index].classify(normalized, 0, result);
+    hand.setPose(result.getPose(), result.getConfidence());
+  }
+}
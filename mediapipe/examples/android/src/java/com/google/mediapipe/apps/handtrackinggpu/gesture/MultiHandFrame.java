@@ -0,0 +1,130 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * All hands detected in one camera frame, with their landmarks, handedness and pose.
+ *
+ * <p>The per-hand slots are allocated once, up to the maximum number of hands, and reused for every
+ * frame: {@link #begin} drops the hands of the previous frame and {@link #addHand} hands out the
+ * next free slot. Memory therefore stays flat as hands enter and leave the scene.
+ */
+public final class MultiHandFrame {
+  /** Per-hand slot of a {@link MultiHandFrame}. */
+  public static final class Hand {
+    private final float[] landmarks = new float[HandLandmarks.SIZE];
+    private final float[] normalizedLandmarks = new float[HandLandmarks.SIZE];
+    private HandednessEnum handedness = HandednessEnum.UNKNOWN;
+    private float handednessScore = 0;
+    private HandPoseEnum pose = HandPoseEnum.UNKNOWN;
+    private float poseConfidence = 0;
+
+    private Hand() {}
+
+    /** Returns the landmark array of this hand, laid out as described in {@link HandLandmarks}. */
+    public float[] getLandmarks() {
+      return landmarks;
+    }
+
+    /**
+     * Returns the landmarks of this hand normalized by {@link HandLandmarkNormalizer}, as filled in
+     * by {@link MultiHandClassifier}.
+     */
+    public float[] getNormalizedLandmarks() {
+      return normalizedLandmarks;
+    }
+
+    public HandednessEnum getHandedness() {
+      return handedness;
+    }
+
+    public float getHandednessScore() {
+      return handednessScore;
+    }
+
+    public void setHandedness(HandednessEnum handedness, float score) {
+      this.handedness = handedness;
+      this.handednessScore = score;
+    }
+
+    /** Returns the pose assigned by {@link MultiHandClassifier}. */
+    public HandPoseEnum getPose() {
+      return pose;
+    }
+
+    /** Returns the confidence of {@link #getPose}, between 0 and 1. */
+    public float getPoseConfidence() {
+      return poseConfidence;
+    }
+
+    void setPose(HandPoseEnum pose, float confidence) {
+      this.pose = pose;
+      this.poseConfidence = confidence;
+    }
+  }
+
+  private final Hand[] hands;
+  private int handCount = 0;
+  private long timestampMs = 0;
+
+  public MultiHandFrame(int maxHands) {
+    if (maxHands <= 0) {
+      throw new IllegalArgumentException("maxHands must be positive.");
+    }
+    hands = new Hand[maxHands];
+    for (int i = 0; i < maxHands; ++i) {
+      hands[i] = new Hand();
+    }
+  }
+
+  /** Starts a new frame without any hands. */
+  public void begin(long timestampMs) {
+    this.timestampMs = timestampMs;
+    handCount = 0;
+  }
+
+  /**
+   * Returns the next free hand slot, with its handedness and pose reset, or {@code null} if the
+   * frame already holds {@link #getMaxHands} hands.
+   */
+  public Hand addHand() {
+    if (handCount == hands.length) {
+      return null;
+    }
+    Hand hand = hands[handCount++];
+    hand.setHandedness(HandednessEnum.UNKNOWN, 0);
+    hand.setPose(HandPoseEnum.UNKNOWN, 0);
+    return hand;
+  }
+
+  public long getTimestampMs() {
+    return timestampMs;
+  }
+
+  public int getHandCount() {
+    return handCount;
+  }
+
+  public int getMaxHands() {
+    return hands.length;
+  }
+
+  public Hand getHand(int index) {
+    if (index < 0 || index >= handCount) {
+      throw new IndexOutOfBoundsException("Hand " + index + " of " + handCount);
+    }
+    return hands[index];
+  }
+}
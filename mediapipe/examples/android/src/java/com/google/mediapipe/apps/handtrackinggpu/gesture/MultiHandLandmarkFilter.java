@@ -0,0 +1,72 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.util.function.Supplier;
+
+/**
+ * Filters every hand of a {@link MultiHandFrame}.
+ *
+ * <p>Each hand slot gets its own {@link LandmarkFilter} from the supplied factory, so the state of
+ * one hand never leaks into another. Slots left empty by a frame are reset, so a hand entering the
+ * scene does not start from where the previous hand in that slot left.
+ *
+ * <p>{@link #filter} does not allocate. This class is not thread-safe.
+ */
+public final class MultiHandLandmarkFilter {
+  private final LandmarkFilter[] filters;
+
+  /**
+   * @param filterFactory creates the filter used for one hand slot.
+   * @param maxHands maximum number of hands per frame.
+   */
+  public MultiHandLandmarkFilter(Supplier<? extends LandmarkFilter> filterFactory, int maxHands) {
+    if (maxHands <= 0) {
+      throw new IllegalArgumentException("maxHands must be positive.");
+    }
+    filters = new LandmarkFilter[maxHands];
+    for (int i = 0; i < maxHands; ++i) {
+      filters[i] = filterFactory.get();
+    }
+  }
+
+  /**
+   * Filters every hand in {@code frame} into {@code dst}, hand {@code i} at {@code i *
+   * HandLandmarks.SIZE}.
+   *
+   * @param dst receives the filtered hands; must hold {@code frame.getHandCount()} hands.
+   */
+  public void filter(MultiHandFrame frame, float[] dst) {
+    int handCount = frame.getHandCount();
+    if (handCount > filters.length) {
+      throw new IllegalArgumentException(
+          "Frame holds " + handCount + " hands, at most " + filters.length + " supported.");
+    }
+    for (int i = 0; i < handCount; ++i) {
+      filters[i].filter(
+          frame.getHand(i).getLandmarks(), 0, dst, i * HandLandmarks.SIZE, frame.getTimestampMs());
+    }
+    for (int i = handCount; i < filters.length; ++i) {
+      filters[i].reset();
+    }
+  }
+
+  /** Resets the filters of all hand slots. */
+  public void reset() {
+    for (LandmarkFilter filter : filters) {
+      filter.reset();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link MultiHandLandmarkFilter}. */
+@RunWith(JUnit4.class)
+public final class MultiHandLandmarkFilterTest {
+  private static final int MAX_HANDS = 2;
+  private static final long FRAME_MS = 100;
+  // One time constant per frame, so a step is followed to 1 - 1/e.
+  private static final float STEP_RESPONSE = (float) -Math.expm1(-1);
+
+  private final MultiHandFrame frame = new MultiHandFrame(MAX_HANDS);
+  private final float[] filtered = new float[MAX_HANDS * HandLandmarks.SIZE];
+  private final MultiHandLandmarkFilter filter =
+      new MultiHandLandmarkFilter(() -> new EmaLandmarkFilter(FRAME_MS), MAX_HANDS);
+
+  @Test
+  public void filter_keepsOneStatePerHand() {
+    setFrame(0, 0f, 1f);
+    filter.filter(frame, filtered);
+    setFrame(FRAME_MS, 1f, 1f);
+    filter.filter(frame, filtered);
+    assertEquals(STEP_RESPONSE, filtered[0], 1e-5f);
+    assertEquals(1f, filtered[HandLandmarks.SIZE], 1e-5f);
+  }
+
+  @Test
+  public void filter_resetsEmptySlots() {
+    setFrame(0, 0f, 0f);
+    filter.filter(frame, filtered);
+    setFrame(FRAME_MS, 1f);
+    filter.filter(frame, filtered);
+    // The second hand comes back far away and starts from there instead of gliding.
+    setFrame(2 * FRAME_MS, 1f, 1f);
+    filter.filter(frame, filtered);
+    assertEquals(1f, filtered[HandLandmarks.SIZE], 1e-5f);
+  }
+
+  @Test
+  public void reset_resetsAllSlots() {
+    setFrame(0, 0f, 0f);
+    filter.filter(frame, filtered);
+    filter.reset();
+    setFrame(FRAME_MS, 1f, 1f);
+    filter.filter(frame, filtered);
+    assertEquals(1f, filtered[0], 1e-5f);
+    assertEquals(1f, filtered[HandLandmarks.SIZE], 1e-5f);
+  }
+
+  @Test
+  public void filter_rejectsTooManyHands() {
+    MultiHandFrame bigFrame = new MultiHandFrame(MAX_HANDS + 1);
+    bigFrame.begin(0);
+    for (int i = 0; i <= MAX_HANDS; ++i) {
+      bigFrame.addHand();
+    }
+    try {
+      filter.filter(bigFrame, new float[(MAX_HANDS + 1) * HandLandmarks.SIZE]);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  // Fills the frame with one hand per value, all of whose coordinates are that value.
+  private void setFrame(long timestampMs, float... values) {
+    frame.begin(timestampMs);
+    for (float value : values) {
+      Arrays.fill(frame.addHand().getLandmarks(), value);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * One Euro filter (Casiez et al., CHI 2012) over the landmarks of one hand.
+ *
+ * <p>Each coordinate is low-pass filtered with a cutoff frequency that grows with its speed: a
+ * slow or still hand is smoothed heavily to remove jitter, while a fast hand is followed with
+ * little lag. The speed itself is low-pass filtered with a fixed cutoff. Coordinates are assumed to
+ * be normalized image coordinates, so speeds are in image sizes per second.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class OneEuroLandmarkFilter implements LandmarkFilter {
+  public static final float DEFAULT_MIN_CUTOFF_HZ = 1.0f;
+  public static final float DEFAULT_BETA = 10.0f;
+  public static final float DEFAULT_DERIVATIVE_CUTOFF_HZ = 1.0f;
+
+  private static final float TWO_PI = (float) (2 * Math.PI);
+
+  private final float minCutoffHz;
+  private final float beta;
+  private final float derivativeCutoffHz;
+  private final float[] value = new float[HandLandmarks.SIZE];
+  private final float[] derivative = new float[HandLandmarks.SIZE];
+  private long lastTimestampMs;
+  private boolean initialized = false;
+
+  public OneEuroLandmarkFilter() {
+    this(DEFAULT_MIN_CUTOFF_HZ, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF_HZ);
+  }
+
+  /**
+   * @param minCutoffHz cutoff frequency for a still hand; lower values remove more jitter.
+   * @param beta how fast the cutoff frequency grows with speed; higher values reduce lag.
+   * @param derivativeCutoffHz cutoff frequency used to smooth the speed.
+   */
+  public OneEuroLandmarkFilter(float minCutoffHz, float beta, float derivativeCutoffHz) {
+    if (!(minCutoffHz > 0) || !(derivativeCutoffHz > 0) || !(beta >= 0)) {
+      throw new IllegalArgumentException(
+          "Cutoff frequencies must be positive and beta non-negative.");
+    }
+    this.minCutoffHz = minCutoffHz;
+    this.beta = beta;
+    this.derivativeCutoffHz = derivativeCutoffHz;
+  }
+
+  @Override
+  public void filter(float[] src, int srcOffset, float[] dst, int dstOffset, long timestampMs) {
+    if (src.length < srcOffset + HandLandmarks.SIZE
+        || dst.length < dstOffset + HandLandmarks.SIZE) {
+      throw new IllegalArgumentException("Arrays must hold " + HandLandmarks.SIZE + " floats.");
+    }
+    if (!initialized) {
+      System.arraycopy(src, srcOffset, value, 0, HandLandmarks.SIZE);
+      for (int i = 0; i < HandLandmarks.SIZE; ++i) {
+        derivative[i] = 0;
+      }
+      initialized = true;
+      lastTimestampMs = timestampMs;
+    } else if (timestampMs > lastTimestampMs) {
+      float dt = (timestampMs - lastTimestampMs) / 1000f;
+      float rate = 1 / dt;
+      float derivativeAlpha = alpha(derivativeCutoffHz, dt);
+      for (int i = 0; i < HandLandmarks.SIZE; ++i) {
+        float x = src[srcOffset + i];
+        float dx = derivative[i] + derivativeAlpha * ((x - value[i]) * rate - derivative[i]);
+        derivative[i] = dx;
+        float cutoff = minCutoffHz + beta * Math.abs(dx);
+        value[i] += alpha(cutoff, dt) * (x - value[i]);
+      }
+      lastTimestampMs = timestampMs;
+    }
+    System.arraycopy(value, 0, dst, dstOffset, HandLandmarks.SIZE);
+  }
+
+  @Override
+  public void reset() {
+    initialized = false;
+  }
+
+  // Smoothing factor of a first order low-pass filter with the given cutoff, sampled every dt.
+  private static float alpha(float cutoffHz, float dt) {
+    float tau = 1 / (TWO_PI * cutoffHz);
+    return dt / (dt + tau);
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import java.util.Locale;
+
+/**
+ * Counts how often each expected hand pose was classified as each pose.
+ *
+ * <p>Rows are expected poses and columns are classified poses, both indexed by {@link
+ * HandPoseEnum} ordinal. This class is not thread-safe; fill one matrix per thread and {@link
+ * #add(PoseConfusionMatrix) merge} them.
+ */
+public final class PoseConfusionMatrix {
+  private static final HandPoseEnum[] POSES = HandPoseEnum.values();
+
+  private final long[] counts = new long[POSES.length * POSES.length];
+
+  public void add(HandPoseEnum expected, HandPoseEnum actual) {
+    ++counts[expected.ordinal() * POSES.length + actual.ordinal()];
+  }
+
+  /** Adds all counts of {@code other} to this matrix. */
+  public void add(PoseConfusionMatrix other) {
+    for (int i = 0; i < counts.length; ++i) {
+      counts[i] += other.counts[i];
+    }
+  }
+
+  public long getCount(HandPoseEnum expected, HandPoseEnum actual) {
+    return counts[expected.ordinal() * POSES.length + actual.ordinal()];
+  }
+
+  public long getTotal() {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    return total;
+  }
+
+  /** Returns the fraction of samples classified as expected, or 0 if there are no samples. */
+  public float getAccuracy() {
+    long correct = 0;
+    for (int p = 0; p < POSES.length; ++p) {
+      correct += counts[p * POSES.length + p];
+    }
+    long total = getTotal();
+    return total == 0 ? 0 : (float) correct / total;
+  }
+
+  /** Returns the fraction of the samples expected to be {@code pose} that were classified so. */
+  public float getRecall(HandPoseEnum pose) {
+    long total = 0;
+    int row = pose.ordinal() * POSES.length;
+    for (int p = 0; p < POSES.length; ++p) {
+      total += counts[row + p];
+    }
+    return total == 0 ? 0 : (float) counts[row + pose.ordinal()] / total;
+  }
+
+  /**
+   * Formats the matrix as a table with one row per expected pose that has samples and one column
+   * per pose, followed by the recall of each row.
+   */
+  @Override
+  public String toString() {
+    StringBuilder table = new StringBuilder();
+    table.append(String.format(Locale.US, "%-10s", "expected"));
+    for (HandPoseEnum pose : POSES) {
+      table.append(String.format(Locale.US, "%10s", pose));
+    }
+    table.append(String.format(Locale.US, "%10s%n", "recall"));
+    for (HandPoseEnum expected : POSES) {
+      int row = expected.ordinal() * POSES.length;
+      long rowTotal = 0;
+      for (int p = 0; p < POSES.length; ++p) {
+        rowTotal += counts[row + p];
+      }
+      if (rowTotal == 0) {
+        continue;
+      }
+      table.append(String.format(Locale.US, "%-10s", expected));
+      for (int p = 0; p < POSES.length; ++p) {
+        table.append(String.format(Locale.US, "%10d", counts[row + p]));
+      }
+      table.append(String.format(Locale.US, "%10.3f%n", getRecall(expected)));
+    }
+    return table.toString();
+  }
+}
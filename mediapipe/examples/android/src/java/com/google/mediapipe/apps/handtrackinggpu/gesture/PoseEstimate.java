@@ -0,0 +1,43 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * A hand pose together with how confident the classifier is about it.
+ *
+ * <p>Instances are mutable so that classifiers can fill in a caller-owned result on every frame
+ * without allocating.
+ */
+public final class PoseEstimate {
+  private HandPoseEnum pose = HandPoseEnum.UNKNOWN;
+  private float confidence = 0;
+
+  public HandPoseEnum getPose() {
+    return pose;
+  }
+
+  /** Returns the confidence, between 0 and 1. */
+  public float getConfidence() {
+    return confidence;
+  }
+
+  public void set(HandPoseEnum pose, float confidence) {
+    if (pose == null) {
+      throw new NullPointerException("pose");
+    }
+    this.pose = pose;
+    this.confidence = confidence;
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Debounces a stream of per-frame hand poses.
+ *
+ * <p>The stabilized pose only changes when a new pose is reported by at least {@code minAgreement}
+ * of the last {@code windowSize} frames, and the current stabilized pose has been held for at least
+ * {@code minDwellMs}. Votes are kept in a ring buffer with a per-pose counter, so each {@link
+ * #update} runs in constant time and does not allocate.
+ *
+ * <p>This class is not thread-safe. It is meant to be confined to the thread delivering landmark
+ * packets; {@link OnPoseChangedListener} is invoked on that same thread.
+ */
+public final class PoseStabilizer {
+  /** Receives stabilized pose changes. */
+  public interface OnPoseChangedListener {
+    void onPoseChanged(HandPoseEnum previous, HandPoseEnum current, long timestampMs);
+  }
+
+  // By default a pose must be detected in 3 of the last 5 frames, and the previous pose held for
+  // 200 ms, before the stabilized pose changes.
+  public static final int DEFAULT_WINDOW_SIZE = 5;
+  public static final int DEFAULT_MIN_AGREEMENT = 3;
+  public static final long DEFAULT_MIN_DWELL_MS = 200;
+
+  private static final HandPoseEnum[] POSES = HandPoseEnum.values();
+
+  private final int minAgreement;
+  private final long minDwellMs;
+  // Ring buffer of pose ordinals for the last window.length frames.
+  private final int[] window;
+  private final int[] votes = new int[POSES.length];
+  private int next = 0;
+  private int size = 0;
+
+  private HandPoseEnum stablePose;
+  private long stableSinceMs;
+  private boolean hasStableSince = false;
+  private OnPoseChangedListener listener;
+
+  /** Creates a stabilizer with the default window, agreement and dwell time. */
+  public PoseStabilizer(HandPoseEnum initialPose) {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_AGREEMENT, DEFAULT_MIN_DWELL_MS, initialPose);
+  }
+
+  /**
+   * @param windowSize number of most recent frames that vote for a pose.
+   * @param minAgreement number of votes in the window needed to switch to a pose.
+   * @param minDwellMs minimum time the stabilized pose is held before it may change.
+   * @param initialPose stabilized pose before any frame was seen.
+   */
+  public PoseStabilizer(
+      int windowSize, int minAgreement, long minDwellMs, HandPoseEnum initialPose) {
+    if (windowSize <= 0 || minAgreement <= 0 || minAgreement > windowSize) {
+      throw new IllegalArgumentException("Need 0 < minAgreement <= windowSize.");
+    }
+    if (minDwellMs < 0) {
+      throw new IllegalArgumentException("minDwellMs must be non-negative.");
+    }
+    if (initialPose == null) {
+      throw new NullPointerException("initialPose");
+    }
+    this.minAgreement = minAgreement;
+    this.minDwellMs = minDwellMs;
+    this.window = new int[windowSize];
+    this.stablePose = initialPose;
+  }
+
+  public void setOnPoseChangedListener(OnPoseChangedListener listener) {
+    this.listener = listener;
+  }
+
+  /** Returns the current stabilized pose. */
+  public HandPoseEnum getStablePose() {
+    return stablePose;
+  }
+
+  /**
+   * Adds the pose detected in a new frame.
+   *
+   * @param pose the raw pose detected in the frame.
+   * @param timestampMs frame timestamp; must not decrease between calls.
+   * @return the stabilized pose after this frame.
+   */
+  public HandPoseEnum update(HandPoseEnum pose, long timestampMs) {
+    int ordinal = pose.ordinal();
+    if (size == window.length) {
+      --votes[window[next]];
+    } else {
+      ++size;
+    }
+    window[next] = ordinal;
+    ++votes[ordinal];
+    next = next + 1 == window.length ? 0 : next + 1;
+
+    if (pose != stablePose
+        && votes[ordinal] >= minAgreement
+        && (!hasStableSince || timestampMs - stableSinceMs >= minDwellMs)) {
+      HandPoseEnum previous = stablePose;
+      stablePose = pose;
+      stableSinceMs = timestampMs;
+      hasStableSince = true;
+      if (listener != null) {
+        listener.onPoseChanged(previous, pose, timestampMs);
+      }
+    }
+    return stablePose;
+  }
+
+  /** Forgets all votes, e.g. when the hand leaves the scene. The stabilized pose is kept. */
+  public void reset() {
+    for (int i = 0; i < votes.length; ++i) {
+      votes[i] = 0;
+    }
+    next = 0;
+    size = 0;
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link PoseStabilizer}. */
+@RunWith(JUnit4.class)
+public final class PoseStabilizerTest {
+  private static final long FRAME_MS = 33;
+
+  private final List<String> changes = new ArrayList<>();
+  private long timestampMs = 0;
+
+  @Test
+  public void update_needsMinAgreementInWindow() {
+    // 3 of the last 5 frames, no dwell time.
+    PoseStabilizer stabilizer = create(5, 3, 0);
+    assertEquals(HandPoseEnum.UNKNOWN, feed(stabilizer, HandPoseEnum.FIST));
+    assertEquals(HandPoseEnum.UNKNOWN, feed(stabilizer, HandPoseEnum.PAPER));
+    assertEquals(HandPoseEnum.UNKNOWN, feed(stabilizer, HandPoseEnum.FIST));
+    assertEquals(HandPoseEnum.UNKNOWN, feed(stabilizer, HandPoseEnum.PAPER));
+    // The third FIST vote.
+    assertEquals(HandPoseEnum.FIST, feed(stabilizer, HandPoseEnum.FIST));
+    assertEquals(Collections.singletonList("UNKNOWN->FIST"), changes);
+  }
+
+  @Test
+  public void update_forgetsVotesOutsideWindow() {
+    // 2 of the last 3 frames.
+    PoseStabilizer stabilizer = create(3, 2, 0);
+    feed(stabilizer, HandPoseEnum.FIST);
+    feed(stabilizer, HandPoseEnum.PAPER);
+    feed(stabilizer, HandPoseEnum.ONE);
+    // Two FIST votes in the last four frames, but the first has left the window.
+    assertEquals(HandPoseEnum.UNKNOWN, feed(stabilizer, HandPoseEnum.FIST));
+    assertEquals(HandPoseEnum.FIST, feed(stabilizer, HandPoseEnum.FIST));
+  }
+
+  @Test
+  public void update_holdsPoseForMinDwell() {
+    PoseStabilizer stabilizer = create(3, 2, 200);
+    feed(stabilizer, HandPoseEnum.FIST);
+    assertEquals(HandPoseEnum.FIST, feed(stabilizer, HandPoseEnum.FIST));
+    long fistMs = timestampMs;
+
+    // PAPER wins the vote at once, but FIST is held until 200 ms have passed.
+    while (timestampMs + FRAME_MS - fistMs < 200) {
+      assertEquals(HandPoseEnum.FIST, feed(stabilizer, HandPoseEnum.PAPER));
+    }
+    assertEquals(HandPoseEnum.PAPER, feed(stabilizer, HandPoseEnum.PAPER));
+    assertEquals(Arrays.asList("UNKNOWN->FIST", "FIST->PAPER"), changes);
+  }
+
+  @Test
+  public void update_firstChangeIsNotDelayedByDwell() {
+    PoseStabilizer stabilizer = create(3, 2, 1000);
+    feed(stabilizer, HandPoseEnum.FIST);
+    assertEquals(HandPoseEnum.FIST, feed(stabilizer, HandPoseEnum.FIST));
+  }
+
+  @Test
+  public void listener_onlyCalledOnChange() {
+    PoseStabilizer stabilizer = create(3, 2, 0);
+    for (int i = 0; i < 10; ++i) {
+      feed(stabilizer, HandPoseEnum.FIST);
+    }
+    // Flickers that never win the vote, and votes for the stable pose, are not changes.
+    for (int i = 0; i < 10; ++i) {
+      feed(stabilizer, i % 3 == 0 ? HandPoseEnum.PAPER : HandPoseEnum.FIST);
+    }
+    // Nor is winning the vote again after the votes were reset.
+    stabilizer.reset();
+    feed(stabilizer, HandPoseEnum.FIST);
+    feed(stabilizer, HandPoseEnum.FIST);
+    assertEquals(Collections.singletonList("UNKNOWN->FIST"), changes);
+    assertEquals(HandPoseEnum.FIST, stabilizer.getStablePose());
+  }
+
+  @Test
+  public void reset_forgetsVotes() {
+    PoseStabilizer stabilizer = create(3, 2, 0);
+    feed(stabilizer, HandPoseEnum.PAPER);
+    stabilizer.reset();
+    assertEquals(HandPoseEnum.UNKNOWN, feed(stabilizer, HandPoseEnum.PAPER));
+    assertEquals(HandPoseEnum.PAPER, feed(stabilizer, HandPoseEnum.PAPER));
+  }
+
+  private PoseStabilizer create(int windowSize, int minAgreement, long minDwellMs) {
+    PoseStabilizer stabilizer =
+        new PoseStabilizer(windowSize, minAgreement, minDwellMs, HandPoseEnum.UNKNOWN);
+    stabilizer.setOnPoseChangedListener(
+        (previous, current, timestampMs) -> changes.add(previous + "->" + current));
+    return stabilizer;
+  }
+
+  // Feeds the pose of the next frame.
+  private HandPoseEnum feed(PoseStabilizer stabilizer, HandPoseEnum pose) {
+    timestampMs += FRAME_MS;
+    return stabilizer.update(pose, timestampMs);
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Classifies hands with the declarative rules of a {@link GestureRuleSet}.
+ *
+ * <p>Finger states and the confidence come from a {@link HandPoseClassifier}, so {@code
+ * <finger>.open} means the same as in the pose table. Hands below the minimum confidence, and
+ * hands no rule matches, are reported as {@link HandPoseEnum#UNKNOWN}.
+ *
+ * <p>The feature values and the evaluation stack are preallocated, so {@link #classify} does not
+ * allocate; in exchange an instance must not be used by several threads at once. {@link
+ * MultiHandClassifier} creates one instance per hand slot.
+ */
+public final class RuleHandPoseClassifier implements HandClassifier {
+  private final GestureRuleSet rules;
+  private final HandPoseClassifier fingers;
+  private final float minConfidence;
+  private final float[] values;
+  private final boolean[] stack;
+
+  public RuleHandPoseClassifier(GestureRuleSet rules) {
+    this(
+        rules,
+        HandPoseClassifier.DEFAULT_THUMB_OPEN_THRESHOLD,
+        HandPoseClassifier.DEFAULT_MIN_CONFIDENCE);
+  }
+
+  /**
+   * @param rules the rules, tried in order.
+   * @param thumbOpenThreshold see {@link HandPoseClassifier}.
+   * @param minConfidence confidence below which a hand is reported as {@link
+   *     HandPoseEnum#UNKNOWN}.
+   */
+  public RuleHandPoseClassifier(
+      GestureRuleSet rules, float thumbOpenThreshold, float minConfidence) {
+    if (rules == null) {
+      throw new NullPointerException("rules");
+    }
+    this.rules = rules;
+    // The pose table is not used, only the finger states and the confidence.
+    this.fingers =
+        new HandPoseClassifier(HandPoseTable.createDefault(), thumbOpenThreshold, minConfidence);
+    this.minConfidence = minConfidence;
+    values = rules.newValues();
+    stack = rules.newStack();
+  }
+
+  @Override
+  public void classify(float[] landmarks, int offset, PoseEstimate result) {
+    float confidence = fingers.confidence(landmarks, offset);
+    if (confidence < minConfidence) {
+      result.set(HandPoseEnum.UNKNOWN, confidence);
+      return;
+    }
+    int rule =
+        rules.match(landmarks, offset, fingers.fingerStates(landmarks, offset), values, stack);
+    result.set(rule >= 0 ? rules.getPose(rule) : HandPoseEnum.UNKNOWN, confidence);
+  }
+}
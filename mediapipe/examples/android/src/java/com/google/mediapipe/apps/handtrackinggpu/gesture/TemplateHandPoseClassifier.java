@@ -0,0 +1,75 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+/**
+ * Classifies hands by their nearest user-recorded template in a {@link GestureTemplateStore}.
+ *
+ * <p>Template labels must be {@link HandPoseEnum} names; {@link GestureTemplateBuilder} builds such
+ * stores from labelled landmark logs. The confidence is the one of the nearest template, and hands
+ * farther from every template than the confidence allows are reported as {@link
+ * HandPoseEnum#UNKNOWN}.
+ *
+ * <p>The store is shared and must no longer be modified once a classifier uses it. The match result
+ * is preallocated, so {@link #classify} does not allocate; in exchange an instance must not be used
+ * by several threads at once. {@link MultiHandClassifier} creates one instance per hand slot.
+ */
+public final class TemplateHandPoseClassifier implements HandClassifier {
+  /** Default confidence below which a hand is reported as {@link HandPoseEnum#UNKNOWN}. */
+  public static final float DEFAULT_MIN_CONFIDENCE = 0.25f;
+
+  private final GestureTemplateStore store;
+  private final float minConfidence;
+  // Pose of each template, resolved once from the labels.
+  private final HandPoseEnum[] poses;
+  private final GestureTemplateStore.Match match = new GestureTemplateStore.Match();
+
+  public TemplateHandPoseClassifier(GestureTemplateStore store) {
+    this(store, DEFAULT_MIN_CONFIDENCE);
+  }
+
+  /**
+   * @param store the templates; its dimension must be {@link HandLandmarks#SIZE}.
+   * @param minConfidence confidence below which a hand is reported as {@link
+   *     HandPoseEnum#UNKNOWN}.
+   * @throws IllegalArgumentException if a template label is not a {@link HandPoseEnum} name.
+   */
+  public TemplateHandPoseClassifier(GestureTemplateStore store, float minConfidence) {
+    if (store.getDimension() != HandLandmarks.SIZE) {
+      throw new IllegalArgumentException(
+          "Template dimension " + store.getDimension() + " does not match " + HandLandmarks.SIZE);
+    }
+    if (minConfidence < 0 || minConfidence > 1) {
+      throw new IllegalArgumentException("minConfidence must be between 0 and 1.");
+    }
+    this.store = store;
+    this.minConfidence = minConfidence;
+    poses = new HandPoseEnum[store.size()];
+    for (int i = 0; i < poses.length; ++i) {
+      poses[i] = HandPoseEnum.valueOf(store.getLabel(i));
+    }
+  }
+
+  @Override
+  public void classify(float[] landmarks, int offset, PoseEstimate result) {
+    store.findNearest(landmarks, offset, match);
+    int index = match.getIndex();
+    if (index < 0 || match.getConfidence() < minConfidence) {
+      result.set(HandPoseEnum.UNKNOWN, match.getConfidence());
+      return;
+    }
+    result.set(poses[index], match.getConfidence());
+  }
+}
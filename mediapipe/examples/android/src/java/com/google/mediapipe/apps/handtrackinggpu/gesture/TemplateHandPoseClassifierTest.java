@@ -0,0 +1,123 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.apps.handtrackinggpu.gesture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TemplateHandPoseClassifier}. */
+@RunWith(JUnit4.class)
+public final class TemplateHandPoseClassifierTest {
+  private static final float RADIUS = 1f;
+
+  @Test
+  public void classify_reportsNearestTemplate() {
+    GestureTemplateStore store = new GestureTemplateStore(RADIUS);
+    store.add(HandPoseEnum.FIST.name(), filled(0f), 0);
+    store.add(HandPoseEnum.PAPER.name(), filled(0.1f), 0);
+    TemplateHandPoseClassifier classifier = new TemplateHandPoseClassifier(store);
+
+    PoseEstimate result = new PoseEstimate();
+    classifier.classify(filled(0.09f), 0, result);
+    assertEquals(HandPoseEnum.PAPER, result.getPose());
+    // 63 dimensions 0.01 apart are sqrt(63) * 0.01 apart.
+    assertEquals(1f - (float) Math.sqrt(HandLandmarks.SIZE) * 0.01f, result.getConfidence(), 1e-5f);
+  }
+
+  @Test
+  public void classify_readsQueryAtOffset() {
+    GestureTemplateStore store = new GestureTemplateStore(RADIUS);
+    store.add(HandPoseEnum.FIST.name(), filled(0f), 0);
+    store.add(HandPoseEnum.PAPER.name(), filled(0.1f), 0);
+    TemplateHandPoseClassifier classifier = new TemplateHandPoseClassifier(store);
+
+    float[] frame = new float[2 * HandLandmarks.SIZE];
+    PoseEstimate result = new PoseEstimate();
+    classifier.classify(frame, HandLandmarks.SIZE, result);
+    assertEquals(HandPoseEnum.FIST, result.getPose());
+    assertEquals(1f, result.getConfidence(), 0f);
+  }
+
+  @Test
+  public void classify_unknownBelowMinConfidence() {
+    GestureTemplateStore store = new GestureTemplateStore(RADIUS);
+    store.add(HandPoseEnum.FIST.name(), filled(0f), 0);
+    TemplateHandPoseClassifier classifier = new TemplateHandPoseClassifier(store, 0.5f);
+
+    // sqrt(63) * 0.1 = 0.79 away, confidence 0.21.
+    PoseEstimate result = new PoseEstimate();
+    classifier.classify(filled(0.1f), 0, result);
+    assertEquals(HandPoseEnum.UNKNOWN, result.getPose());
+    assertEquals(1f - (float) Math.sqrt(HandLandmarks.SIZE) * 0.1f, result.getConfidence(), 1e-5f);
+  }
+
+  @Test
+  public void classify_emptyStoreIsUnknown() {
+    TemplateHandPoseClassifier classifier =
+        new TemplateHandPoseClassifier(new GestureTemplateStore());
+    PoseEstimate result = new PoseEstimate();
+    classifier.classify(filled(0f), 0, result);
+    assertEquals(HandPoseEnum.UNKNOWN, result.getPose());
+    assertEquals(0f, result.getConfidence(), 0f);
+  }
+
+  @Test
+  public void classify_afterStoreRoundTrip() throws Exception {
+    GestureTemplateStore store = new GestureTemplateStore(RADIUS);
+    store.add(HandPoseEnum.FIST.name(), filled(0f), 0);
+    store.add(HandPoseEnum.PAPER.name(), filled(0.5f), 0);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    store.writeTo(bytes);
+    GestureTemplateStore loaded = new GestureTemplateStore(RADIUS);
+    loaded.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+    PoseEstimate result = new PoseEstimate();
+    new TemplateHandPoseClassifier(loaded).classify(filled(0.5f), 0, result);
+    assertEquals(HandPoseEnum.PAPER, result.getPose());
+  }
+
+  @Test
+  public void constructor_rejectsLabelThatIsNotAPose() {
+    GestureTemplateStore store = new GestureTemplateStore();
+    store.add("WAVE_AT_GRANDMA", filled(0f), 0);
+    try {
+      new TemplateHandPoseClassifier(store);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void constructor_rejectsOtherDimension() {
+    try {
+      new TemplateHandPoseClassifier(new GestureTemplateStore(3, RADIUS));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private static float[] filled(float value) {
+    float[] vector = new float[HandLandmarks.SIZE];
+    Arrays.fill(vector, value);
+    return vector;
+  }
+}
@@ -46,6 +46,7 @@ import com.bumptech.glide.request.target.CustomTarget;
 import com.bumptech.glide.request.transition.Transition;
 import com.google.mediapipe.components.FrameProcessor;
 import com.google.mediapipe.framework.AndroidPacketCreator;
+import com.google.mediapipe.framework.InputStreamHandle;
 import com.google.mediapipe.framework.Packet;
 import java.io.InputStream;
 import java.lang.reflect.Field;
@@ -119,6 +120,10 @@ public class MainActivity extends com.google.mediapipe.apps.basic.MainActivity {
   private static final String GIF_FILE = "gif/gif.obj.uuu";
   private static final String GIF_TEXTURE_TAG = "gif_texture";
   private static final String GIF_ASSET_TAG = "gif_asset_name";
+  // Input streams fed alongside each camera frame.
+  private static final String[] FRAME_STREAM_NAMES = {
+    STICKER_SENTINEL_TAG, STICKER_PROTO_TAG, IMU_MATRIX_TAG, GIF_TEXTURE_TAG, GIF_ASPECT_RATIO_TAG
+  };
 
   private int cameraWidth = TARGET_CAMERA_WIDTH;
   private int cameraHeight = TARGET_CAMERA_HEIGHT;
@@ -580,6 +585,18 @@ public class MainActivity extends com.google.mediapipe.apps.basic.MainActivity {
   }
 
   private class MediaPipePacketManager implements FrameProcessor.OnWillAddFrameListener {
+    // Streams of FRAME_STREAM_NAMES, resolved once so the names aren't passed on every frame.
+    private final InputStreamHandle[] frameStreams =
+        new InputStreamHandle[FRAME_STREAM_NAMES.length];
+    // Packets added alongside each camera frame, in the order of FRAME_STREAM_NAMES.
+    private final Packet[] framePackets = new Packet[FRAME_STREAM_NAMES.length];
+
+    MediaPipePacketManager() {
+      for (int i = 0; i < FRAME_STREAM_NAMES.length; ++i) {
+        frameStreams[i] = processor.getGraph().getInputStreamHandle(FRAME_STREAM_NAMES[i]);
+      }
+    }
+
     @Override
     public void onWillAddFrame(long timestamp) {
       // set current GIF bitmap as default texture
@@ -608,21 +625,15 @@ public class MainActivity extends com.google.mediapipe.apps.basic.MainActivity {
       // Communicate GIF textures (dynamic texturing) to graph
       Packet gifTexturePacket = processor.getPacketCreator().createRgbaImageFrame(currentGIFBitmap);
       Packet gifAspectRatioPacket = processor.getPacketCreator().createFloat32(gifAspectRatio);
+      framePackets[0] = stickerSentinelPacket;
+      framePackets[1] = stickerProtoDataPacket;
+      framePackets[2] = imuDataPacket;
+      framePackets[3] = gifTexturePacket;
+      framePackets[4] = gifAspectRatioPacket;
+      // Adds all the side stream packets with a single graph call.
       processor
           .getGraph()
-          .addConsumablePacketToInputStream(STICKER_SENTINEL_TAG, stickerSentinelPacket, timestamp);
-      processor
-          .getGraph()
-          .addConsumablePacketToInputStream(STICKER_PROTO_TAG, stickerProtoDataPacket, timestamp);
-      processor
-          .getGraph()
-          .addConsumablePacketToInputStream(IMU_MATRIX_TAG, imuDataPacket, timestamp);
-      processor
-          .getGraph()
-          .addConsumablePacketToInputStream(GIF_TEXTURE_TAG, gifTexturePacket, timestamp);
-      processor
-          .getGraph()
-          .addConsumablePacketToInputStream(GIF_ASPECT_RATIO_TAG, gifAspectRatioPacket, timestamp);
+          .addConsumablePacketsToInputStreams(frameStreams, framePackets, timestamp);
       stickerSentinelPacket.release();
       stickerProtoDataPacket.release();
       imuDataPacket.release();
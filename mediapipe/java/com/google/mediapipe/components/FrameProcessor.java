@@ -25,6 +25,7 @@ import com.google.mediapipe.framework.AndroidAssetUtil;
 import com.google.mediapipe.framework.AndroidPacketCreator;
 import com.google.mediapipe.framework.Graph;
 import com.google.mediapipe.framework.GraphService;
+import com.google.mediapipe.framework.InputStreamHandle;
 import com.google.mediapipe.framework.MediaPipeException;
 import com.google.mediapipe.framework.Packet;
 import com.google.mediapipe.framework.PacketCallback;
@@ -57,9 +58,11 @@ public class FrameProcessor implements TextureFrameProcessor, AudioDataProcessor
   private Graph mediapipeGraph;
   private AndroidPacketCreator packetCreator;
   private OnWillAddFrameListener addFrameListener;
+  private OnDidAddFrameListener didAddFrameListener;
   private ErrorListener asyncErrorListener;
-  private String videoInputStream;
-  private String videoInputStreamCpu;
+  // Video input streams, resolved once since a packet is added to them for every frame.
+  private InputStreamHandle videoInputStream;
+  private InputStreamHandle videoInputStreamCpu;
   private String videoOutputStream;
   private SurfaceOutput videoSurfaceOutput;
   private final AtomicBoolean started = new AtomicBoolean(false);
@@ -204,7 +207,8 @@ public class FrameProcessor implements TextureFrameProcessor, AudioDataProcessor
   public void addVideoStreams(
       long parentNativeContext, @Nullable String inputStream, @Nullable String outputStream) {
 
-    videoInputStream = inputStream;
+    videoInputStream =
+        inputStream != null ? mediapipeGraph.getInputStreamHandle(inputStream) : null;
     videoOutputStream = outputStream;
 
     mediapipeGraph.setParentGlContext(parentNativeContext);
@@ -301,6 +305,14 @@ public class FrameProcessor implements TextureFrameProcessor, AudioDataProcessor
     void onWillAddFrame(long timestamp);
   }
 
+  /**
+   * Interface to be used so that this class can receive a callback when onNewFrame has added an
+   * input frame to the graph. Can be used to trace the latency of the frames.
+   */
+  public interface OnDidAddFrameListener {
+    void onDidAddFrame(long timestamp);
+  }
+
   public synchronized <T> void setServiceObject(GraphService<T> service, T object) {
     mediapipeGraph.setServiceObject(service, object);
   }
@@ -326,7 +338,7 @@ public class FrameProcessor implements TextureFrameProcessor, AudioDataProcessor
   }
 
   public void setVideoInputStreamCpu(String inputStream) {
-    videoInputStreamCpu = inputStream;
+    videoInputStreamCpu = mediapipeGraph.getInputStreamHandle(inputStream);
   }
 
   /** Adds a callback to the graph to process packets from the specified output stream. */
@@ -411,6 +423,10 @@ public class FrameProcessor implements TextureFrameProcessor, AudioDataProcessor
     this.addFrameListener = addFrameListener;
   }
 
+  public void setOnDidAddFrameListener(@Nullable OnDidAddFrameListener didAddFrameListener) {
+    this.didAddFrameListener = didAddFrameListener;
+  }
+
   /**
    * Returns true if the MediaPipe graph can accept one more input frame.
    *
@@ -458,6 +474,9 @@ public class FrameProcessor implements TextureFrameProcessor, AudioDataProcessor
         mediapipeGraph.addConsumablePacketToInputStream(videoInputStream, imagePacket, timestamp);
         // If addConsumablePacket succeeded, we don't need to release the packet ourselves.
         imagePacket = null;
+        if (didAddFrameListener != null) {
+          didAddFrameListener.onDidAddFrame(timestamp);
+        }
       } catch (MediaPipeException e) {
         // TODO: do not suppress exceptions here!
         if (asyncErrorListener == null) {
@@ -510,6 +529,9 @@ public class FrameProcessor implements TextureFrameProcessor, AudioDataProcessor
         // packet, which may allow for more memory optimizations.
         mediapipeGraph.addConsumablePacketToInputStream(videoInputStreamCpu, packet, timestamp);
         packet = null;
+        if (didAddFrameListener != null) {
+          didAddFrameListener.onDidAddFrame(timestamp);
+        }
       } catch (MediaPipeException e) {
         // TODO: do not suppress exceptions here!
         if (asyncErrorListener == null) {
@@ -23,16 +23,44 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * MediaPipe-related context.
  *
  * <p>Main purpose is to faciliate the memory management for native allocated mediapipe objects.
+ *
+ * <p>Methods that configure the graph are synchronized on the instance. Once the graph is running,
+ * adding packets, closing input streams and waiting on the graph do not take the instance lock,
+ * so threads feeding different streams, and threads waiting for the graph, do not block one
+ * another.
  */
 public class Graph {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-  private static final int MAX_BUFFER_SIZE = 20;
-  private long nativeGraphHandle;
+  /** Default number of packets buffered per input stream before the graph starts. */
+  public static final int DEFAULT_PACKET_BUFFER_CAPACITY = 20;
+  /** Default time {@link PacketBufferOverflowPolicy#BLOCK} waits for the graph to start. */
+  public static final long DEFAULT_PACKET_BUFFER_TIMEOUT_MILLIS = 1000;
+
+  /**
+   * What to do with a packet added to an input stream before the graph starts, when the packets
+   * already buffered for that stream fill its buffer. Dropped packets are counted by {@link
+   * #getDroppedPacketCount}.
+   */
+  public enum PacketBufferOverflowPolicy {
+    /** Drops the oldest buffered packet to make room for the new one. */
+    DROP_OLDEST,
+    /** Drops the new packet. */
+    DROP_NEWEST,
+    /**
+     * Blocks the caller until the graph starts, then adds the new packet to the graph. If the graph
+     * does not start within the timeout, drops the new packet.
+     */
+    BLOCK
+  }
+
+  // Read without the intrinsic monitor; only changed with terminationLock held for writing.
+  private volatile long nativeGraphHandle;
   // Hold the references to callbacks (PacketCallback and PacketListCallback).
   private final List<Object> callbacks = new ArrayList<>();
   // Side packets used for running the graph.
@@ -45,32 +73,96 @@ public class Graph {
   private boolean stepMode = false;
 
   private boolean startRunningGraphCalled = false;
-  private boolean graphRunning = false;
+  // Only changed with the intrinsic monitor held, but read without it to skip the monitor once the
+  // graph is running. Set after the packets buffered before the start were added to the graph, so
+  // packets added concurrently cannot overtake them.
+  private volatile boolean graphRunning = false;
+
+  /**
+   * Fixed-capacity FIFO of the packets added to an input stream before the graph starts. Holds the
+   * native packet handles, which it owns, so buffering a packet does not allocate.
+   */
+  private static class PacketRingBuffer {
+    private final long[] packetHandles;
+    private final long[] timestamps;
+    // Index of the oldest packet.
+    private int head = 0;
+    private int size = 0;
+    // Number of packets dropped because the buffer was full.
+    long droppedCount = 0;
+
+    PacketRingBuffer(int capacity) {
+      packetHandles = new long[capacity];
+      timestamps = new long[capacity];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    boolean isFull() {
+      return size == packetHandles.length;
+    }
 
-  /** Helper class for a buffered Packet and its timestamp. */
-  private static class PacketBufferItem {
-    private PacketBufferItem(Packet packet, Long timestamp) {
-      this.packet = packet;
-      this.timestamp = timestamp;
+    void add(long packetHandle, long timestamp) {
+      int tail = (head + size) % packetHandles.length;
+      packetHandles[tail] = packetHandle;
+      timestamps[tail] = timestamp;
+      ++size;
     }
 
-    final Packet packet;
-    final Long timestamp;
+    long getFirstPacketHandle() {
+      return packetHandles[head];
+    }
+
+    long getFirstTimestamp() {
+      return timestamps[head];
+    }
+
+    /** Removes the oldest packet and returns its handle, which the caller now owns. */
+    long removeFirst() {
+      long packetHandle = packetHandles[head];
+      packetHandles[head] = 0;
+      head = (head + 1) % packetHandles.length;
+      --size;
+      return packetHandle;
+    }
   }
 
-  private Map<String, ArrayList<PacketBufferItem>> packetBuffers = new HashMap<>();
+  /** Arrays passed to the native batch calls, reused across calls from the same thread. */
+  private static class BatchBuffers {
+    long[] packetHandles = new long[0];
+    long[] streamHandles = new long[0];
+  }
+
+  // Packets added to each input stream before the graph starts. The buffers are kept once the
+  // graph runs, empty, for their dropped packet counts.
+  private Map<String, PacketRingBuffer> packetBuffers = new HashMap<>();
+  private int packetBufferCapacity = DEFAULT_PACKET_BUFFER_CAPACITY;
+  private PacketBufferOverflowPolicy packetBufferOverflowPolicy =
+      PacketBufferOverflowPolicy.DROP_OLDEST;
+  private long packetBufferTimeoutMillis = DEFAULT_PACKET_BUFFER_TIMEOUT_MILLIS;
+  private final ThreadLocal<BatchBuffers> batchBuffers =
+      new ThreadLocal<BatchBuffers>() {
+        @Override
+        protected BatchBuffers initialValue() {
+          return new BatchBuffers();
+        }
+      };
 
   // This is used for methods that need to ensure the native context is alive
   // while still allowing other methods of this class to execute concurrently.
+  // Such methods hold the read lock while they use the native context; tearDown() holds the
+  // write lock while it releases it.
   // Note: if a method needs to acquire both this lock and the Graph intrinsic monitor,
   // it must acquire the intrinsic monitor first.
-  private final Object terminationLock = new Object();
+  private final ReentrantReadWriteLock terminationLock = new ReentrantReadWriteLock();
 
   public Graph() {
     nativeGraphHandle = nativeCreateGraph();
   }
 
-  public synchronized long getNativeHandle() {
+  public long getNativeHandle() {
     return nativeGraphHandle;
   }
 
@@ -329,8 +421,13 @@ public class Graph {
         streamHeaderHandles);
     // Packets can be buffered before the actual mediapipe graph starts. Send them in now, if we
     // started successfully.
-    graphRunning = true;
-    moveBufferedPacketsToInputStream();
+    try {
+      moveBufferedPacketsToInputStream();
+    } finally {
+      graphRunning = true;
+      // Wakes up the callers blocked on full packet buffers.
+      notifyAll();
+    }
   }
 
   /**
@@ -347,6 +444,52 @@ public class Graph {
     nativeSetGraphInputStreamBlockingMode(nativeGraphHandle, mode);
   }
 
+  /**
+   * Sets the number of packets buffered per input stream for packets added before the graph
+   * starts, e.g. while it waits for stream headers. Defaults to {@link
+   * #DEFAULT_PACKET_BUFFER_CAPACITY}. Must be called before any packet is added.
+   */
+  public synchronized void setPacketBufferCapacity(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Packet buffer capacity must be positive.");
+    Preconditions.checkState(
+        packetBuffers.isEmpty(), "Packet buffer capacity must be set before adding packets.");
+    packetBufferCapacity = capacity;
+  }
+
+  /**
+   * Sets what to do with packets added before the graph starts once the buffer of their stream is
+   * full. Defaults to {@link PacketBufferOverflowPolicy#DROP_OLDEST}.
+   *
+   * @param policy the overflow policy.
+   * @param timeoutMillis how long {@link PacketBufferOverflowPolicy#BLOCK} waits for the graph to
+   *     start before dropping the packet. Ignored by the other policies.
+   */
+  public synchronized void setPacketBufferOverflowPolicy(
+      PacketBufferOverflowPolicy policy, long timeoutMillis) {
+    Preconditions.checkNotNull(policy);
+    Preconditions.checkArgument(timeoutMillis >= 0, "Timeout must not be negative.");
+    packetBufferOverflowPolicy = policy;
+    packetBufferTimeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Returns the number of packets added to {@code streamName} before the graph started that were
+   * dropped because its buffer was full.
+   */
+  public synchronized long getDroppedPacketCount(String streamName) {
+    PacketRingBuffer buffer = packetBuffers.get(streamName);
+    return buffer == null ? 0 : buffer.droppedCount;
+  }
+
+  /** Returns the number of packets dropped by the packet buffers of all input streams. */
+  public synchronized long getDroppedPacketCount() {
+    long count = 0;
+    for (PacketRingBuffer buffer : packetBuffers.values()) {
+      count += buffer.droppedCount;
+    }
+    return count;
+  }
+
   /**
    * Adds one packet into a graph input stream based on the graph stream input mode.
    *
@@ -356,15 +499,22 @@ public class Graph {
    *     microsecond.
    * @throws MediaPipeException for any error status.
    */
-  public synchronized void addPacketToInputStream(
-      String streamName, Packet packet, long timestamp) {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+  public void addPacketToInputStream(String streamName, Packet packet, long timestamp) {
     if (!graphRunning) {
-      addPacketToBuffer(streamName, packet.copy(), timestamp);
-    } else {
+      synchronized (this) {
+        if (!graphRunning && bufferPacket(streamName, packet, timestamp, /* consume= */ false)) {
+          return;
+        }
+      }
+    }
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
       nativeAddPacketToInputStream(
           nativeGraphHandle, streamName, packet.getNativeHandle(), timestamp);
+    } finally {
+      terminationLock.readLock().unlock();
     }
   }
 
@@ -381,22 +531,215 @@ public class Graph {
    *     microsecond.
    * @throws MediaPipeException for any error status.
    */
-  public synchronized void addConsumablePacketToInputStream(
-      String streamName, Packet packet, long timestamp) {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+  public void addConsumablePacketToInputStream(String streamName, Packet packet, long timestamp) {
     if (!graphRunning) {
-      addPacketToBuffer(streamName, packet.copy(), timestamp);
-      // Release current packet to honor move semantics.
-      packet.release();
-    } else {
-
+      synchronized (this) {
+        if (!graphRunning && bufferPacket(streamName, packet, timestamp, /* consume= */ true)) {
+          return;
+        }
+      }
+    }
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
       // We move the packet here into native, allowing it to take full control.
       nativeMovePacketToInputStream(
           nativeGraphHandle, streamName, packet.getNativeHandle(), timestamp);
-      // The Java handle is released now if the packet was successfully moved. Otherwise the Java
-      // handle continues to own the packet contents.
-      packet.release();
+    } finally {
+      terminationLock.readLock().unlock();
+    }
+    // The Java handle is released now if the packet was successfully moved. Otherwise the Java
+    // handle continues to own the packet contents.
+    packet.release();
+  }
+
+  /**
+   * Adds one packet to each of several graph input streams, all at the same timestamp, and yields
+   * ownership of the packets to the graph, like {@link #addConsumablePacketToInputStream}.
+   *
+   * <p>The packets are added in order with a single native call, so the per-frame overhead of
+   * feeding side streams does not grow with their number. When the function ends normally, all
+   * the packets are consumed. When it ends with MediaPipeException, the packets added before the
+   * failing one are consumed and the others remain unaffected.
+   *
+   * @param streamNames the names of the input streams.
+   * @param packets the mediapipe packets, {@code packets[i]} going to {@code streamNames[i]}.
+   * @param timestamp the timestamp of the packets, although not enforced, the unit is normally
+   *     microsecond.
+   * @throws MediaPipeException for any error status.
+   */
+  public void addConsumablePacketsToInputStreams(
+      String[] streamNames, Packet[] packets, long timestamp) {
+    Preconditions.checkArgument(
+        streamNames.length == packets.length, "Number of streams and packets doesn't match!");
+    int buffered = 0;
+    if (!graphRunning) {
+      synchronized (this) {
+        while (buffered < packets.length
+            && !graphRunning
+            && bufferPacket(
+                streamNames[buffered], packets[buffered], timestamp, /* consume= */ true)) {
+          ++buffered;
+        }
+      }
+      if (buffered == packets.length) {
+        return;
+      }
+    }
+    if (buffered > 0) {
+      // The graph started while the packets were being buffered; the buffered ones are already in
+      // the graph, so add the others after them.
+      for (int i = buffered; i < packets.length; ++i) {
+        addConsumablePacketToInputStream(streamNames[i], packets[i], timestamp);
+      }
+      return;
+    }
+    long[] packetHandles = getBatchPacketHandles(packets);
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeMovePacketsToInputStreams(
+          nativeGraphHandle, streamNames, packetHandles, packets.length, timestamp);
+    } finally {
+      terminationLock.readLock().unlock();
+      releaseMovedPackets(packets, packetHandles);
+    }
+  }
+
+  /**
+   * Resolves the name of a graph input stream into a handle that can be used to add packets to it
+   * without passing the name every time. Can be called before the graph starts running; whether
+   * the stream exists is only checked when packets are added.
+   *
+   * @param streamName the name of the input stream.
+   */
+  public InputStreamHandle getInputStreamHandle(String streamName) {
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      return new InputStreamHandle(
+          this, streamName, nativeGetInputStreamHandle(nativeGraphHandle, streamName));
+    } finally {
+      terminationLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Same as {@link #addPacketToInputStream(String, Packet, long)}, for a stream resolved by {@link
+   * #getInputStreamHandle}.
+   *
+   * @throws MediaPipeException for any error status.
+   */
+  public void addPacketToInputStream(InputStreamHandle stream, Packet packet, long timestamp) {
+    checkInputStreamHandle(stream);
+    if (!graphRunning) {
+      synchronized (this) {
+        if (!graphRunning
+            && bufferPacket(stream.getStreamName(), packet, timestamp, /* consume= */ false)) {
+          return;
+        }
+      }
+    }
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeAddPacketToInputStreamByHandle(
+          nativeGraphHandle, stream.getNativeHandle(), packet.getNativeHandle(), timestamp);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Same as {@link #addConsumablePacketToInputStream(String, Packet, long)}, for a stream resolved
+   * by {@link #getInputStreamHandle}.
+   *
+   * @throws MediaPipeException for any error status.
+   */
+  public void addConsumablePacketToInputStream(
+      InputStreamHandle stream, Packet packet, long timestamp) {
+    checkInputStreamHandle(stream);
+    if (!graphRunning) {
+      synchronized (this) {
+        if (!graphRunning
+            && bufferPacket(stream.getStreamName(), packet, timestamp, /* consume= */ true)) {
+          return;
+        }
+      }
+    }
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeMovePacketToInputStreamByHandle(
+          nativeGraphHandle, stream.getNativeHandle(), packet.getNativeHandle(), timestamp);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
+    // The Java handle is released now if the packet was successfully moved. Otherwise the Java
+    // handle continues to own the packet contents.
+    packet.release();
+  }
+
+  /**
+   * Same as {@link #addConsumablePacketsToInputStreams(String[], Packet[], long)}, for streams
+   * resolved by {@link #getInputStreamHandle}.
+   *
+   * @throws MediaPipeException for any error status.
+   */
+  public void addConsumablePacketsToInputStreams(
+      InputStreamHandle[] streams, Packet[] packets, long timestamp) {
+    Preconditions.checkArgument(
+        streams.length == packets.length, "Number of streams and packets doesn't match!");
+    for (InputStreamHandle stream : streams) {
+      checkInputStreamHandle(stream);
+    }
+    int buffered = 0;
+    if (!graphRunning) {
+      synchronized (this) {
+        while (buffered < packets.length
+            && !graphRunning
+            && bufferPacket(
+                streams[buffered].getStreamName(),
+                packets[buffered],
+                timestamp,
+                /* consume= */ true)) {
+          ++buffered;
+        }
+      }
+      if (buffered == packets.length) {
+        return;
+      }
+    }
+    if (buffered > 0) {
+      // The graph started while the packets were being buffered; the buffered ones are already in
+      // the graph, so add the others after them.
+      for (int i = buffered; i < packets.length; ++i) {
+        addConsumablePacketToInputStream(streams[i].getStreamName(), packets[i], timestamp);
+      }
+      return;
+    }
+    long[] packetHandles = getBatchPacketHandles(packets);
+    BatchBuffers buffers = batchBuffers.get();
+    if (buffers.streamHandles.length < streams.length) {
+      buffers.streamHandles = new long[streams.length];
+    }
+    for (int i = 0; i < streams.length; ++i) {
+      buffers.streamHandles[i] = streams[i].getNativeHandle();
+    }
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeMovePacketsToInputStreamsByHandle(
+          nativeGraphHandle, buffers.streamHandles, packetHandles, packets.length, timestamp);
+    } finally {
+      terminationLock.readLock().unlock();
+      releaseMovedPackets(packets, packetHandles);
     }
   }
 
@@ -404,30 +747,45 @@ public class Graph {
    * Closes the specified input stream.
    * @throws MediaPipeException for any error status.
    */
-  public synchronized void closeInputStream(String streamName) {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
-    nativeCloseInputStream(nativeGraphHandle, streamName);
+  public void closeInputStream(String streamName) {
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeCloseInputStream(nativeGraphHandle, streamName);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
   }
 
   /**
    * Closes all the input streams in the mediapipe graph.
    * @throws MediaPipeException for any error status.
    */
-  public synchronized void closeAllInputStreams() {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
-    nativeCloseAllInputStreams(nativeGraphHandle);
+  public void closeAllInputStreams() {
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeCloseAllInputStreams(nativeGraphHandle);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
   }
 
   /**
    * Closes all the input streams and source calculators in the mediapipe graph.
    * @throws MediaPipeException for any error status.
    */
-  public synchronized void closeAllPacketSources() {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
-    nativeCloseAllPacketSources(nativeGraphHandle);
+  public void closeAllPacketSources() {
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeCloseAllPacketSources(nativeGraphHandle);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
   }
 
   /**
@@ -436,20 +794,30 @@ public class Graph {
    * <p>This should be called after all sources and input streams are closed.
    * @throws MediaPipeException for any error status.
    */
-  public synchronized void waitUntilGraphDone() {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
-    nativeWaitUntilGraphDone(nativeGraphHandle);
+  public void waitUntilGraphDone() {
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeWaitUntilGraphDone(nativeGraphHandle);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
   }
 
   /**
    * Waits until the graph runner is idle.
    * @throws MediaPipeException for any error status.
    */
-  public synchronized void waitUntilGraphIdle() {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
-    nativeWaitUntilGraphIdle(nativeGraphHandle);
+  public void waitUntilGraphIdle() {
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      nativeWaitUntilGraphIdle(nativeGraphHandle);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
   }
 
   /** Releases the native mediapipe context. */
@@ -466,19 +834,24 @@ public class Graph {
       }
     }
     streamHeaders.clear();
-    for (Map.Entry<String, ArrayList<PacketBufferItem>> entry : packetBuffers.entrySet()) {
-      for (PacketBufferItem item : entry.getValue()) {
-        item.packet.release();
+    for (PacketRingBuffer buffer : packetBuffers.values()) {
+      while (!buffer.isEmpty()) {
+        releasePacketHandle(buffer.removeFirst());
       }
     }
     packetBuffers.clear();
-    synchronized (terminationLock) {
+    terminationLock.writeLock().lock();
+    try {
       if (nativeGraphHandle != 0) {
         nativeReleaseGraph(nativeGraphHandle);
         nativeGraphHandle = 0;
       }
+    } finally {
+      terminationLock.writeLock().unlock();
     }
     callbacks.clear();
+    // Wakes up the callers blocked on full packet buffers, which will find the context released.
+    notifyAll();
   }
 
   /**
@@ -534,58 +907,123 @@ public class Graph {
   /**
    * Cancels the running graph.
    */
-  public synchronized void cancelGraph() {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called already.");
-    nativeCancelGraph(nativeGraphHandle);
+  public void cancelGraph() {
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called already.");
+      nativeCancelGraph(nativeGraphHandle);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
   }
 
   /** Returns {@link GraphProfiler}. */
   public GraphProfiler getProfiler() {
-    Preconditions.checkState(
-        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called already.");
-    return new GraphProfiler(nativeGetProfiler(nativeGraphHandle), this);
+    terminationLock.readLock().lock();
+    try {
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called already.");
+      return new GraphProfiler(nativeGetProfiler(nativeGraphHandle), this);
+    } finally {
+      terminationLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the lock that keeps the native context alive while held for reading. Used by {@link
+   * GraphProfiler}, which uses the native context without the intrinsic monitor.
+   */
+  ReentrantReadWriteLock getTerminationLock() {
+    return terminationLock;
   }
 
-  private boolean addPacketToBuffer(String streamName, Packet packet, long timestamp) {
-    if (!packetBuffers.containsKey(streamName)) {
-      packetBuffers.put(streamName, new ArrayList<PacketBufferItem>());
+  /**
+   * Buffers a packet added before the graph starts, following the overflow policy if the buffer of
+   * the stream is full. If {@code consume} is true, the buffer takes over the native packet of
+   * {@code packet}, which is left empty, instead of copying it. Returns false, leaving the packet
+   * alone, if the graph started while the caller was blocked; the packet should then be added to
+   * the graph.
+   */
+  private boolean bufferPacket(String streamName, Packet packet, long timestamp, boolean consume) {
+    Preconditions.checkState(
+        nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+    PacketRingBuffer buffer = packetBuffers.get(streamName);
+    if (buffer == null) {
+      buffer = new PacketRingBuffer(packetBufferCapacity);
+      packetBuffers.put(streamName, buffer);
     }
-    List<PacketBufferItem> buffer = packetBuffers.get(streamName);
-    if (buffer.size() > MAX_BUFFER_SIZE) {
-      for (Map.Entry<String, Packet> entry : streamHeaders.entrySet()) {
-        if (entry.getValue() == null) {
-          logger.atSevere().log("Stream: %s might be missing.", entry.getKey());
+    if (buffer.isFull() && packetBufferOverflowPolicy == PacketBufferOverflowPolicy.BLOCK) {
+      long deadline = System.nanoTime() + packetBufferTimeoutMillis * 1000000L;
+      long remainingNanos = deadline - System.nanoTime();
+      while (buffer.isFull() && !graphRunning && nativeGraphHandle != 0 && remainingNanos > 0) {
+        try {
+          // Waiting releases the monitor, so the graph can be started meanwhile.
+          wait(remainingNanos / 1000000L, (int) (remainingNanos % 1000000L));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
         }
+        remainingNanos = deadline - System.nanoTime();
+      }
+      Preconditions.checkState(
+          nativeGraphHandle != 0, "Invalid context, tearDown() might have been called.");
+      if (graphRunning) {
+        return false;
       }
-      throw new RuntimeException("Graph is not started because of missing streams");
     }
-    buffer.add(new PacketBufferItem(packet, timestamp));
+    if (buffer.isFull()) {
+      if (buffer.droppedCount == 0) {
+        for (Map.Entry<String, Packet> entry : streamHeaders.entrySet()) {
+          if (entry.getValue() == null) {
+            logger.atSevere().log("Stream: %s might be missing.", entry.getKey());
+          }
+        }
+        logger.atWarning().log(
+            "Graph is not started, dropping packets of input stream: %s.", streamName);
+      }
+      ++buffer.droppedCount;
+      if (packetBufferOverflowPolicy == PacketBufferOverflowPolicy.DROP_OLDEST) {
+        releasePacketHandle(buffer.removeFirst());
+      } else {
+        if (consume) {
+          packet.release();
+        }
+        return true;
+      }
+    }
+    buffer.add(
+        consume ? packet.detachNativeHandle() : packet.copy().detachNativeHandle(), timestamp);
     return true;
   }
 
-  // Any previously-buffered packets should be passed along to our graph.  They've already been
-  // copied into our buffers, so it's fine to move them all over to native.
+  // Any previously-buffered packets should be passed along to our graph. The buffers own their
+  // native packets, so it's fine to move them all over to native.
   private void moveBufferedPacketsToInputStream() {
-    if (!packetBuffers.isEmpty()) {
-      for (Map.Entry<String, ArrayList<PacketBufferItem>> entry : packetBuffers.entrySet()) {
-        for (PacketBufferItem item : entry.getValue()) {
-          try {
-            nativeMovePacketToInputStream(
-                nativeGraphHandle, entry.getKey(), item.packet.getNativeHandle(), item.timestamp);
-          } catch (MediaPipeException e) {
-            logger.atSevere().log(
-                "AddPacket for stream: %s failed: %s.", entry.getKey(), e.getMessage());
-            throw e;
-          }
-          // Need to release successfully moved packets
-          item.packet.release();
+    for (Map.Entry<String, PacketRingBuffer> entry : packetBuffers.entrySet()) {
+      PacketRingBuffer buffer = entry.getValue();
+      while (!buffer.isEmpty()) {
+        try {
+          nativeMovePacketToInputStream(
+              nativeGraphHandle,
+              entry.getKey(),
+              buffer.getFirstPacketHandle(),
+              buffer.getFirstTimestamp());
+        } catch (MediaPipeException e) {
+          logger.atSevere().log(
+              "AddPacket for stream: %s failed: %s.", entry.getKey(), e.getMessage());
+          throw e;
         }
+        // Need to release successfully moved packets
+        releasePacketHandle(buffer.removeFirst());
       }
-      packetBuffers.clear();
     }
   }
 
+  private static void releasePacketHandle(long packetHandle) {
+    Packet.create(packetHandle).release();
+  }
+
   private static void splitStreamNamePacketMap(
       Map<String, Packet> namePacketMap, String[] streamNames, long[] packets) {
     if (namePacketMap.size() != streamNames.length || namePacketMap.size() != packets.length) {
@@ -599,6 +1037,36 @@ public class Graph {
     }
   }
 
+  // Returns this thread's array of packet handles for a native batch call, holding the handles of
+  // the packets.
+  private long[] getBatchPacketHandles(Packet[] packets) {
+    BatchBuffers buffers = batchBuffers.get();
+    if (buffers.packetHandles.length < packets.length) {
+      buffers.packetHandles = new long[packets.length];
+    }
+    for (int i = 0; i < packets.length; ++i) {
+      buffers.packetHandles[i] = packets[i].getNativeHandle();
+    }
+    return buffers.packetHandles;
+  }
+
+  // The native batch calls clear the handles of the packets they moved, whose Java handles can now
+  // be released.
+  private static void releaseMovedPackets(Packet[] packets, long[] packetHandles) {
+    for (int i = 0; i < packets.length; ++i) {
+      if (packetHandles[i] == 0) {
+        packets[i].release();
+      }
+    }
+  }
+
+  private void checkInputStreamHandle(InputStreamHandle stream) {
+    Preconditions.checkArgument(
+        stream.getGraph() == this,
+        "Input stream handle %s belongs to another graph.",
+        stream.getStreamName());
+  }
+
   private boolean hasAllStreamHeaders() {
     for (Map.Entry<String, Packet> entry : streamHeaders.entrySet()) {
       if (entry.getValue() == null) {
@@ -650,6 +1118,20 @@ public class Graph {
   private native void nativeMovePacketToInputStream(
       long context, String streamName, long packet, long timestamp);
 
+  private native void nativeMovePacketsToInputStreams(
+      long context, String[] streamNames, long[] packets, int numPackets, long timestamp);
+
+  private native long nativeGetInputStreamHandle(long context, String streamName);
+
+  private native void nativeAddPacketToInputStreamByHandle(
+      long context, long streamHandle, long packet, long timestamp);
+
+  private native void nativeMovePacketToInputStreamByHandle(
+      long context, long streamHandle, long packet, long timestamp);
+
+  private native void nativeMovePacketsToInputStreamsByHandle(
+      long context, long[] streamHandles, long[] packets, int numPackets, long timestamp);
+
   private native void nativeSetGraphInputStreamBlockingMode(long context, boolean mode);
 
   private native void nativeCloseInputStream(long context, String streamName);
@@ -19,8 +19,14 @@ import com.google.mediapipe.proto.CalculatorProfileProto.CalculatorProfile;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
-/** MediaPipe Profiler Java API. */
+/**
+ * MediaPipe Profiler Java API.
+ *
+ * <p>Profiler calls do not take the lock of the graph, so polling the profiler does not block
+ * threads adding packets to the graph.
+ */
 public class GraphProfiler {
   private final long nativeProfilerHandle;
   private final Graph mediapipeGraph;
@@ -38,25 +44,37 @@ public class GraphProfiler {
    * Process() and does NOT affect information for Open() and Close() methods.
    */
   public void reset() {
-    synchronized (mediapipeGraph) {
+    Lock lock = mediapipeGraph.getTerminationLock().readLock();
+    lock.lock();
+    try {
       checkContext();
       nativeReset(nativeProfilerHandle);
+    } finally {
+      lock.unlock();
     }
   }
 
   /** Resumes all the calculator profilers in the graph. No-op if already profiling. */
   public void resume() {
-    synchronized (mediapipeGraph) {
+    Lock lock = mediapipeGraph.getTerminationLock().readLock();
+    lock.lock();
+    try {
       checkContext();
       nativeResume(nativeProfilerHandle);
+    } finally {
+      lock.unlock();
     }
   }
 
   /** Pauses all the calculator profilers in the graph. No-op if already paused. */
   public void pause() {
-    synchronized (mediapipeGraph) {
+    Lock lock = mediapipeGraph.getTerminationLock().readLock();
+    lock.lock();
+    try {
       checkContext();
       nativePause(nativeProfilerHandle);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -65,7 +83,9 @@ public class GraphProfiler {
    * graph. May be called at any time after the graph has been initialized.
    */
   public List<CalculatorProfile> getCalculatorProfiles() {
-    synchronized (mediapipeGraph) {
+    Lock lock = mediapipeGraph.getTerminationLock().readLock();
+    lock.lock();
+    try {
       checkContext();
       byte[][] profileBytes = nativeGetCalculatorProfiles(nativeProfilerHandle);
       List<CalculatorProfile> profileList = new ArrayList<>();
@@ -78,6 +98,8 @@ public class GraphProfiler {
         }
       }
       return profileList;
+    } finally {
+      lock.unlock();
     }
   }
 
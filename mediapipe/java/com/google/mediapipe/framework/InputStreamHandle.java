@@ -0,0 +1,49 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.framework;
+
+/**
+ * A graph input stream whose name was resolved once by {@link Graph#getInputStreamHandle}.
+ *
+ * <p>Adding packets through a handle spares passing and converting the stream name to native code
+ * for every packet, and native code uses the name it resolved once without looking it up again. A
+ * handle can only be used with the graph that created it, and stays valid for the life of that
+ * graph.
+ */
+public final class InputStreamHandle {
+  private final Graph graph;
+  private final String streamName;
+  // The stream name interned by the native graph.
+  private final long nativeHandle;
+
+  InputStreamHandle(Graph graph, String streamName, long nativeHandle) {
+    this.graph = graph;
+    this.streamName = streamName;
+    this.nativeHandle = nativeHandle;
+  }
+
+  /** Returns the name of the input stream. */
+  public String getStreamName() {
+    return streamName;
+  }
+
+  Graph getGraph() {
+    return graph;
+  }
+
+  long getNativeHandle() {
+    return nativeHandle;
+  }
+}
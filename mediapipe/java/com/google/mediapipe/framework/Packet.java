@@ -76,6 +76,16 @@ public class Packet {
     }
   }
 
+  /**
+   * Returns the native handle of the packet and gives up its ownership, leaving this packet empty,
+   * as if released. The caller is responsible for releasing the handle.
+   */
+  long detachNativeHandle() {
+    long handle = nativePacketHandle;
+    nativePacketHandle = 0;
+    return handle;
+  }
+
   // Packet is not intended to be constructed directly.
   private Packet(long handle) {
     nativePacketHandle = handle;
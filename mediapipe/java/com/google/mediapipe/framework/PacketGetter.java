@@ -21,6 +21,9 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,6 +38,15 @@ import java.util.List;
 public final class PacketGetter {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  /**
+   * Number of floats per landmark written by {@link #getNormalizedLandmarks}: x, y, z, visibility
+   * and presence.
+   */
+  public static final int LANDMARK_FIELDS = 5;
+
+  /** Number of bytes per sample written by {@link #getAudioByteData}: 16 bit PCM. */
+  public static final int AUDIO_BYTES_PER_SAMPLE = 2;
+
   /** Helper class for a list of exactly two Packets. */
   public static class PacketPair {
     public PacketPair(Packet first, Packet second) {
@@ -115,6 +127,30 @@ public final class PacketGetter {
     return nativeGetBytes(packet.getNativeHandle());
   }
 
+  /** Returns the number of bytes {@link #getBytes} returns for the packet. */
+  public static int getBytesSize(final Packet packet) {
+    return nativeGetBytesSize(packet.getNativeHandle());
+  }
+
+  /**
+   * Copies the bytes of the packet into {@code data}, without allocating.
+   *
+   * @return the number of bytes of the packet. If it is larger than {@code data}, nothing is
+   *     copied, so the caller can grow its array and call again.
+   */
+  public static int getBytes(final Packet packet, byte[] data) {
+    return nativeCopyBytes(packet.getNativeHandle(), data);
+  }
+
+  /**
+   * Same as {@link #getBytes(Packet, byte[])}, but copies into a direct buffer, starting at its
+   * first element regardless of its position.
+   */
+  public static int getBytes(final Packet packet, ByteBuffer data) {
+    Preconditions.checkArgument(data.isDirect(), "The buffer must be direct.");
+    return nativeCopyBytesToBuffer(packet.getNativeHandle(), data);
+  }
+
   public static byte[] getProtoBytes(final Packet packet) {
     return nativeGetProtoBytes(packet.getNativeHandle());
   }
@@ -134,6 +170,30 @@ public final class PacketGetter {
     return nativeGetInt32Vector(packet.getNativeHandle());
   }
 
+  /** Returns the number of elements {@link #getInt32Vector} returns for the packet. */
+  public static int getInt32VectorSize(final Packet packet) {
+    return nativeGetInt32VectorSize(packet.getNativeHandle());
+  }
+
+  /**
+   * Copies the vector held by the packet into {@code data}, without allocating.
+   *
+   * @return the number of elements of the vector. If it is larger than {@code data}, nothing is
+   *     copied, so the caller can grow its array and call again.
+   */
+  public static int getInt32Vector(final Packet packet, int[] data) {
+    return nativeCopyInt32Vector(packet.getNativeHandle(), data);
+  }
+
+  /**
+   * Same as {@link #getInt32Vector(Packet, int[])}, but copies into a direct buffer in native byte
+   * order, starting at its first element regardless of its position.
+   */
+  public static int getInt32Vector(final Packet packet, IntBuffer data) {
+    checkDirectNativeOrder(data.isDirect(), data.order());
+    return nativeCopyInt32VectorToBuffer(packet.getNativeHandle(), data);
+  }
+
   public static long[] getInt64Vector(final Packet packet) {
     return nativeGetInt64Vector(packet.getNativeHandle());
   }
@@ -142,6 +202,30 @@ public final class PacketGetter {
     return nativeGetFloat32Vector(packet.getNativeHandle());
   }
 
+  /** Returns the number of elements {@link #getFloat32Vector} returns for the packet. */
+  public static int getFloat32VectorSize(final Packet packet) {
+    return nativeGetFloat32VectorSize(packet.getNativeHandle());
+  }
+
+  /**
+   * Copies the vector held by the packet into {@code data}, without allocating.
+   *
+   * @return the number of elements of the vector. If it is larger than {@code data}, nothing is
+   *     copied, so the caller can grow its array and call again.
+   */
+  public static int getFloat32Vector(final Packet packet, float[] data) {
+    return nativeCopyFloat32Vector(packet.getNativeHandle(), data);
+  }
+
+  /**
+   * Same as {@link #getFloat32Vector(Packet, float[])}, but copies into a direct buffer in native
+   * byte order, starting at its first element regardless of its position.
+   */
+  public static int getFloat32Vector(final Packet packet, FloatBuffer data) {
+    checkDirectNativeOrder(data.isDirect(), data.order());
+    return nativeCopyFloat32VectorToBuffer(packet.getNativeHandle(), data);
+  }
+
   public static double[] getFloat64Vector(final Packet packet) {
     return nativeGetFloat64Vector(packet.getNativeHandle());
   }
@@ -162,6 +246,32 @@ public final class PacketGetter {
     }
   }
 
+  /**
+   * Copies the landmarks of a packet holding a {@code mediapipe::NormalizedLandmarkList} or a
+   * {@code std::vector<mediapipe::NormalizedLandmarkList>} into {@code data}, without going through
+   * protocol buffer objects.
+   *
+   * <p>Each landmark takes {@link #LANDMARK_FIELDS} floats, the lists follow each other, and the
+   * number of landmarks of the i-th list is stored in {@code counts[i]}. Lists that do not fit in
+   * {@code data} or {@code counts} are left out. Nothing is allocated, and the copy takes a single
+   * JNI call.
+   *
+   * @return the number of lists copied.
+   */
+  public static int getNormalizedLandmarks(final Packet packet, float[] data, int[] counts) {
+    return nativeGetNormalizedLandmarks(packet.getNativeHandle(), data, counts);
+  }
+
+  /**
+   * Same as {@link #getNormalizedLandmarks(Packet, float[], int[])}, but copies the landmarks into
+   * a direct buffer in native byte order, starting at its first element regardless of its
+   * position.
+   */
+  public static int getNormalizedLandmarks(final Packet packet, FloatBuffer data, int[] counts) {
+    checkDirectNativeOrder(data.isDirect(), data.order());
+    return nativeGetNormalizedLandmarksToBuffer(packet.getNativeHandle(), data, counts);
+  }
+
   public static int getImageWidth(final Packet packet) {
     return nativeGetImageWidth(packet.getNativeHandle());
   }
@@ -200,6 +310,33 @@ public final class PacketGetter {
     return nativeGetAudioData(packet.getNativeHandle());
   }
 
+  /** Returns the number of bytes {@link #getAudioByteData} returns for the packet. */
+  public static int getAudioByteDataSize(final Packet packet) {
+    return getAudioDataNumChannels(packet)
+        * getAudioDataNumSamples(packet)
+        * AUDIO_BYTES_PER_SAMPLE;
+  }
+
+  /**
+   * Converts the audio matrix data into {@code data}, in the format of {@link
+   * #getAudioByteData(Packet)}, without allocating.
+   *
+   * @return the number of bytes of audio data. If it is larger than {@code data}, nothing is
+   *     written, so the caller can grow its array and call again.
+   */
+  public static int getAudioByteData(final Packet packet, byte[] data) {
+    return nativeCopyAudioData(packet.getNativeHandle(), data);
+  }
+
+  /**
+   * Same as {@link #getAudioByteData(Packet, byte[])}, but writes into a direct buffer, starting at
+   * its first element regardless of its position.
+   */
+  public static int getAudioByteData(final Packet packet, ByteBuffer data) {
+    Preconditions.checkArgument(data.isDirect(), "The buffer must be direct.");
+    return nativeCopyAudioDataToBuffer(packet.getNativeHandle(), data);
+  }
+
   /**
    * Audio data is in MediaPipe Matrix format.
    *
@@ -257,6 +394,31 @@ public final class PacketGetter {
     return nativeGetMatrixData(packet.getNativeHandle());
   }
 
+  /** Returns the number of elements {@link #getMatrixData} returns for the packet. */
+  public static int getMatrixDataSize(final Packet packet) {
+    return getMatrixRows(packet) * getMatrixCols(packet);
+  }
+
+  /**
+   * Copies the data of the mediapipe Matrix into {@code data}, in column major order, without
+   * allocating.
+   *
+   * @return the number of elements of the matrix. If it is larger than {@code data}, nothing is
+   *     copied, so the caller can grow its array and call again.
+   */
+  public static int getMatrixData(final Packet packet, float[] data) {
+    return nativeCopyMatrixData(packet.getNativeHandle(), data);
+  }
+
+  /**
+   * Same as {@link #getMatrixData(Packet, float[])}, but copies into a direct buffer in native byte
+   * order, starting at its first element regardless of its position.
+   */
+  public static int getMatrixData(final Packet packet, FloatBuffer data) {
+    checkDirectNativeOrder(data.isDirect(), data.order());
+    return nativeCopyMatrixDataToBuffer(packet.getNativeHandle(), data);
+  }
+
   public static int getMatrixRows(final Packet packet) {
     return nativeGetMatrixRows(packet.getNativeHandle());
   }
@@ -291,6 +453,12 @@ public final class PacketGetter {
         nativeGetGpuBuffer(packet.getNativeHandle()), packet.getTimestamp());
   }
 
+  private static void checkDirectNativeOrder(boolean isDirect, ByteOrder order) {
+    Preconditions.checkArgument(isDirect, "The buffer must be direct.");
+    Preconditions.checkArgument(
+        order == ByteOrder.nativeOrder(), "The buffer must use native byte order.");
+  }
+
   private static native long nativeGetPacketFromReference(long nativePacketHandle);
 
   private static native long[] nativeGetPairPackets(long nativePacketHandle);
@@ -313,6 +481,12 @@ public final class PacketGetter {
 
   private static native byte[] nativeGetBytes(long nativePacketHandle);
 
+  private static native int nativeGetBytesSize(long nativePacketHandle);
+
+  private static native int nativeCopyBytes(long nativePacketHandle, byte[] data);
+
+  private static native int nativeCopyBytesToBuffer(long nativePacketHandle, ByteBuffer data);
+
   private static native byte[] nativeGetProtoBytes(long nativePacketHandle);
 
   private static native void nativeGetProto(long nativePacketHandle, SerializedMessage result);
@@ -321,14 +495,33 @@ public final class PacketGetter {
 
   private static native int[] nativeGetInt32Vector(long nativePacketHandle);
 
+  private static native int nativeGetInt32VectorSize(long nativePacketHandle);
+
+  private static native int nativeCopyInt32Vector(long nativePacketHandle, int[] data);
+
+  private static native int nativeCopyInt32VectorToBuffer(long nativePacketHandle, IntBuffer data);
+
   private static native long[] nativeGetInt64Vector(long nativePacketHandle);
 
   private static native float[] nativeGetFloat32Vector(long nativePacketHandle);
 
+  private static native int nativeGetFloat32VectorSize(long nativePacketHandle);
+
+  private static native int nativeCopyFloat32Vector(long nativePacketHandle, float[] data);
+
+  private static native int nativeCopyFloat32VectorToBuffer(
+      long nativePacketHandle, FloatBuffer data);
+
   private static native double[] nativeGetFloat64Vector(long nativePacketHandle);
 
   private static native byte[][] nativeGetProtoVector(long nativePacketHandle);
 
+  private static native int nativeGetNormalizedLandmarks(
+      long nativePacketHandle, float[] data, int[] counts);
+
+  private static native int nativeGetNormalizedLandmarksToBuffer(
+      long nativePacketHandle, FloatBuffer data, int[] counts);
+
   private static native int nativeGetImageWidth(long nativePacketHandle);
 
   private static native int nativeGetImageHeight(long nativePacketHandle);
@@ -347,9 +540,17 @@ public final class PacketGetter {
 
   // Audio data in MediaPipe current uses MediaPipe Matrix format type.
   private static native byte[] nativeGetAudioData(long nativePacketHandle);
+
+  private static native int nativeCopyAudioData(long nativePacketHandle, byte[] data);
+
+  private static native int nativeCopyAudioDataToBuffer(long nativePacketHandle, ByteBuffer data);
   // Native helper functions to access the MediaPipe Matrix data.
   private static native float[] nativeGetMatrixData(long nativePacketHandle);
 
+  private static native int nativeCopyMatrixData(long nativePacketHandle, float[] data);
+
+  private static native int nativeCopyMatrixDataToBuffer(long nativePacketHandle, FloatBuffer data);
+
   private static native int nativeGetMatrixRows(long nativePacketHandle);
 
   private static native int nativeGetMatrixCols(long nativePacketHandle);
@@ -0,0 +1,269 @@
+// Copyright 2019 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.framework.benchmark;
+
+import com.google.mediapipe.framework.Graph;
+import com.google.mediapipe.framework.GraphProfiler;
+import com.google.mediapipe.framework.InputStreamHandle;
+import com.google.mediapipe.framework.Packet;
+import com.google.mediapipe.framework.PacketCreator;
+import com.google.mediapipe.proto.CalculatorProto.CalculatorGraphConfig;
+import com.google.mediapipe.proto.CalculatorProto.ProfilerConfig;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how fast several threads can add packets to one running {@link Graph} while other
+ * threads poll its {@link GraphProfiler} and wait for it to be idle, in packets per second.
+ *
+ * <pre>
+ * bazel build -c opt --config=android_arm64 \
+ *     //mediapipe/java/com/google/mediapipe/framework/benchmark:graph_contention_benchmark
+ * BIN=bazel-bin/mediapipe/java/com/google/mediapipe/framework/benchmark
+ * adb push $BIN/graph_contention_benchmark.apk /data/local/tmp/
+ * adb shell unzip -o -d /data/local/tmp /data/local/tmp/graph_contention_benchmark.apk 'lib/*'
+ * adb shell CLASSPATH=/data/local/tmp/graph_contention_benchmark.apk app_process /system/bin \
+ *     com.google.mediapipe.framework.benchmark.GraphContentionBenchmark \
+ *     --library=/data/local/tmp/lib/arm64-v8a/libmediapipe_jni.so \
+ *     [--producers=N] [--streams=N] [--millis=N] [--rounds=N] [--no-pollers]
+ * </pre>
+ *
+ * <p>Every producer thread owns {@code --streams} graph input streams, each feeding a {@code
+ * PassThroughCalculator}, and adds one packet to each of them per frame:
+ *
+ * <ul>
+ *   <li>{@code name}: with {@link Graph#addConsumablePacketToInputStream(String, Packet, long)},
+ *   <li>{@code handle}: with {@link Graph#addConsumablePacketToInputStream(InputStreamHandle,
+ *       Packet, long)},
+ *   <li>{@code batch}: with one {@link
+ *       Graph#addConsumablePacketsToInputStreams(InputStreamHandle[], Packet[], long)} call.
+ * </ul>
+ *
+ * <p>Meanwhile, unless {@code --no-pollers} is given, one thread reads the calculator profiles in a
+ * loop and another calls {@link Graph#waitUntilGraphIdle} in a loop, as a UI showing the graph's
+ * load would. Every round runs a new graph for {@code --millis} per variant. The first round warms
+ * up the JIT and is not reported.
+ */
+public final class GraphContentionBenchmark {
+  public static final int DEFAULT_PRODUCERS = 4;
+  public static final int DEFAULT_STREAMS = 4;
+  public static final int DEFAULT_MILLIS = 2000;
+  public static final int DEFAULT_ROUNDS = 3;
+
+  private static final String[] VARIANTS = {"name", "handle", "batch"};
+
+  private final int numProducers;
+  private final int numStreams;
+  private final boolean pollers;
+  private volatile boolean stopped;
+
+  private GraphContentionBenchmark(int numProducers, int numStreams, boolean pollers) {
+    this.numProducers = numProducers;
+    this.numStreams = numStreams;
+    this.pollers = pollers;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int numProducers = DEFAULT_PRODUCERS;
+    int numStreams = DEFAULT_STREAMS;
+    int millis = DEFAULT_MILLIS;
+    int rounds = DEFAULT_ROUNDS;
+    boolean pollers = true;
+    String library = null;
+    for (String arg : args) {
+      if (arg.startsWith("--producers=")) {
+        numProducers = Integer.parseInt(arg.substring("--producers=".length()));
+      } else if (arg.startsWith("--streams=")) {
+        numStreams = Integer.parseInt(arg.substring("--streams=".length()));
+      } else if (arg.startsWith("--millis=")) {
+        millis = Integer.parseInt(arg.substring("--millis=".length()));
+      } else if (arg.startsWith("--rounds=")) {
+        rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+      } else if (arg.equals("--no-pollers")) {
+        pollers = false;
+      } else if (arg.startsWith("--library=")) {
+        library = arg.substring("--library=".length());
+      } else {
+        usage();
+      }
+    }
+    if (numProducers <= 0 || numStreams <= 0 || millis <= 0 || rounds <= 0) {
+      usage();
+    }
+    if (library != null) {
+      System.load(library);
+    } else {
+      System.loadLibrary("mediapipe_jni");
+    }
+
+    GraphContentionBenchmark benchmark =
+        new GraphContentionBenchmark(numProducers, numStreams, pollers);
+    for (int round = 0; round <= rounds; ++round) {
+      for (String variant : VARIANTS) {
+        Result result = benchmark.run(variant, millis);
+        if (round > 0) {
+          System.out.printf(
+              "%s round %d: %.0f packets/s, %d profile reads, %d idle waits%n",
+              variant,
+              round,
+              result.packets * 1e9 / result.elapsedNanos,
+              result.profileReads,
+              result.idleWaits);
+        }
+      }
+    }
+  }
+
+  private static final class Result {
+    long packets;
+    long elapsedNanos;
+    long profileReads;
+    long idleWaits;
+  }
+
+  private Result run(String variant, int millis) throws InterruptedException {
+    Graph graph = new Graph();
+    graph.loadBinaryGraph(createConfig());
+    graph.startRunningGraph();
+    GraphProfiler profiler = graph.getProfiler();
+    stopped = false;
+
+    CountDownLatch start = new CountDownLatch(1);
+    long[] packets = new long[numProducers];
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < numProducers; ++p) {
+      int producer = p;
+      threads.add(
+          new Thread(
+              () -> {
+                await(start);
+                packets[producer] = produce(graph, variant, producer);
+              }));
+    }
+    long[] polls = new long[2];
+    if (pollers) {
+      threads.add(
+          new Thread(
+              () -> {
+                await(start);
+                while (!stopped) {
+                  profiler.getCalculatorProfiles();
+                  ++polls[0];
+                }
+              }));
+      threads.add(
+          new Thread(
+              () -> {
+                await(start);
+                while (!stopped) {
+                  graph.waitUntilGraphIdle();
+                  ++polls[1];
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    Thread.sleep(millis);
+    stopped = true;
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Result result = new Result();
+    result.elapsedNanos = System.nanoTime() - startNanos;
+    for (long count : packets) {
+      result.packets += count;
+    }
+    result.profileReads = polls[0];
+    result.idleWaits = polls[1];
+
+    graph.closeAllInputStreams();
+    graph.waitUntilGraphDone();
+    graph.tearDown();
+    return result;
+  }
+
+  // Adds packets to the streams of a producer until stopped, and returns how many it added.
+  private long produce(Graph graph, String variant, int producer) {
+    PacketCreator packetCreator = new PacketCreator(graph);
+    String[] streamNames = new String[numStreams];
+    InputStreamHandle[] streams = new InputStreamHandle[numStreams];
+    for (int s = 0; s < numStreams; ++s) {
+      streamNames[s] = streamName(producer, s);
+      streams[s] = graph.getInputStreamHandle(streamNames[s]);
+    }
+    Packet[] batch = new Packet[numStreams];
+    long timestamp = 0;
+    while (!stopped) {
+      ++timestamp;
+      for (int s = 0; s < numStreams; ++s) {
+        Packet packet = packetCreator.createInt32(s);
+        if (variant.equals("name")) {
+          graph.addConsumablePacketToInputStream(streamNames[s], packet, timestamp);
+        } else if (variant.equals("handle")) {
+          graph.addConsumablePacketToInputStream(streams[s], packet, timestamp);
+        } else {
+          batch[s] = packet;
+        }
+      }
+      if (variant.equals("batch")) {
+        graph.addConsumablePacketsToInputStreams(streams, batch, timestamp);
+      }
+    }
+    return timestamp * numStreams;
+  }
+
+  // One pass-through node per input stream, with profiling on so the profiles can be polled.
+  private CalculatorGraphConfig createConfig() {
+    CalculatorGraphConfig.Builder config =
+        CalculatorGraphConfig.newBuilder()
+            .setProfilerConfig(ProfilerConfig.newBuilder().setEnableProfiler(true));
+    for (int p = 0; p < numProducers; ++p) {
+      for (int s = 0; s < numStreams; ++s) {
+        String name = streamName(p, s);
+        config.addInputStream(name);
+        config.addNode(
+            CalculatorGraphConfig.Node.newBuilder()
+                .setCalculator("PassThroughCalculator")
+                .addInputStream(name)
+                .addOutputStream(name + "_out"));
+      }
+    }
+    return config.build();
+  }
+
+  private static String streamName(int producer, int stream) {
+    return "input_" + producer + "_" + stream;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void usage() {
+    System.err.println(
+        "Usage: GraphContentionBenchmark [--producers=N] [--streams=N] [--millis=N] [--rounds=N]"
+            + " [--no-pollers] [--library=PATH]");
+    System.exit(1);
+  }
+}
@@ -514,6 +514,18 @@ absl::Status Graph::AddPacketToInputStream(const std::string& stream_name,
   return running_graph_->AddPacketToInputStream(stream_name, std::move(packet));
 }
 
+const std::string* Graph::GetInputStreamHandle(
+    const std::string& stream_name) {
+  absl::MutexLock lock(&input_stream_names_mutex_);
+  for (const std::string& name : input_stream_names_) {
+    if (name == stream_name) {
+      return &name;
+    }
+  }
+  input_stream_names_.push_back(stream_name);
+  return &input_stream_names_.back();
+}
+
 absl::Status Graph::CloseInputStream(std::string stream_name) {
   if (!running_graph_) {
     return absl::FailedPreconditionError("Graph must be running.");
@@ -17,6 +17,7 @@
 
 #include <jni.h>
 
+#include <deque>
 #include <map>
 #include <memory>
 #include <queue>
@@ -107,6 +108,14 @@ class Graph {
   absl::Status SetTimestampAndMovePacketToInputStream(
       const std::string& stream_name, int64_t packet_handle, int64_t timestamp);
 
+  // Returns a handle for the graph input stream, so that packets can be added
+  // to it without converting and passing its name for every packet. The
+  // handle is the interned stream name, which can be passed to the functions
+  // above as is, with no lookup or lock. The same name always gets the same
+  // handle, which stays valid for the life of this object. The name is only
+  // checked when packets are added.
+  const std::string* GetInputStreamHandle(const std::string& stream_name);
+
   // Sets the mode for adding packets to a graph input stream.
   void SetGraphInputStreamAddMode(
       CalculatorGraph::GraphInputStreamAddMode mode);
@@ -236,6 +245,12 @@ class Graph {
   // Open().
   std::map<std::string, Packet> stream_headers_;
 
+  // Names of the input streams interned by GetInputStreamHandle. A deque, so
+  // that the handles to the names stay valid, and can be used without the lock,
+  // while other names are added. The lock is only taken to intern a name.
+  std::deque<std::string> input_stream_names_;
+  absl::Mutex input_stream_names_mutex_;
+
   std::unique_ptr<CalculatorGraph> running_graph_;
   CalculatorGraph::GraphInputStreamAddMode graph_input_stream_add_mode_ =
       CalculatorGraph::GraphInputStreamAddMode::WAIT_TILL_NOT_FULL;
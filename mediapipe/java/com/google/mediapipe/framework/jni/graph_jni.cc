@@ -283,6 +283,91 @@ JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketToInputStream)(
                static_cast<int64_t>(packet), static_cast<int64_t>(timestamp)));
 }
 
+JNIEXPORT jlong JNICALL GRAPH_METHOD(nativeGetInputStreamHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jstring stream_name) {
+  mediapipe::android::Graph* mediapipe_graph =
+      reinterpret_cast<mediapipe::android::Graph*>(context);
+  return reinterpret_cast<jlong>(mediapipe_graph->GetInputStreamHandle(
+      JStringToStdString(env, stream_name)));
+}
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeAddPacketToInputStreamByHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jlong stream_handle, jlong packet,
+    jlong timestamp) {
+  mediapipe::android::Graph* mediapipe_graph =
+      reinterpret_cast<mediapipe::android::Graph*>(context);
+  // We push in a copy of the current packet at the given timestamp.
+  ThrowIfError(
+      env, mediapipe_graph->AddPacketToInputStream(
+               *reinterpret_cast<const std::string*>(stream_handle),
+               mediapipe::android::Graph::GetPacketFromHandle(packet).At(
+                   mediapipe::Timestamp::CreateNoErrorChecking(timestamp))));
+}
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketToInputStreamByHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jlong stream_handle, jlong packet,
+    jlong timestamp) {
+  mediapipe::android::Graph* mediapipe_graph =
+      reinterpret_cast<mediapipe::android::Graph*>(context);
+  ThrowIfError(
+      env, mediapipe_graph->SetTimestampAndMovePacketToInputStream(
+               *reinterpret_cast<const std::string*>(stream_handle),
+               static_cast<int64_t>(packet), static_cast<int64_t>(timestamp)));
+}
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketsToInputStreamsByHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jlongArray stream_handles,
+    jlongArray packets, jint num_packets, jlong timestamp) {
+  mediapipe::android::Graph* mediapipe_graph =
+      reinterpret_cast<mediapipe::android::Graph*>(context);
+  jlong* stream_handles_array_ref =
+      env->GetLongArrayElements(stream_handles, nullptr);
+  jlong* packets_array_ref = env->GetLongArrayElements(packets, nullptr);
+  absl::Status status;
+  for (jint i = 0; i < num_packets; ++i) {
+    status = mediapipe_graph->SetTimestampAndMovePacketToInputStream(
+        *reinterpret_cast<const std::string*>(stream_handles_array_ref[i]),
+        static_cast<int64_t>(packets_array_ref[i]),
+        static_cast<int64_t>(timestamp));
+    if (!status.ok()) {
+      break;
+    }
+    // Tells the caller that the packet was moved.
+    packets_array_ref[i] = 0;
+  }
+  // Copies the cleared handles back to the Java array.
+  env->ReleaseLongArrayElements(packets, packets_array_ref, 0);
+  env->ReleaseLongArrayElements(stream_handles, stream_handles_array_ref,
+                                JNI_ABORT);
+  ThrowIfError(env, status);
+}
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketsToInputStreams)(
+    JNIEnv* env, jobject thiz, jlong context, jobjectArray stream_names,
+    jlongArray packets, jint num_packets, jlong timestamp) {
+  mediapipe::android::Graph* mediapipe_graph =
+      reinterpret_cast<mediapipe::android::Graph*>(context);
+  jlong* packets_array_ref = env->GetLongArrayElements(packets, nullptr);
+  absl::Status status;
+  for (jint i = 0; i < num_packets; ++i) {
+    jstring name =
+        reinterpret_cast<jstring>(env->GetObjectArrayElement(stream_names, i));
+    status = mediapipe_graph->SetTimestampAndMovePacketToInputStream(
+        JStringToStdString(env, name),
+        static_cast<int64_t>(packets_array_ref[i]),
+        static_cast<int64_t>(timestamp));
+    env->DeleteLocalRef(name);
+    if (!status.ok()) {
+      break;
+    }
+    // Tells the caller that the packet was moved.
+    packets_array_ref[i] = 0;
+  }
+  // Copies the cleared handles back to the Java array.
+  env->ReleaseLongArrayElements(packets, packets_array_ref, 0);
+  ThrowIfError(env, status);
+}
+
 JNIEXPORT void JNICALL GRAPH_METHOD(nativeSetGraphInputStreamBlockingMode)(
     JNIEnv* env, jobject thiz, jlong context, jboolean mode) {
   mediapipe::android::Graph* mediapipe_graph =
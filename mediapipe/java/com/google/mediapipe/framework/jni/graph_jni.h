@@ -86,6 +86,25 @@ JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketToInputStream)(
     JNIEnv* env, jobject thiz, jlong context, jstring stream_name, jlong packet,
     jlong timestamp);
 
+JNIEXPORT jlong JNICALL GRAPH_METHOD(nativeGetInputStreamHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jstring stream_name);
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeAddPacketToInputStreamByHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jlong stream_handle, jlong packet,
+    jlong timestamp);
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketToInputStreamByHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jlong stream_handle, jlong packet,
+    jlong timestamp);
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketsToInputStreamsByHandle)(
+    JNIEnv* env, jobject thiz, jlong context, jlongArray stream_handles,
+    jlongArray packets, jint num_packets, jlong timestamp);
+
+JNIEXPORT void JNICALL GRAPH_METHOD(nativeMovePacketsToInputStreams)(
+    JNIEnv* env, jobject thiz, jlong context, jobjectArray stream_names,
+    jlongArray packets, jint num_packets, jlong timestamp);
+
 JNIEXPORT void JNICALL GRAPH_METHOD(nativeSetGraphInputStreamBlockingMode)(
     JNIEnv* env, jobject thiz, jlong context, jboolean mode);
 
@@ -14,8 +14,11 @@
 
 #include "mediapipe/java/com/google/mediapipe/framework/jni/packet_getter_jni.h"
 
+#include <cstring>
+
 #include "mediapipe/framework/calculator.pb.h"
 #include "mediapipe/framework/formats/image_frame.h"
+#include "mediapipe/framework/formats/landmark.pb.h"
 #include "mediapipe/framework/formats/matrix.h"
 #include "mediapipe/framework/formats/time_series_header.pb.h"
 #include "mediapipe/framework/formats/video_stream_header.h"
@@ -37,6 +40,71 @@ template <typename T>
 const T& GetFromNativeHandle(int64_t packet_handle) {
   return mediapipe::android::Graph::GetPacketFromHandle(packet_handle).Get<T>();
 }
+
+// Copies `size` values to the start of a direct buffer, if it can hold them.
+// Returns `size`.
+template <typename T>
+jint CopyToDirectBuffer(JNIEnv* env, const T* values, int64_t size,
+                        jobject buffer) {
+  if (env->GetDirectBufferCapacity(buffer) >= size) {
+    std::memcpy(env->GetDirectBufferAddress(buffer), values,
+                size * sizeof(T));
+  }
+  return size;
+}
+
+// Converts the audio matrix into interleaved 16 bit samples.
+void ConvertAudioData(const mediapipe::Matrix& audio_mat, int16* samples) {
+  const int kMultiplier = 1 << 15;
+  int offset = 0;
+  for (int sample = 0; sample < audio_mat.cols(); ++sample) {
+    for (int channel = 0; channel < audio_mat.rows(); ++channel) {
+      samples[offset++] =
+          static_cast<int16>(audio_mat(channel, sample) * kMultiplier);
+    }
+  }
+}
+
+// Number of floats per landmark: x, y, z, visibility and presence.
+constexpr int kLandmarkFields = 5;
+
+// Copies the landmark lists of the packet into `data`, one after the other,
+// and their sizes into `counts`, stopping at the first list that does not fit.
+// Returns the number of lists copied.
+int CopyNormalizedLandmarks(int64_t packet_handle, float* data,
+                            int64_t data_size, jint* counts, int counts_size) {
+  mediapipe::Packet mediapipe_packet =
+      mediapipe::android::Graph::GetPacketFromHandle(packet_handle);
+  const mediapipe::NormalizedLandmarkList* lists;
+  int num_lists;
+  if (mediapipe_packet.ValidateAsType<mediapipe::NormalizedLandmarkList>()
+          .ok()) {
+    lists = &mediapipe_packet.Get<mediapipe::NormalizedLandmarkList>();
+    num_lists = 1;
+  } else {
+    const auto& vector =
+        mediapipe_packet.Get<std::vector<mediapipe::NormalizedLandmarkList>>();
+    lists = vector.data();
+    num_lists = vector.size();
+  }
+  int64_t offset = 0;
+  int copied = 0;
+  for (; copied < num_lists && copied < counts_size; ++copied) {
+    const mediapipe::NormalizedLandmarkList& list = lists[copied];
+    if (offset + list.landmark_size() * kLandmarkFields > data_size) {
+      break;
+    }
+    for (const mediapipe::NormalizedLandmark& landmark : list.landmark()) {
+      data[offset++] = landmark.x();
+      data[offset++] = landmark.y();
+      data[offset++] = landmark.z();
+      data[offset++] = landmark.visibility();
+      data[offset++] = landmark.presence();
+    }
+    counts[copied] = list.landmark_size();
+  }
+  return copied;
+}
 }  // namespace
 
 JNIEXPORT jlong JNICALL PACKET_GETTER_METHOD(nativeGetPacketFromReference)(
@@ -134,6 +202,30 @@ PACKET_GETTER_METHOD(nativeGetBytes)(JNIEnv* env, jobject thiz, jlong packet) {
   return data;
 }
 
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetBytesSize)(JNIEnv* env,
+                                                               jobject thiz,
+                                                               jlong packet) {
+  return GetFromNativeHandle<std::string>(packet).length();
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyBytes)(JNIEnv* env,
+                                                            jobject thiz,
+                                                            jlong packet,
+                                                            jbyteArray data) {
+  const std::string& value = GetFromNativeHandle<std::string>(packet);
+  if (env->GetArrayLength(data) >= value.length()) {
+    env->SetByteArrayRegion(data, 0, value.length(),
+                            reinterpret_cast<const jbyte*>(value.c_str()));
+  }
+  return value.length();
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyBytesToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data) {
+  const std::string& value = GetFromNativeHandle<std::string>(packet);
+  return CopyToDirectBuffer(env, value.data(), value.length(), data);
+}
+
 JNIEXPORT jbyteArray JNICALL PACKET_GETTER_METHOD(nativeGetProtoBytes)(
     JNIEnv* env, jobject thiz, jlong packet) {
   mediapipe::Packet mediapipe_packet =
@@ -253,6 +345,83 @@ JNIEXPORT jdoubleArray JNICALL PACKET_GETTER_METHOD(nativeGetFloat64Vector)(
   return result;
 }
 
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetInt32VectorSize)(
+    JNIEnv* env, jobject thiz, jlong packet) {
+  return GetFromNativeHandle<std::vector<int>>(packet).size();
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyInt32Vector)(
+    JNIEnv* env, jobject thiz, jlong packet, jintArray data) {
+  const std::vector<int>& values =
+      GetFromNativeHandle<std::vector<int>>(packet);
+  if (env->GetArrayLength(data) >= values.size()) {
+    env->SetIntArrayRegion(data, 0, values.size(), values.data());
+  }
+  return values.size();
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyInt32VectorToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data) {
+  const std::vector<int>& values =
+      GetFromNativeHandle<std::vector<int>>(packet);
+  return CopyToDirectBuffer(env, values.data(), values.size(), data);
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetFloat32VectorSize)(
+    JNIEnv* env, jobject thiz, jlong packet) {
+  return GetFromNativeHandle<std::vector<float>>(packet).size();
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyFloat32Vector)(
+    JNIEnv* env, jobject thiz, jlong packet, jfloatArray data) {
+  const std::vector<float>& values =
+      GetFromNativeHandle<std::vector<float>>(packet);
+  if (env->GetArrayLength(data) >= values.size()) {
+    env->SetFloatArrayRegion(data, 0, values.size(), values.data());
+  }
+  return values.size();
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyFloat32VectorToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data) {
+  const std::vector<float>& values =
+      GetFromNativeHandle<std::vector<float>>(packet);
+  return CopyToDirectBuffer(env, values.data(), values.size(), data);
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetNormalizedLandmarks)(
+    JNIEnv* env, jobject thiz, jlong packet, jfloatArray data,
+    jintArray counts) {
+  jsize data_size = env->GetArrayLength(data);
+  jsize counts_size = env->GetArrayLength(counts);
+  // No JNI calls are allowed until the arrays are released, and none are
+  // needed: the landmarks are copied straight into the Java arrays.
+  float* data_ptr =
+      static_cast<float*>(env->GetPrimitiveArrayCritical(data, nullptr));
+  jint* counts_ptr =
+      static_cast<jint*>(env->GetPrimitiveArrayCritical(counts, nullptr));
+  int copied = CopyNormalizedLandmarks(packet, data_ptr, data_size, counts_ptr,
+                                       counts_size);
+  env->ReleasePrimitiveArrayCritical(counts, counts_ptr, 0);
+  env->ReleasePrimitiveArrayCritical(data, data_ptr, 0);
+  return copied;
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(
+    nativeGetNormalizedLandmarksToBuffer)(JNIEnv* env, jobject thiz,
+                                          jlong packet, jobject data,
+                                          jintArray counts) {
+  float* data_ptr = static_cast<float*>(env->GetDirectBufferAddress(data));
+  int64_t data_size = env->GetDirectBufferCapacity(data);
+  jsize counts_size = env->GetArrayLength(counts);
+  jint* counts_ptr =
+      static_cast<jint*>(env->GetPrimitiveArrayCritical(counts, nullptr));
+  int copied = CopyNormalizedLandmarks(packet, data_ptr, data_size, counts_ptr,
+                                       counts_size);
+  env->ReleasePrimitiveArrayCritical(counts, counts_ptr, 0);
+  return copied;
+}
+
 JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetImageWidth)(JNIEnv* env,
                                                                  jobject thiz,
                                                                  jlong packet) {
@@ -401,6 +570,32 @@ JNIEXPORT jbyteArray JNICALL PACKET_GETTER_METHOD(nativeGetAudioData)(
   return byte_data;
 }
 
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyAudioData)(
+    JNIEnv* env, jobject thiz, jlong packet, jbyteArray data) {
+  const mediapipe::Matrix& audio_mat =
+      GetFromNativeHandle<mediapipe::Matrix>(packet);
+  int data_size = audio_mat.rows() * audio_mat.cols() * 2;
+  if (env->GetArrayLength(data) >= data_size) {
+    // No JNI calls are allowed until the array is released.
+    void* samples = env->GetPrimitiveArrayCritical(data, nullptr);
+    ConvertAudioData(audio_mat, static_cast<int16*>(samples));
+    env->ReleasePrimitiveArrayCritical(data, samples, 0);
+  }
+  return data_size;
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyAudioDataToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data) {
+  const mediapipe::Matrix& audio_mat =
+      GetFromNativeHandle<mediapipe::Matrix>(packet);
+  int data_size = audio_mat.rows() * audio_mat.cols() * 2;
+  if (env->GetDirectBufferCapacity(data) >= data_size) {
+    ConvertAudioData(audio_mat,
+                     static_cast<int16*>(env->GetDirectBufferAddress(data)));
+  }
+  return data_size;
+}
+
 JNIEXPORT jfloatArray JNICALL PACKET_GETTER_METHOD(nativeGetMatrixData)(
     JNIEnv* env, jobject thiz, jlong packet) {
   const mediapipe::Matrix& audio_mat =
@@ -413,6 +608,26 @@ JNIEXPORT jfloatArray JNICALL PACKET_GETTER_METHOD(nativeGetMatrixData)(
   return float_data;
 }
 
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyMatrixData)(
+    JNIEnv* env, jobject thiz, jlong packet, jfloatArray data) {
+  const mediapipe::Matrix& matrix =
+      GetFromNativeHandle<mediapipe::Matrix>(packet);
+  int size = matrix.rows() * matrix.cols();
+  if (env->GetArrayLength(data) >= size) {
+    env->SetFloatArrayRegion(data, 0, size,
+                             reinterpret_cast<const jfloat*>(matrix.data()));
+  }
+  return size;
+}
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyMatrixDataToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data) {
+  const mediapipe::Matrix& matrix =
+      GetFromNativeHandle<mediapipe::Matrix>(packet);
+  return CopyToDirectBuffer(env, matrix.data(), matrix.rows() * matrix.cols(),
+                            data);
+}
+
 JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetMatrixRows)(JNIEnv* env,
                                                                  jobject thiz,
                                                                  jlong packet) {
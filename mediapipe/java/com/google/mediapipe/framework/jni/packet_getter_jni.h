@@ -66,6 +66,20 @@ JNIEXPORT jbyteArray JNICALL PACKET_GETTER_METHOD(nativeGetBytes)(JNIEnv* env,
                                                                   jobject thiz,
                                                                   jlong packet);
 
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetBytesSize)(JNIEnv* env,
+                                                               jobject thiz,
+                                                               jlong packet);
+
+// The nativeCopy* functions copy the packet data into a caller-supplied array
+// or direct buffer if it is large enough, and return the size of the data.
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyBytes)(JNIEnv* env,
+                                                            jobject thiz,
+                                                            jlong packet,
+                                                            jbyteArray data);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyBytesToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data);
+
 JNIEXPORT jbyteArray JNICALL PACKET_GETTER_METHOD(nativeGetProtoBytes)(
     JNIEnv* env, jobject thiz, jlong packet);
 
@@ -92,6 +106,37 @@ JNIEXPORT jfloatArray JNICALL PACKET_GETTER_METHOD(nativeGetFloat32Vector)(
 JNIEXPORT jdoubleArray JNICALL PACKET_GETTER_METHOD(nativeGetFloat64Vector)(
     JNIEnv* env, jobject thiz, jlong packet);
 
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetInt32VectorSize)(
+    JNIEnv* env, jobject thiz, jlong packet);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyInt32Vector)(
+    JNIEnv* env, jobject thiz, jlong packet, jintArray data);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyInt32VectorToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetFloat32VectorSize)(
+    JNIEnv* env, jobject thiz, jlong packet);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyFloat32Vector)(
+    JNIEnv* env, jobject thiz, jlong packet, jfloatArray data);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyFloat32VectorToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data);
+
+// Copies the landmarks of a NormalizedLandmarkList packet, or of a packet
+// holding a vector of them, into a float array and returns the number of lists
+// copied.
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetNormalizedLandmarks)(
+    JNIEnv* env, jobject thiz, jlong packet, jfloatArray data,
+    jintArray counts);
+
+// Same as nativeGetNormalizedLandmarks, but copies into a direct FloatBuffer.
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(
+    nativeGetNormalizedLandmarksToBuffer)(JNIEnv* env, jobject thiz,
+                                          jlong packet, jobject data,
+                                          jintArray counts);
+
 // ImageFrame jni functions.
 JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetImageWidth)(JNIEnv* env,
                                                                  jobject thiz,
@@ -123,6 +168,14 @@ JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetVideoHeaderHeight)(
 JNIEXPORT jbyteArray JNICALL PACKET_GETTER_METHOD(nativeGetAudioData)(
     JNIEnv* env, jobject thiz, jlong packet);
 
+// Converts the MediaPipe audio data into a caller-supplied byte array or direct
+// buffer, in the format of nativeGetAudioData.
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyAudioData)(
+    JNIEnv* env, jobject thiz, jlong packet, jbyteArray data);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyAudioDataToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data);
+
 // Gets number of channels in time series header packet.
 JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(
     nativeGetTimeSeriesHeaderNumChannels)(JNIEnv* env, jobject thiz,
@@ -138,6 +191,14 @@ JNIEXPORT jdouble JNICALL PACKET_GETTER_METHOD(
 JNIEXPORT jfloatArray JNICALL PACKET_GETTER_METHOD(nativeGetMatrixData)(
     JNIEnv* env, jobject thiz, jlong packet);
 
+// Copies the float data of the MediaPipe Matrix into a caller-supplied float
+// array or direct buffer.
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyMatrixData)(
+    JNIEnv* env, jobject thiz, jlong packet, jfloatArray data);
+
+JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeCopyMatrixDataToBuffer)(
+    JNIEnv* env, jobject thiz, jlong packet, jobject data);
+
 // Returns the number of rows of the matrix.
 JNIEXPORT jint JNICALL PACKET_GETTER_METHOD(nativeGetMatrixRows)(JNIEnv* env,
                                                                  jobject thiz,
@@ -122,6 +122,19 @@ void RegisterGraphNatives(JNIEnv *env) {
   AddJNINativeMethod(&graph_methods, graph, "nativeMovePacketToInputStream",
                      "(JLjava/lang/String;JJ)V",
                      (void *)&GRAPH_METHOD(nativeMovePacketToInputStream));
+  AddJNINativeMethod(&graph_methods, graph, "nativeMovePacketsToInputStreams",
+                     "(J[Ljava/lang/String;[JIJ)V",
+                     (void *)&GRAPH_METHOD(nativeMovePacketsToInputStreams));
+  AddJNINativeMethod(&graph_methods, graph, "nativeGetInputStreamHandle",
+                     "(JLjava/lang/String;)J",
+                     (void *)&GRAPH_METHOD(nativeGetInputStreamHandle));
+  AddJNINativeMethod(
+      &graph_methods, graph, "nativeMovePacketToInputStreamByHandle", "(JJJJ)V",
+      (void *)&GRAPH_METHOD(nativeMovePacketToInputStreamByHandle));
+  AddJNINativeMethod(
+      &graph_methods, graph, "nativeMovePacketsToInputStreamsByHandle",
+      "(J[J[JIJ)V",
+      (void *)&GRAPH_METHOD(nativeMovePacketsToInputStreamsByHandle));
   AddJNINativeMethod(&graph_methods, graph, "nativeStartRunningGraph",
                      "(J[Ljava/lang/String;[J[Ljava/lang/String;[J)V",
                      (void *)&GRAPH_METHOD(nativeStartRunningGraph));